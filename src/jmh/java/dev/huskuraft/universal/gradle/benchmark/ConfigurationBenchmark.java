@@ -0,0 +1,98 @@
+package dev.huskuraft.universal.gradle.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import dev.huskuraft.universal.gradle.UniversalExtension;
+import dev.huskuraft.universal.gradle.UniversalPlugin;
+
+/**
+ * Measures the configuration of a project applying {@link UniversalPlugin}, up to the tasks of a single requested target,
+ * like running {@code transform1201FabricForgeModJar} does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(jvmArgsAppend = "--add-opens=java.base/java.lang=ALL-UNNAMED")
+public class ConfigurationBenchmark {
+
+    private static final List<String> APIS = List.of("fabric-api", "quilt-api", "forge-api", "neoforge-api");
+
+    @Param({"1", "12"})
+    public int targets;
+
+    private File directory;
+    private Project project;
+
+    @Setup(Level.Trial)
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("configuration-benchmark").toFile();
+    }
+
+    @Setup(Level.Invocation)
+    public void createProject() {
+        // Creating the project is not part of the configuration of the plugin
+        project = ProjectBuilder.builder().withProjectDir(directory).build();
+        project.setGroup("com.example.benchmark");
+        project.setVersion("1.0.0");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        project = null;
+        // The builds leave their .gradle directory and others behind, deepest paths first
+        try (var paths = Files.walk(directory.toPath())) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public Task configure() {
+        var mod = Payloads.mod();
+        project.getPluginManager().apply(UniversalPlugin.class);
+        project.getDependencies().add("implementation", "dev.huskuraft.universal:common-api:1.0.0");
+
+        var extension = project.getExtensions().getByType(UniversalExtension.class);
+        extension.getId().set(mod.getId());
+        extension.getName().set(mod.getName());
+        extension.getDescription().set(mod.getDescription());
+        extension.getAuthors().set(mod.getAuthors());
+        extension.getLicense().set(mod.getLicense());
+        extension.getEnvironment().set(mod.getEnvironment().name().toLowerCase());
+        extension.getPrimaryUrl().set(mod.getPrimaryUrl());
+        extension.getSourcesUrl().set(mod.getSourcesUrl());
+        extension.getSupportUrl().set(mod.getSupportUrl());
+
+        var minecraftTargets = new LinkedHashMap<List<String>, List<String>>();
+        for (int i = 1; i <= targets; i++) {
+            minecraftTargets.put(List.of("1.20." + i), APIS);
+        }
+        extension.getTargets().set(minecraftTargets);
+
+        ((ProjectInternal) project).evaluate();
+        return project.getTasks().getByName("transform" + UniversalPlugin.getTargetName(List.of("1.20.1"), APIS) + "ModJar");
+    }
+}
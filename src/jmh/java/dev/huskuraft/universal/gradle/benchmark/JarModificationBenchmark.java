@@ -0,0 +1,88 @@
+package dev.huskuraft.universal.gradle.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.gradle.api.tasks.WorkResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import dev.huskuraft.universal.gradle.task.JarModificationTask;
+import dev.huskuraft.universal.gradle.task.modification.Modification;
+import dev.huskuraft.universal.gradle.task.modification.fabric.FabricAccessWidenerRenameModification;
+import dev.huskuraft.universal.gradle.task.modification.fabric.FabricMixinsJsonPropertyModification;
+import dev.huskuraft.universal.gradle.task.modification.fabric.FabricMixinsJsonRenameModification;
+import dev.huskuraft.universal.gradle.task.modification.fabric.FabricModJsonPropertyModification;
+import dev.huskuraft.universal.gradle.task.modification.fabric.FabricRefmapJsonRenameModification;
+import dev.huskuraft.universal.gradle.task.modification.forge.ForgeAnnotationModification;
+import dev.huskuraft.universal.gradle.task.modification.forge.ForgeModTomlModification;
+import dev.huskuraft.universal.gradle.task.modification.relocation.Relocator;
+import dev.huskuraft.universal.gradle.zip.ZipArchiveReader;
+
+/**
+ * Measures a whole {@link JarModificationTask.JarModificationAction} run over synthetic mod jars.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class JarModificationBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int entries;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"CHANNEL", "MAPPED"})
+    public ZipArchiveReader.Backend backend;
+
+    private File directory;
+    private File inputJar;
+    private File outputJar;
+    private List<Modification> modifications;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("jar-modification-benchmark").toFile();
+        inputJar = new File(directory, "input.jar");
+        outputJar = new File(directory, "output.jar");
+        Payloads.jar(inputJar, entries);
+
+        var mod = Payloads.mod();
+        // Like the plugin, relocates the jar and modifies its classes and resources in the same pass
+        modifications = new ArrayList<>(Relocator.of("dev.huskuraft.universal", mod.getGroupId()).modifications());
+        modifications.addAll(List.of(
+                new FabricModJsonPropertyModification(mod),
+                new FabricMixinsJsonPropertyModification(mod),
+                new FabricMixinsJsonRenameModification(mod),
+                new FabricRefmapJsonRenameModification(mod),
+                new FabricAccessWidenerRenameModification(mod),
+                new ForgeModTomlModification(mod),
+                new ForgeAnnotationModification(mod)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        outputJar.delete();
+        inputJar.delete();
+        directory.delete();
+    }
+
+    @Benchmark
+    public WorkResult execute() {
+        var options = JarModificationTask.JarModificationAction.Options.DEFAULT.withThreads(threads).withReaderBackend(backend);
+        return new JarModificationTask.JarModificationAction(() -> inputJar, () -> outputJar, modifications, options).execute();
+    }
+}
@@ -0,0 +1,114 @@
+package dev.huskuraft.universal.gradle.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import dev.huskuraft.universal.gradle.task.modification.AnnotationModification;
+import dev.huskuraft.universal.gradle.task.modification.fabric.FabricModJsonPropertyModification;
+import dev.huskuraft.universal.gradle.task.modification.forge.ForgeAnnotationModification;
+import dev.huskuraft.universal.gradle.task.modification.forge.ForgeModTomlModification;
+import dev.huskuraft.universal.gradle.task.modification.relocation.ClassRelocationModification;
+import dev.huskuraft.universal.gradle.task.modification.relocation.MixinJsonRelocationModification;
+import dev.huskuraft.universal.gradle.task.modification.relocation.Relocator;
+import dev.huskuraft.universal.gradle.transformer.JsonTransformer;
+
+/**
+ * Measures single modifications and the JSON merge of {@link JsonTransformer} on realistic payloads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ModificationBenchmark {
+
+    private AnnotationModification annotationModification;
+    private FabricModJsonPropertyModification fabricModJsonModification;
+    private ClassRelocationModification classRelocationModification;
+    private MixinJsonRelocationModification refmapRelocationModification;
+    private ForgeModTomlModification forgeModTomlModification;
+
+    private byte[] annotatedClass;
+    private byte[] fabricModJson;
+    private byte[] refmap;
+    private byte[] modsToml;
+
+    private String firstJson;
+    private String secondJson;
+
+    /**
+     * The inputs of a JSON merge, parsed again before each merge since the merge modifies the first of them in place.
+     */
+    @State(Scope.Thread)
+    public static class MergeInputs {
+
+        private JsonElement first;
+        private JsonElement second;
+
+        @Setup(Level.Invocation)
+        public void parse(ModificationBenchmark benchmark) {
+            first = JsonParser.parseString(benchmark.firstJson);
+            second = JsonParser.parseString(benchmark.secondJson);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        var mod = Payloads.mod();
+        annotationModification = new ForgeAnnotationModification(mod);
+        fabricModJsonModification = new FabricModJsonPropertyModification(mod);
+        var relocator = Relocator.of("dev.huskuraft.universal", mod.getGroupId());
+        classRelocationModification = new ClassRelocationModification(relocator);
+        refmapRelocationModification = new MixinJsonRelocationModification(relocator);
+        forgeModTomlModification = new ForgeModTomlModification(mod);
+
+        annotatedClass = Payloads.classFile("dev/huskuraft/universal/forge/platform/ForgeInitializer", true);
+        fabricModJson = Payloads.resource("fabric.mod.json");
+        refmap = Payloads.refmap(2000);
+        modsToml = Payloads.resource("mods.toml");
+
+        // Two refmaps sharing most of their mixins, as merged when shadowing several jars
+        firstJson = new String(Payloads.refmap(1000), StandardCharsets.UTF_8);
+        secondJson = new String(Payloads.refmap(1500), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] annotation() {
+        return annotationModification.apply(annotatedClass);
+    }
+
+    @Benchmark
+    public byte[] fabricModJson() {
+        return fabricModJsonModification.apply(fabricModJson);
+    }
+
+    @Benchmark
+    public byte[] classRelocation() {
+        return classRelocationModification.apply(annotatedClass);
+    }
+
+    @Benchmark
+    public byte[] refmapRelocation() {
+        return refmapRelocationModification.apply(refmap);
+    }
+
+    @Benchmark
+    public byte[] forgeModToml() {
+        return forgeModTomlModification.apply(modsToml);
+    }
+
+    @Benchmark
+    public JsonElement mergeJson(MergeInputs inputs) {
+        return JsonTransformer.mergeJson(inputs.first, inputs.second);
+    }
+}
@@ -0,0 +1,138 @@
+package dev.huskuraft.universal.gradle.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import dev.huskuraft.universal.gradle.Environment;
+import dev.huskuraft.universal.gradle.Mod;
+
+/**
+ * Realistic inputs shared by the benchmarks.
+ */
+final class Payloads {
+
+    static final String FORGE_MOD_DESCRIPTOR = "Lnet/minecraftforge/fml/common/Mod;";
+
+    private Payloads() {
+    }
+
+    static Mod mod() {
+        return new Mod(
+                "benchmark",
+                "Benchmark",
+                "A mod used by the benchmarks",
+                List.of("Huskuraft"),
+                "MIT",
+                Environment.BOTH,
+                "com.example.benchmark",
+                "1.0.0",
+                URI.create("https://example.com"),
+                URI.create("https://example.com/sources"),
+                URI.create("https://example.com/issues"));
+    }
+
+    static byte[] resource(String name) {
+        try (InputStream input = Payloads.class.getResourceAsStream("/benchmark/" + name)) {
+            if (input == null) {
+                throw new IllegalStateException("Missing benchmark resource: " + name);
+            }
+            return input.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Generates a class with a few fields and methods, optionally annotated with the Forge {@code @Mod} annotation.
+     */
+    static byte[] classFile(String internalName, boolean annotated) {
+        var writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, internalName, null, "java/lang/Object", null);
+        if (annotated) {
+            var annotation = writer.visitAnnotation(FORGE_MOD_DESCRIPTOR, true);
+            annotation.visit("value", "universal");
+            annotation.visitEnd();
+        }
+        for (var index = 0; index < 4; index++) {
+            writer.visitField(Opcodes.ACC_PRIVATE, "field" + index, "Ljava/lang/String;", null, null).visitEnd();
+        }
+        var constructor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+        for (var index = 0; index < 4; index++) {
+            var method = writer.visitMethod(Opcodes.ACC_PUBLIC, "method" + index, "()Ljava/lang/String;", null, null);
+            method.visitCode();
+            method.visitVarInsn(Opcodes.ALOAD, 0);
+            method.visitFieldInsn(Opcodes.GETFIELD, internalName, "field" + index, "Ljava/lang/String;");
+            method.visitInsn(Opcodes.ARETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        }
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /**
+     * Generates a refmap with the given number of mixin classes, each with a few mappings.
+     */
+    static byte[] refmap(int classes) {
+        var mappings = new StringBuilder();
+        var data = new StringBuilder();
+        for (var index = 0; index < classes; index++) {
+            var separator = index == 0 ? "" : ",";
+            var entry = "\"dev/huskuraft/universal/fabric/mixin/Mixin" + index + "\":{"
+                    + "\"tick\":\"Lnet/minecraft/class_" + index + ";method_" + index + "()V\","
+                    + "\"level\":\"Lnet/minecraft/class_" + index + ";field_" + index + ":Lnet/minecraft/class_1937;\"}";
+            mappings.append(separator).append(entry);
+            data.append(separator).append(entry);
+        }
+        var json = "{\"mappings\":{" + mappings + "},\"data\":{\"named:intermediary\":{" + data + "}}}";
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Generates a mod jar with the given number of entries: mostly classes, one in a hundred annotated,
+     * with assets, lang files and the loader metadata files mixed in.
+     */
+    static void jar(File file, int entries) throws IOException {
+        try (var output = new JarOutputStream(new FileOutputStream(file))) {
+            write(output, "fabric.mod.json", resource("fabric.mod.json"));
+            write(output, "META-INF/mods.toml", resource("mods.toml"));
+            write(output, "fabric.mixins.json", "{\"required\":true,\"package\":\"dev.huskuraft.universal.fabric.mixin\",\"mixins\":[\"A\"]}".getBytes(StandardCharsets.UTF_8));
+            write(output, "fabric.refmap.json", refmap(100));
+            write(output, "fabric.accesswidener", "accessWidener v1 named\n".getBytes(StandardCharsets.UTF_8));
+            for (var index = 0; index < entries; index++) {
+                switch (index % 10) {
+                    case 8 -> write(output, "assets/universal/lang/lang" + index + ".json",
+                            ("{\"item.universal.item" + index + "\":\"Item " + index + "\"}").getBytes(StandardCharsets.UTF_8));
+                    case 9 -> write(output, "assets/universal/textures/texture" + index + ".png", new byte[512 + index % 1024]);
+                    default -> {
+                        var name = "dev/huskuraft/universal/generated/Class" + index;
+                        write(output, name + ".class", classFile(name, index % 100 == 0));
+                    }
+                }
+            }
+        }
+    }
+
+    private static void write(JarOutputStream output, String name, byte[] content) throws IOException {
+        output.putNextEntry(new JarEntry(name));
+        output.write(content);
+        output.closeEntry();
+    }
+}
@@ -4,7 +4,7 @@ import groovy.transform.Immutable
 import org.gradle.api.Project
 
 @Immutable
-class Mod {
+class Mod implements Serializable {
     String id
     String name
     String description
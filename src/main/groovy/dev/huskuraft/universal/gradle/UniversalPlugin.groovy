@@ -6,16 +6,25 @@ import dev.huskuraft.minecraft.gradle.publish.ChangelogFormat
 import dev.huskuraft.minecraft.gradle.publish.ModPublishPlugin
 import dev.huskuraft.minecraft.gradle.publish.ModPublishingExtension
 import dev.huskuraft.minecraft.gradle.publish.Release
+import dev.huskuraft.universal.gradle.task.JarModificationService
 import dev.huskuraft.universal.gradle.task.JarModificationTask
+import dev.huskuraft.universal.gradle.task.cache.TransformedEntryCacheService
+import dev.huskuraft.universal.gradle.task.modification.Modification
 import dev.huskuraft.universal.gradle.task.modification.fabric.*
 import dev.huskuraft.universal.gradle.task.modification.forge.ForgeAnnotationModification
 import dev.huskuraft.universal.gradle.task.modification.forge.ForgeModTomlModification
 import dev.huskuraft.universal.gradle.task.modification.neoforge.NeoForgeAnnotationModification
 import dev.huskuraft.universal.gradle.task.modification.neoforge.NeoForgeModTomlModification
+import dev.huskuraft.universal.gradle.task.modification.relocation.Relocator
+import dev.huskuraft.universal.gradle.transformer.ModificationTransformer
 import org.gradle.api.Plugin
 import org.gradle.api.Project
+import org.gradle.api.artifacts.Configuration
+import org.gradle.api.artifacts.Dependency
+import org.gradle.api.plugins.BasePluginExtension
 import org.gradle.api.plugins.JavaLibraryPlugin
 import org.gradle.api.plugins.JavaPluginExtension
+import org.gradle.api.provider.Provider
 
 class UniversalPlugin implements Plugin<Project> {
 
@@ -27,6 +36,10 @@ class UniversalPlugin implements Plugin<Project> {
     static String SHADOW_JAR_MINECRAFT_TASK = "shadowModJar"
     static String TRANSFORM_JAR_MINECRAFT_TASK = "transformModJar"
 
+    static String ENTRY_CACHE_SERVICE = "universalTransformedEntryCache"
+    static String JAR_MODIFICATION_SERVICE = "universalJarModification"
+    static String ENTRY_CACHE_DISK_PROPERTY = "universal.entryCache.disk"
+
     void apply(Project project) {
         project.pluginManager.apply(JavaLibraryPlugin.class)
         project.pluginManager.apply(ShadowPlugin.class)
@@ -57,31 +70,35 @@ class UniversalPlugin implements Plugin<Project> {
                                                        'neoforge-api': 'NeoForge']
 
     private static void setupTargets(Project project) {
-        def commonApiSet = project.configurations.named('implementation').get().dependencies.findAll {
-            it.group == 'dev.huskuraft.universal' && it.name == 'common-api'
-        }
-        if (commonApiSet.isEmpty()) {
-            throw new IllegalStateException("common-api not found in implementation")
-        }
-        if (commonApiSet.size() > 1) {
-            throw new IllegalStateException("common-api found multiple times in implementation")
-        }
-
-        def commonApi = commonApiSet.iterator().next()
-
         def extension = project.extensions.getByType(UniversalExtension.class)
 
         if (extension.targets.get().isEmpty()) {
             throw new IllegalStateException("No universal targets found in universal configuration")
         }
 
+        // Looked up when a target is configured, so only the tasks actually requested depend on it
+        def commonApiVersion = project.configurations.named('implementation').map { findCommonApi(it).version }
+        def mod = createMod(extension)
+
         extension.targets.get().forEach { minecraft, apis ->
-            apis.forEach { api ->
-                setupTarget(project, getTargetName(minecraft, apis), minecraft.first, api, commonApi.version)
-            }
+            setupTarget(project, mod, getTargetName(minecraft, apis), minecraft.first, apis, commonApiVersion)
         }
+
+        project.tasks.named("jar", task -> task.setEnabled(false))
     }
 
+    private static Dependency findCommonApi(Configuration implementation) {
+        def commonApiSet = implementation.dependencies.findAll {
+            it.group == 'dev.huskuraft.universal' && it.name == 'common-api'
+        }
+        if (commonApiSet.isEmpty()) {
+            throw new IllegalStateException("common-api not found in implementation")
+        }
+        if (commonApiSet.size() > 1) {
+            throw new IllegalStateException("common-api found multiple times in implementation")
+        }
+        return commonApiSet.iterator().next()
+    }
 
     private static void setupProperties(Project project) {
         def extension = project.extensions.getByType(UniversalExtension.class)
@@ -179,82 +196,117 @@ class UniversalPlugin implements Plugin<Project> {
         })
     }
 
-    private static void setupTarget(Project project, String targetName, String minecraftId, String api, String apiVersion) {
-        def shadowJarMinecraft = SHADOW_JAR_MINECRAFT_TASK
-        def transformJarMinecraft = TRANSFORM_JAR_MINECRAFT_TASK
-
+    /**
+     * Registers the tasks of a target, which are only configured when they are part of the task graph.
+     */
+    private static void setupTarget(Project project, Mod mod, String targetName, String minecraftId, List<String> apis, Provider<String> apiVersion) {
         def configuration = targetName.uncapitalize() + "CompileOnly"
-        def apiDep = "dev.huskuraft.universal:common-api:${apiVersion}"
-        def targetDep = "dev.huskuraft.universal:${api}:${apiVersion}:${minecraftId}" as String
+        def apiDep = apiVersion.map { "dev.huskuraft.universal:common-api:${it}" as String }
+        def targetDeps = apis.collect { api -> apiVersion.map { "dev.huskuraft.universal:${api}:${it}:${minecraftId}" as String } }
 
         def shadowJarMinecraftTarget = "shadow" + targetName + "ModJar"
         def transformJarMinecraftTarget = "transform" + targetName + "ModJar"
 
-        def conf = project.configurations.maybeCreate(configuration)
-        conf.canBeResolved = true
-        conf.canBeConsumed = false
-        conf.extendsFrom(project.configurations.named('compileOnly').get())
-
-        project.dependencies.add(configuration, "${apiDep}")
-        project.dependencies.add(configuration, "${targetDep}")
+        def conf = project.configurations.register(configuration) { conf ->
+            conf.canBeResolved = true
+            conf.canBeConsumed = false
+            conf.extendsFrom(project.configurations.getByName('compileOnly'))
+            ([apiDep] + targetDeps).each { dep -> conf.dependencies.addLater(dep.map { project.dependencies.create(it) }) }
+        }
 
-        def shadowJarTargetTaskNotCreated = project.tasks.findByName(shadowJarMinecraftTarget) != null
-        def shadowJarTargetTask = project.tasks.maybeCreate(shadowJarMinecraftTarget, ShadowJar.class)
-        if (shadowJarTargetTaskNotCreated) {
-            shadowJarTargetTask.group = 'shadow'
-            shadowJarTargetTask.archiveAppendix.set(minecraftId)
-            shadowJarTargetTask.from(project.extensions.getByType(JavaPluginExtension).sourceSets.main.output)
-            shadowJarTargetTask.configurations = [project.configurations.named(configuration).get()]
+        def shadowJarTargetTask = project.tasks.register(shadowJarMinecraftTarget, ShadowJar.class) { task ->
+            task.group = 'shadow'
+            task.archiveAppendix.set(minecraftId)
+            task.from(project.extensions.getByType(JavaPluginExtension).sourceSets.named('main').map { it.output })
+            task.configurations = [conf.get()]
 
-            shadowJarTargetTask.mergeServiceFiles()
-            shadowJarTargetTask.relocate(API_GROUP, project.group.toString())
+            task.mergeServiceFiles()
+            // The shadowed jar is an intermediate file, the transformed jar takes its place in the libs directory
+            task.destinationDirectory.set(project.layout.buildDirectory.dir("shadow"))
+
+            ([apiDep] + targetDeps).each { dep -> task.dependencyFilter.include(task.dependencyFilter.dependency(dep.get())) }
+
+            // Resources are modified while shadowing. Relocation and class modifications need another pass over the jar,
+            // which the transform task makes, so they are not done here.
+            // Shadow only hands a resource to the first transformer accepting it, so the loaders of a target share one.
+            def modificationTransformer = new ModificationTransformer()
+            apis.each { api -> createResourceModifications(mod, api).each { modificationTransformer.modification(it) } }
+            if (!modificationTransformer.modifications.isEmpty()) {
+                task.transform(modificationTransformer)
+            }
         }
-        shadowJarTargetTask.dependencyFilter.include(shadowJarTargetTask.dependencyFilter.dependency(apiDep))
-        shadowJarTargetTask.dependencyFilter.include(shadowJarTargetTask.dependencyFilter.dependency(targetDep))
-
-        def transformJarTargetTaskNotCreated = project.tasks.findByName(transformJarMinecraftTarget) != null
-        def transformJarTargetTask = project.tasks.maybeCreate(transformJarMinecraftTarget, JarModificationTask.class)
-        if (transformJarTargetTaskNotCreated) {
-            transformJarTargetTask.dependsOn(shadowJarMinecraftTarget)
-            transformJarTargetTask.group = 'build'
-            transformJarTargetTask.inputFile = shadowJarTargetTask.archiveFile
-            transformJarTargetTask.outputFile = shadowJarTargetTask.archiveFile
+
+        def transformJarTargetTask = project.tasks.register(transformJarMinecraftTarget, JarModificationTask.class) { task ->
+            task.dependsOn(shadowJarTargetTask)
+            task.group = 'build'
+            task.inputFile.set(shadowJarTargetTask.flatMap { it.archiveFile })
+            task.outputFile.set(project.extensions.getByType(BasePluginExtension).libsDirectory.file(shadowJarTargetTask.flatMap { it.archiveFileName }))
+            // The transformed jar is as reproducible as the shadowed one
+            task.reproducible.set(shadowJarTargetTask.map { !it.preserveFileTimestamps && it.reproducibleFileOrder })
+
+            def entryCache = registerEntryCache(project)
+            task.entryCache.set(entryCache)
+            task.usesService(entryCache)
+
+            def service = registerJarModificationService(project)
+            task.service.set(service)
+            task.usesService(service)
+
+            // Classes, service files, mixin configs and refmaps are relocated in the same pass, so they stay consistent,
+            // and classes are relocated and modified in a single ASM pass
+            Relocator.of(API_GROUP, project.group.toString()).modifications().each { task.modification(it) }
+            apis.each { api -> createClassModifications(mod, api).each { task.modification(it) } }
         }
 
-        def extension = project.extensions.getByType(UniversalExtension.class)
-        def mod = createMod(extension)
+        project.tasks.named(SHADOW_JAR_MINECRAFT_TASK, task -> task.dependsOn(shadowJarTargetTask))
+        project.tasks.named(TRANSFORM_JAR_MINECRAFT_TASK, task -> task.dependsOn(transformJarTargetTask))
+    }
+
+    private static List<Modification> createResourceModifications(Mod mod, String api) {
         switch (API_MAP[api]) {
             case Loader.FABRIC:
-                transformJarTargetTask.modification(new FabricModJsonPropertyModification(mod))
-
-                transformJarTargetTask.modification(new FabricMixinsJsonPropertyModification(mod))
-                transformJarTargetTask.modification(new FabricMixinsJsonRenameModification(mod))
-
-                transformJarTargetTask.modification(new FabricRefmapJsonPropertyModification(mod))
-                transformJarTargetTask.modification(new FabricRefmapJsonRenameModification(mod))
-
-                transformJarTargetTask.modification(new FabricAccessWidenerRenameModification(mod))
-
-                break
-            case Loader.QUILT:
-                break
+                return [new FabricModJsonPropertyModification(mod),
+                        new FabricMixinsJsonPropertyModification(mod),
+                        new FabricMixinsJsonRenameModification(mod),
+                        new FabricRefmapJsonRenameModification(mod),
+                        new FabricAccessWidenerRenameModification(mod)]
             case Loader.FORGE:
-
-                transformJarTargetTask.modification(new ForgeModTomlModification(mod))
-                transformJarTargetTask.modification(new ForgeAnnotationModification(mod))
-                break
+                return [new ForgeModTomlModification(mod)]
             case Loader.NEOFORGE:
+                return [new NeoForgeModTomlModification(mod)]
+            default:
+                return []
+        }
+    }
 
-                transformJarTargetTask.modification(new NeoForgeModTomlModification(mod))
-                transformJarTargetTask.modification(new NeoForgeAnnotationModification(mod))
-                break
-
+    private static List<Modification> createClassModifications(Mod mod, String api) {
+        switch (API_MAP[api]) {
+            case Loader.FORGE:
+                return [new ForgeAnnotationModification(mod)]
+            case Loader.NEOFORGE:
+                return [new NeoForgeAnnotationModification(mod)]
+            default:
+                return []
         }
+    }
 
-        project.tasks.named(shadowJarMinecraft, task -> task.dependsOn(shadowJarMinecraftTarget))
-        project.tasks.named(transformJarMinecraft, task -> task.dependsOn(transformJarMinecraftTarget))
+    /**
+     * Registers the cache of transformed entries shared by all targets of the build.
+     * Set the {@code universal.entryCache.disk} property to {@code true} to keep it across builds in the Gradle user home.
+     */
+    private static Provider<TransformedEntryCacheService> registerEntryCache(Project project) {
+        return project.gradle.sharedServices.registerIfAbsent(ENTRY_CACHE_SERVICE, TransformedEntryCacheService.class) { spec ->
+            if (project.findProperty(ENTRY_CACHE_DISK_PROPERTY)?.toString()?.toBoolean()) {
+                spec.parameters.directory.set(new File(project.gradle.gradleUserHomeDir, "caches/universal-gradle-plugin"))
+            }
+        }
+    }
 
-        project.tasks.named("jar", task -> task.setEnabled(false))
+    /**
+     * Registers the pool of threads shared by the JAR modification tasks of the build.
+     */
+    private static Provider<JarModificationService> registerJarModificationService(Project project) {
+        return project.gradle.sharedServices.registerIfAbsent(JAR_MODIFICATION_SERVICE, JarModificationService.class) {}
     }
 
     private static void setupReleases(Project project) {
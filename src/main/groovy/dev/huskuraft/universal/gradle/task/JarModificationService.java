@@ -0,0 +1,79 @@
+package dev.huskuraft.universal.gradle.task;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+/**
+ * A build service holding the pool of threads and the memory budget shared by all JAR modification tasks of a build.
+ * Tasks run concurrently in the daemon, so a pool per task would start as many threads as there are cores for every task,
+ * and a budget per task would let the entries of all tasks together exceed the heap.
+ */
+public abstract class JarModificationService implements BuildService<JarModificationService.Parameters>, AutoCloseable {
+
+    /**
+     * The parameters of the service.
+     */
+    public interface Parameters extends BuildServiceParameters {
+
+        /**
+         * The number of threads transforming entries, for all tasks together.
+         *
+         * @return The thread count property, the number of available processors if not set.
+         */
+        Property<Integer> getThreads();
+
+        /**
+         * The number of bytes of entry content held in memory at once, for all tasks together.
+         *
+         * @return The byte budget property, a quarter of the maximum heap size if not set.
+         */
+        Property<Long> getMaxMemoryBytes();
+    }
+
+    private final ExecutorService executor;
+    private final MemoryBudget memoryBudget;
+
+    public JarModificationService() {
+        var parameters = getParameters();
+        var threads = parameters.getThreads().getOrElse(Runtime.getRuntime().availableProcessors());
+        this.executor = Executors.newFixedThreadPool(threads, new JarModificationTask.JarModificationAction.WorkerThreadFactory());
+        this.memoryBudget = new MemoryBudget(parameters.getMaxMemoryBytes().getOrElse(defaultMaxMemoryBytes()));
+    }
+
+    /**
+     * Gets the default memory budget of all tasks, a quarter of the maximum heap size,
+     * leaving room for the cache of transformed entries and for Gradle itself.
+     *
+     * @return The number of bytes.
+     */
+    public static long defaultMaxMemoryBytes() {
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    /**
+     * Gets the pool transforming the entries of all tasks.
+     *
+     * @return The executor.
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Gets the budget of the entry content all tasks hold in memory.
+     *
+     * @return The memory budget.
+     */
+    public MemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
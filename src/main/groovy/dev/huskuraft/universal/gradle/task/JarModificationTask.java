@@ -1,47 +1,120 @@
 package dev.huskuraft.universal.gradle.task;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
-import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
 
 import javax.inject.Inject;
 
 import org.gradle.api.Action;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.file.RegularFile;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
 import org.gradle.api.model.ObjectFactory;
 import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Nested;
 import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.WorkResult;
 import org.gradle.api.tasks.WorkResults;
-import org.gradle.work.DisableCachingByDefault;
+import org.gradle.workers.WorkerExecutor;
 
+import dev.huskuraft.universal.gradle.task.cache.ModificationFingerprint;
+import dev.huskuraft.universal.gradle.task.cache.TransformedEntryCache;
+import dev.huskuraft.universal.gradle.task.cache.TransformedEntryCache.CachedEntry;
+import dev.huskuraft.universal.gradle.task.cache.TransformedEntryCacheService;
+import dev.huskuraft.universal.gradle.task.metrics.TransformMetrics;
 import dev.huskuraft.universal.gradle.task.modification.AnnotationModification;
+import dev.huskuraft.universal.gradle.task.modification.ClassIndex;
+import dev.huskuraft.universal.gradle.task.modification.ClassModification;
 import dev.huskuraft.universal.gradle.task.modification.Modification;
+import dev.huskuraft.universal.gradle.task.modification.ModificationIndex;
+import dev.huskuraft.universal.gradle.zip.ZipArchiveEntry;
+import dev.huskuraft.universal.gradle.zip.ZipArchiveReader;
+import dev.huskuraft.universal.gradle.zip.ZipArchiveWriter;
+import dev.huskuraft.universal.gradle.zip.ZipEntryEncoder;
 
 /**
  * A Gradle task that modifies entries within a JAR file.
  * This task supports applying custom modifications to specific entries, such as class files or annotations.
- * Caching is disabled by default to ensure modifications are always applied.
+ * The modified JAR is written to a separate output file, and the modifications are fingerprinted through their
+ * input properties, so the task is up-to-date aware and its output can be restored from the build cache.
+ * The task only holds managed properties and serializable modifications, so it is compatible with the configuration cache.
  */
-@DisableCachingByDefault
+@CacheableTask
 public class JarModificationTask extends DefaultTask {
 
     @InputFile
-    private Provider<RegularFile> inputFile;
+    @PathSensitive(PathSensitivity.NONE)
+    private final RegularFileProperty inputFile = getObjectFactory().fileProperty();
     @OutputFile
-    private Provider<RegularFile> outputFile;
+    private final RegularFileProperty outputFile = getObjectFactory().fileProperty();
     @Nested
     private final ListProperty<Modification> modifications = getObjectFactory().listProperty(Modification.class);
+    @Internal
+    private final Property<Integer> threads = getObjectFactory().property(Integer.class).convention(Runtime.getRuntime().availableProcessors());
+    @Internal
+    private final Property<Isolation> isolation = getObjectFactory().property(Isolation.class).convention(Isolation.NONE);
+    @Internal
+    private final Property<String> maxHeapSize = getObjectFactory().property(String.class);
+    @Internal
+    private final Property<Long> memoryBudget = getObjectFactory().property(Long.class).convention(JarModificationAction.DEFAULT_MEMORY_BUDGET);
+    @Internal
+    private final Property<ZipArchiveReader.Backend> readerBackend = getObjectFactory().property(ZipArchiveReader.Backend.class).convention(ZipArchiveReader.Backend.CHANNEL);
+    @Input
+    private final Property<Boolean> reproducible = getObjectFactory().property(Boolean.class).convention(false);
+    @Internal
+    private final RegularFileProperty reportFile = getObjectFactory().fileProperty()
+            .fileProvider(outputFile.getLocationOnly().map(file -> new File(file.getAsFile().getPath() + ".report.json")));
+    @Internal
+    private final Property<TransformedEntryCacheService> entryCache = getObjectFactory().property(TransformedEntryCacheService.class);
+    @Internal
+    private final Property<JarModificationService> service = getObjectFactory().property(JarModificationService.class);
+
+    /**
+     * How the JAR modification is isolated from the Gradle daemon.
+     */
+    public enum Isolation {
+        /** Runs in the daemon, concurrently with other tasks. */
+        NONE,
+        /** Runs in a separate worker process, keeping large JARs out of the daemon heap. */
+        PROCESS
+    }
 
     public List<Modification> getModifications() {
         return modifications.get();
@@ -57,20 +130,117 @@ public class JarModificationTask extends DefaultTask {
         modifications.add(modification);
     }
 
-    public Provider<RegularFile> getInputFile() {
+    /**
+     * The number of threads used to apply modifications.
+     * Entries are still written in their original order; a value of 1 processes every entry on the task thread.
+     * With a {@link #getService() service}, the threads are taken from the pool shared by all tasks,
+     * and this is the number of entries the task transforms at once.
+     *
+     * @return The thread count property, the number of available processors by default.
+     */
+    public Property<Integer> getThreads() {
+        return threads;
+    }
+
+    /**
+     * The number of bytes of entry content the modification may hold in memory at once.
+     * Entries too large for the share of a thread are streamed through temporary files next to the output instead,
+     * so the peak memory does not depend on the largest entry.
+     *
+     * With a {@link #getService() service}, the entries of all tasks also share the budget of the service,
+     * so tasks running concurrently together stay within it.
+     *
+     * @return The memory budget property, 256 MiB by default.
+     */
+    public Property<Long> getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * How the input JAR is read. {@link ZipArchiveReader.Backend#MAPPED} maps the JAR into memory,
+     * so unmodified entries are copied to the output straight from the mapping.
+     *
+     * @return The reader backend property, {@link ZipArchiveReader.Backend#CHANNEL} by default.
+     */
+    public Property<ZipArchiveReader.Backend> getReaderBackend() {
+        return readerBackend;
+    }
+
+    /**
+     * Whether the output JAR only depends on the content of the input JAR, so builds from identical sources produce identical bytes.
+     * Entries are ordered by name, with the manifest first, and get a constant time and fixed attributes, see {@link ZipArchiveEntry#normalized()}.
+     * Otherwise entries keep their order, time and attributes.
+     *
+     * @return The reproducible property, false by default.
+     */
+    public Property<Boolean> getReproducible() {
+        return reproducible;
+    }
+
+    /**
+     * The isolation mode of the worker modifying the JAR.
+     * Modifications are serialized when submitted to the worker, regardless of the mode.
+     *
+     * @return The isolation property, {@link Isolation#NONE} by default.
+     */
+    public Property<Isolation> getIsolation() {
+        return isolation;
+    }
+
+    /**
+     * The maximum heap size of the worker process, e.g. {@code 2g}, only used with {@link Isolation#PROCESS}.
+     *
+     * @return The maximum heap size property.
+     */
+    public Property<String> getMaxHeapSize() {
+        return maxHeapSize;
+    }
+
+    /**
+     * The cache of transformed entries shared between tasks, so identical entries of different JARs are transformed once.
+     * With {@link Isolation#PROCESS} only the disk cache of the service is used.
+     *
+     * @return The cache service property, not set by default.
+     */
+    public Property<TransformedEntryCacheService> getEntryCache() {
+        return entryCache;
+    }
+
+    /**
+     * The service sharing a pool of threads and a memory budget between the JAR modification tasks of a build,
+     * so concurrent tasks neither compete for the cores with pools of their own nor hold a budget each. Only used with {@link Isolation#NONE}.
+     *
+     * @return The service property, not set by default.
+     */
+    public Property<JarModificationService> getService() {
+        return service;
+    }
+
+    /**
+     * The JSON report of the metrics of the modification, per modification class and for reading, compressing and writing entries.
+     * It describes the last execution of the task, so it is not an output: it is kept when the task is up-to-date,
+     * and missing when the output is restored from the build cache.
+     *
+     * @return The report file property, the output file with a {@code .report.json} suffix by default.
+     */
+    public RegularFileProperty getReportFile() {
+        return reportFile;
+    }
+
+    public RegularFileProperty getInputFile() {
         return inputFile;
     }
 
     public void setInputFile(Provider<RegularFile> inputFile) {
-        this.inputFile = inputFile;
+        this.inputFile.set(inputFile);
     }
 
-    public Provider<RegularFile> getOutputFile() {
+    public RegularFileProperty getOutputFile() {
         return outputFile;
     }
 
     public void setOutputFile(Provider<RegularFile> outputFile) {
-        this.outputFile = outputFile;
+        this.outputFile.set(outputFile);
     }
 
     @Inject
@@ -78,85 +248,798 @@ public class JarModificationTask extends DefaultTask {
         throw new UnsupportedOperationException();
     }
 
+    @Inject
+    protected WorkerExecutor getWorkerExecutor() {
+        throw new UnsupportedOperationException();
+    }
+
     @TaskAction
-    public void execute() throws IOException {
-        var action = new JarModificationAction(inputFile.get(), outputFile.get(), getModifications());
-        action.execute();
+    public void execute() {
+        // Without a single matching entry the output is the input as is, which is checked without a worker
+        // so the task can report that it did no work. Reproducible JARs are rewritten regardless.
+        var options = JarModificationAction.Options.DEFAULT
+                .withMemoryBudget(memoryBudget.get())
+                .withReaderBackend(readerBackend.get())
+                .withReproducible(reproducible.get());
+        var action = new JarModificationAction(inputFile.get(), outputFile.get(), modifications.get(), options);
+        if (!reproducible.get() && !action.appliesToAnyEntry()) {
+            setDidWork(action.execute().getDidWork());
+            action.report(reportFile.getAsFile().getOrNull(), getName());
+            return;
+        }
+
+        // The work runs asynchronously, so independent tasks of the same project can run meanwhile
+        var queue = switch (isolation.get()) {
+            case NONE -> getWorkerExecutor().noIsolation();
+            case PROCESS -> getWorkerExecutor().processIsolation(spec -> {
+                if (maxHeapSize.isPresent()) {
+                    spec.getForkOptions().setMaxHeapSize(maxHeapSize.get());
+                }
+            });
+        };
+        queue.submit(JarModificationWorkAction.class, parameters -> {
+            parameters.getInputFile().set(inputFile);
+            parameters.getOutputFile().set(outputFile);
+            parameters.getModifications().set(modifications);
+            parameters.getThreads().set(threads);
+            parameters.getMemoryBudget().set(memoryBudget);
+            parameters.getReaderBackend().set(readerBackend);
+            parameters.getReproducible().set(reproducible);
+            parameters.getReportFile().set(reportFile);
+            parameters.getTarget().set(getName());
+            if (service.isPresent() && isolation.get() == Isolation.NONE) {
+                parameters.getService().set(service);
+            }
+            if (entryCache.isPresent()) {
+                // Build services cannot cross process boundaries
+                if (isolation.get() == Isolation.NONE) {
+                    parameters.getEntryCache().set(entryCache);
+                } else {
+                    parameters.getEntryCacheDirectory().set(entryCache.get().getParameters().getDirectory());
+                }
+            }
+        });
     }
 
     public static class JarModificationAction {
 
+        private static final Logger LOGGER = Logging.getLogger(JarModificationAction.class);
+
+        /** The default number of bytes of entry content held in memory at once. */
+        public static final long DEFAULT_MEMORY_BUDGET = 256L * 1024 * 1024;
+
+        /** The number of entries each worker may process ahead of the writer. */
+        private static final int ENTRIES_IN_FLIGHT_PER_THREAD = 4;
+
+        /** The order of the entries of reproducible JARs: by name, with the manifest first as {@link java.util.jar.JarInputStream} expects. */
+        private static final Comparator<ZipArchiveEntry> REPRODUCIBLE_ORDER = Comparator
+                .comparingInt((ZipArchiveEntry entry) -> switch (entry.getName()) {
+                    case "META-INF/" -> 0;
+                    case JarFile.MANIFEST_NAME -> 1;
+                    default -> 2;
+                })
+                .thenComparing(ZipArchiveEntry::getName);
+
         private final RegularFile inputFile;
         private final RegularFile outputFile;
-        private final List<Modification> modifications;
+        private final int threads;
+        private final ExecutorService executor;
+        private final long memoryBudget;
+        private final MemoryBudget sharedMemory;
+        private final ZipArchiveReader.Backend readerBackend;
+        private final boolean reproducible;
+        private final ModificationIndex modificationIndex;
+        private final TransformedEntryCache entryCache;
+        private final TransformMetrics metrics;
+        private final ModificationIndex.AppliesToListener appliesToMetrics;
+        private final Map<Modification, byte[]> fingerprints = new IdentityHashMap<>();
+
+        /**
+         * How an action applies its modifications.
+         *
+         * @param threads       The number of threads used to apply modifications, or the number of entries transformed at once on a shared executor.
+         * @param executor      The executor shared with other actions, or null to transform on a pool of the action.
+         * @param entryCache    The cache of transformed entries, or null to transform every entry.
+         * @param memoryBudget  The number of bytes of entry content held in memory at once.
+         * @param sharedMemory  The budget shared with other actions, which also bounds the bytes held in memory, or null.
+         * @param readerBackend How the input JAR is read.
+         * @param reproducible  Whether entries are ordered by name and written with a constant time and fixed attributes.
+         */
+        public record Options(int threads, ExecutorService executor, TransformedEntryCache entryCache, long memoryBudget, MemoryBudget sharedMemory,
+                              ZipArchiveReader.Backend readerBackend, boolean reproducible) {
+
+            /** A single thread, no entry cache, the default memory budget and a channel reader, without reproducible output. */
+            public static final Options DEFAULT = new Options(1, null, null, DEFAULT_MEMORY_BUDGET, null, ZipArchiveReader.Backend.CHANNEL, false);
+
+            public Options {
+                if (threads < 1) {
+                    throw new IllegalArgumentException("Thread count must be at least 1, but was: " + threads);
+                }
+                if (memoryBudget < 1) {
+                    throw new IllegalArgumentException("Memory budget must be at least 1 byte, but was: " + memoryBudget);
+                }
+                Objects.requireNonNull(readerBackend, "readerBackend");
+            }
+
+            public Options withThreads(int threads) {
+                return new Options(threads, executor, entryCache, memoryBudget, sharedMemory, readerBackend, reproducible);
+            }
 
-        public JarModificationAction(RegularFile inputFile, RegularFile outputFile, List<Modification> modifications) {
+            public Options withExecutor(ExecutorService executor) {
+                return new Options(threads, executor, entryCache, memoryBudget, sharedMemory, readerBackend, reproducible);
+            }
+
+            public Options withEntryCache(TransformedEntryCache entryCache) {
+                return new Options(threads, executor, entryCache, memoryBudget, sharedMemory, readerBackend, reproducible);
+            }
+
+            public Options withMemoryBudget(long memoryBudget) {
+                return new Options(threads, executor, entryCache, memoryBudget, sharedMemory, readerBackend, reproducible);
+            }
+
+            public Options withSharedMemory(MemoryBudget sharedMemory) {
+                return new Options(threads, executor, entryCache, memoryBudget, sharedMemory, readerBackend, reproducible);
+            }
+
+            public Options withReaderBackend(ZipArchiveReader.Backend readerBackend) {
+                return new Options(threads, executor, entryCache, memoryBudget, sharedMemory, readerBackend, reproducible);
+            }
+
+            public Options withReproducible(boolean reproducible) {
+                return new Options(threads, executor, entryCache, memoryBudget, sharedMemory, readerBackend, reproducible);
+            }
+        }
+
+        /**
+         * Creates an action.
+         *
+         * @param inputFile     The JAR to modify.
+         * @param outputFile    The modified JAR.
+         * @param modifications The modifications, in the order they are applied.
+         * @param options       How the modifications are applied, e.g. {@link Options#DEFAULT}.
+         */
+        public JarModificationAction(RegularFile inputFile, RegularFile outputFile, List<Modification> modifications, Options options) {
             this.inputFile = inputFile;
             this.outputFile = outputFile;
-            this.modifications = modifications;
+            this.threads = options.threads();
+            this.executor = options.executor();
+            this.sharedMemory = options.sharedMemory() != null ? options.sharedMemory() : new MemoryBudget(options.memoryBudget());
+            // An action cannot hold more than the budget it shares
+            this.memoryBudget = Math.min(options.memoryBudget(), sharedMemory.getMaxBytes());
+            this.readerBackend = options.readerBackend();
+            this.reproducible = options.reproducible();
+            this.modificationIndex = ModificationIndex.of(modifications);
+            this.entryCache = options.entryCache();
+            this.metrics = new TransformMetrics(modifications);
+            this.appliesToMetrics = (modification, nanos, applies) -> metrics.of(modification).appliesTo(nanos, applies);
+            if (entryCache != null) {
+                for (var modification : modifications) {
+                    fingerprints.computeIfAbsent(modification, ModificationFingerprint::of);
+                }
+            }
+        }
+
+        /**
+         * Gets the metrics of the modification, filled while the JAR is transformed.
+         *
+         * @return The metrics.
+         */
+        public TransformMetrics getMetrics() {
+            return metrics;
+        }
+
+        /**
+         * Writes the report of the metrics and logs their summary, once the JAR is modified.
+         *
+         * @param reportFile The report file, or null to only log the summary.
+         * @param target     The name of the target, e.g. the task modifying the JAR.
+         */
+        public void report(File reportFile, String target) {
+            LOGGER.info(metrics.summary(target));
+            if (reportFile == null) {
+                return;
+            }
+            try {
+                metrics.writeReport(reportFile.toPath(), target, inputFile.getAsFile().toPath(), outputFile.getAsFile().toPath());
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write transform report", e);
+            }
+        }
+
+        /**
+         * Determines if a modification applies to at least one entry of the input JAR.
+         * Only the central directory is read, so this is cheap compared to modifying the JAR.
+         *
+         * @return True if at least one entry may be modified.
+         */
+        public boolean appliesToAnyEntry() {
+            try (var jarInput = ZipArchiveReader.open(inputFile.getAsFile().toPath(), readerBackend)) {
+                return appliesToAnyEntry(jarInput);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read JAR file", e);
+            }
+        }
+
+        private boolean appliesToAnyEntry(ZipArchiveReader jarInput) {
+            for (var entry : jarInput.getEntries()) {
+                var candidates = modificationIndex.candidates(entry.getName());
+                if (!candidates.isEmpty() && !ModificationIndex.filter(candidates, entry.toJarEntry()).isEmpty()) {
+                    return true;
+                }
+            }
+            return false;
         }
 
+        /**
+         * Modifies the JAR.
+         * If no entry is renamed or changed, the output is a copy of the input, and it is left untouched if it already is one.
+         * A reproducible output is always rewritten, and left untouched if it already has the same bytes.
+         *
+         * @return The result, which did no work if the output was left untouched.
+         */
         public WorkResult execute() {
+            var inputJar = inputFile.getAsFile();
+            var outputJar = outputFile.getAsFile();
+            // Write next to the output so that the final move stays on the same file system,
+            // the input is left untouched unless it is also the output
+            var tempOutputJar = new File(outputJar.getParentFile(), outputJar.getName() + ".tmp");
+            var start = System.nanoTime();
             try {
-                // Replace the input file in place
-                var inputJar = inputFile.getAsFile();
-                var outputJar = outputFile.getAsFile();
-                var tempOutputJar = new File(inputJar.getParentFile(), inputJar.getName() + ".tmp");
+                Files.createDirectories(outputJar.getParentFile().toPath());
 
                 // Read the input JAR file
-                try (var jarInput = new JarFile(inputJar);
-                     var jarOutput = new JarOutputStream(new FileOutputStream(tempOutputJar))) {
+                var changed = false;
+                try (var jarInput = ZipArchiveReader.open(inputJar.toPath(), readerBackend)) {
+                    if (reproducible || appliesToAnyEntry(jarInput)) {
+                        try (var jarOutput = new ZipArchiveWriter(new FileOutputStream(tempOutputJar));
+                             var encoder = new ZipEntryEncoder();
+                             var spillFiles = new SpillFiles(outputJar)) {
+                            var context = new TransformContext(jarInput, jarOutput, encoder, spillFiles);
+                            changed = threads > 1 ? transformParallel(context) : transformSequential(context);
+                        }
+                    }
+                }
+                if (reproducible) {
+                    return replaceOutput(tempOutputJar, outputJar);
+                }
+                if (!changed) {
+                    return keepInput(inputJar, outputJar, tempOutputJar);
+                }
+
+                // Replace the output with the modified JAR
+                Files.move(tempOutputJar.toPath(), outputJar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                return WorkResults.didWork(true);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to modify JAR file", e);
+            } finally {
+                metrics.duration(System.nanoTime() - start);
+                tempOutputJar.delete();
+            }
+        }
+
+        /**
+         * Makes the output a copy of the input, keeping the original bytes instead of the rewritten ones.
+         */
+        private static WorkResult keepInput(File inputJar, File outputJar, File tempOutputJar) throws IOException {
+            var input = inputJar.toPath();
+            var output = outputJar.toPath();
+            if (Files.exists(output) && (Files.isSameFile(input, output) || Files.mismatch(input, output) == -1)) {
+                return WorkResults.didWork(false);
+            }
+            Files.copy(input, tempOutputJar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tempOutputJar.toPath(), output, StandardCopyOption.REPLACE_EXISTING);
+            return WorkResults.didWork(true);
+        }
+
+        /**
+         * Replaces the output with the rewritten JAR, unless it already has the same bytes.
+         */
+        private static WorkResult replaceOutput(File tempOutputJar, File outputJar) throws IOException {
+            var output = outputJar.toPath();
+            if (Files.exists(output) && Files.mismatch(tempOutputJar.toPath(), output) == -1) {
+                return WorkResults.didWork(false);
+            }
+            Files.move(tempOutputJar.toPath(), output, StandardCopyOption.REPLACE_EXISTING);
+            return WorkResults.didWork(true);
+        }
+
+        /**
+         * Gets the entries of the input in the order they are written.
+         */
+        private List<ZipArchiveEntry> entries(TransformContext context) {
+            var entries = context.jarInput().getEntries();
+            if (!reproducible) {
+                return entries;
+            }
+            var ordered = new ArrayList<>(entries);
+            ordered.sort(REPRODUCIBLE_ORDER);
+            return ordered;
+        }
 
-                    jarInput.entries().asIterator().forEachRemaining(entry -> {
+        /**
+         * Transforms every entry on the calling thread.
+         *
+         * @return True if at least one entry was renamed or changed.
+         */
+        private boolean transformSequential(TransformContext context) throws IOException {
+            var changed = false;
+            for (var entry : entries(context)) {
+                var footprint = isLarge(entry) ? 0 : footprint(entry);
+                acquire(footprint);
+                try {
+                    changed |= write(context, entry, transform(context, entry));
+                } finally {
+                    sharedMemory.release(footprint);
+                }
+            }
+            return changed;
+        }
+
+        /**
+         * Transforms the entries on the shared executor, or on a pool of worker threads of this action.
+         *
+         * @return True if at least one entry was renamed or changed.
+         */
+        private boolean transformParallel(TransformContext context) throws IOException {
+            var executor = this.executor != null ? this.executor : Executors.newFixedThreadPool(threads, new WorkerThreadFactory());
+            // Entries are transformed on the pool while this thread writes them back in order.
+            // The window bounds how many transformed entries, and how many bytes of them, are held in memory at once,
+            // and its bytes are reserved from the budget shared with concurrent actions.
+            var window = new ArrayDeque<InFlightEntry>();
+            try {
+                var windowSize = threads * ENTRIES_IN_FLIGHT_PER_THREAD;
+                var windowBytes = 0L;
+                var changed = false;
+                for (var entry : entries(context)) {
+                    var footprint = isLarge(entry) ? 0 : footprint(entry);
+                    while (!window.isEmpty() && (window.size() >= windowSize || windowBytes + footprint > memoryBudget || !sharedMemory.tryAcquire(footprint))) {
+                        var written = window.poll();
                         try {
-                            // Find modifications that apply to this entry
-                            var applicableModifications = modifications.stream()
-                                    .filter(modification -> modification.appliesTo(entry))
-                                    .toList();
-
-                            if (!applicableModifications.isEmpty()) {
-                                // Read the entry content into a byte array
-                                byte[] entryContent;
-                                try (InputStream inputStream = jarInput.getInputStream(entry)) {
-                                    entryContent = inputStream.readAllBytes();
-                                }
-
-                                // Apply modifications sequentially
-                                var modifiedEntry = entry; // Start with the original entry
-                                for (var modification : applicableModifications) {
-                                    modifiedEntry = modification.apply(modifiedEntry);
-                                    entryContent = modification.apply(entryContent);
-                                }
-
-                                // Write the modified entry to the output JAR
-                                jarOutput.putNextEntry(modifiedEntry);
-                                jarOutput.write(entryContent);
-                                jarOutput.closeEntry();
-                            } else {
-                                // Copy the entry as-is
-                                try (InputStream inputStream = jarInput.getInputStream(entry)) {
-                                    var outputEntry = new JarEntry(entry.getName());
-                                    jarOutput.putNextEntry(outputEntry);
-                                    jarOutput.write(inputStream.readAllBytes());
-                                    jarOutput.closeEntry();
-                                }
-                            }
-                        } catch (IOException e) {
-                            throw new RuntimeException("Failed to process JAR entry: " + entry.getName(), e);
+                            changed |= write(context, written.entry(), await(written.future()));
+                        } finally {
+                            windowBytes -= written.footprint();
+                            sharedMemory.release(written.footprint());
                         }
-                    });
+                    }
+                    if (window.isEmpty()) {
+                        // Nothing left to write, so wait for concurrent actions to release bytes
+                        acquire(footprint);
+                    }
+                    window.add(new InFlightEntry(entry, executor.submit(() -> transform(context, entry)), footprint));
+                    windowBytes += footprint;
                 }
-
-                // Replace the original JAR with the modified one
-                if (inputJar.delete()) {
-                    if (tempOutputJar.renameTo(outputJar)) {
-                        return WorkResults.didWork(true);
+                while (!window.isEmpty()) {
+                    var written = window.poll();
+                    try {
+                        changed |= write(context, written.entry(), await(written.future()));
+                    } finally {
+                        sharedMemory.release(written.footprint());
                     }
                 }
+                return changed;
+            } finally {
+                if (executor != this.executor) {
+                    executor.shutdownNow();
+                } else {
+                    // The shared executor outlives a failed action, which leaves nothing behind on it
+                    window.forEach(inFlight -> inFlight.future().cancel(true));
+                }
+                window.forEach(inFlight -> sharedMemory.release(inFlight.footprint()));
+            }
+        }
+
+        /**
+         * Reserves the bytes of an entry from the shared budget, waiting for concurrent actions to release them if needed.
+         * Callers hold no other reservation, so actions never wait on each other.
+         */
+        private void acquire(long footprint) throws IOException {
+            try {
+                sharedMemory.acquire(footprint);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for memory to transform JAR entries", e);
+            }
+        }
+
+        /**
+         * Estimates the memory needed to transform an entry in memory: its raw and encoded data, and its content before and after modification.
+         */
+        private static long footprint(ZipArchiveEntry entry) {
+            return 2 * (entry.getCompressedSize() + entry.getSize());
+        }
 
-                throw new IllegalStateException("Failed to replace the original JAR file.");
+        /**
+         * Determines if an entry is too large for the memory budget share of a thread, and must be streamed.
+         */
+        private boolean isLarge(ZipArchiveEntry entry) {
+            return footprint(entry) > memoryBudget / threads;
+        }
+
+        private TransformedEntry transform(TransformContext context, ZipArchiveEntry entry) throws IOException {
+            try {
+                return transformEntry(context, entry);
             } catch (IOException e) {
-                throw new RuntimeException("Failed to modify JAR file", e);
+                throw new IOException("Failed to process JAR entry: " + entry.getName(), e);
+            }
+        }
+
+        private TransformedEntry transformEntry(TransformContext context, ZipArchiveEntry entry) throws IOException {
+            // Find modifications that apply to this entry
+            var applicableModifications = modificationIndex.candidates(entry.getName());
+            JarEntry jarEntry = null;
+            if (!applicableModifications.isEmpty()) {
+                jarEntry = entry.toJarEntry();
+                applicableModifications = ModificationIndex.filter(applicableModifications, jarEntry, appliesToMetrics);
+            }
+
+            // Large entries are never read into memory, classes excepted as they can only be modified as a whole
+            if (isLarge(entry) && !entry.getName().endsWith(ClassModification.CLASS_EXTENSION)) {
+                return transformLarge(context, entry, jarEntry, applicableModifications);
+            }
+
+            // Entries without modifications keep their compressed data, CRC and sizes
+            var start = System.nanoTime();
+            var rawContent = context.jarInput().readRawBuffer(entry);
+            if (applicableModifications.isEmpty()) {
+                metrics.read(System.nanoTime() - start, entry.getCompressedSize());
+                return new TransformedEntry(entry, rawContent);
+            }
+
+            // Identical entries with the same modifications are only transformed once
+            var cacheKey = entryCache == null ? null
+                    : TransformedEntryCache.key(entry.getName(), entry.getMethod(), rawContent, applicableModifications, fingerprints);
+            if (cacheKey != null) {
+                var cached = entryCache.get(cacheKey);
+                if (cached != null) {
+                    metrics.read(System.nanoTime() - start, entry.getCompressedSize());
+                    metrics.cached();
+                    return restore(entry, rawContent, cached);
+                }
+            }
+
+            // Read the entry content into a byte array
+            var originalContent = ZipArchiveReader.decompress(entry, rawContent);
+            metrics.read(System.nanoTime() - start, entry.getCompressedSize());
+
+            // Skip class modifications that cannot match, judging by the constant pool
+            if (entry.getName().endsWith(ClassModification.CLASS_EXTENSION)) {
+                applicableModifications = ClassIndex.filter(originalContent, applicableModifications);
+                if (applicableModifications.isEmpty()) {
+                    cache(cacheKey, CachedEntry.unchanged(entry.getName()));
+                    return new TransformedEntry(entry, rawContent);
+                }
+            }
+
+            // Apply modifications sequentially
+            var modifiedEntry = jarEntry; // Start with the original entry
+            var entryContent = originalContent;
+            var modified = new boolean[applicableModifications.size()];
+            try {
+                modifiedEntry = applyName(applicableModifications, modifiedEntry, modified);
+                entryContent = applyContent(applicableModifications, entryContent, modified);
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Failed to process JAR entry: " + entry.getName(), e);
+            }
+            recordModified(applicableModifications, modified);
+
+            // Entries that were only renamed are copied without being encoded again
+            if (entryContent == originalContent || Arrays.equals(entryContent, originalContent)) {
+                cache(cacheKey, CachedEntry.unchanged(modifiedEntry.getName()));
+                return new TransformedEntry(entry.withName(modifiedEntry.getName()), rawContent);
+            }
+
+            var time = modifiedEntry.getTime() != -1 ? modifiedEntry.getTime() : entry.getTime();
+            start = System.nanoTime();
+            var encoded = context.encoder().encode(modifiedEntry.getName(), time, entryContent);
+            metrics.compress(System.nanoTime() - start, encoded.entry().getCompressedSize());
+            if (time == entry.getTime()) {
+                // Cached entries take the time of the entry they replace, so entries given another time are not cached
+                var encodedEntry = encoded.entry();
+                cache(cacheKey, new CachedEntry(encodedEntry.getName(), encodedEntry.getMethod(), encodedEntry.getCrc(),
+                        encodedEntry.getCompressedSize(), encodedEntry.getSize(), encoded.data()));
+            }
+            return new TransformedEntry(encoded.entry(), ByteBuffer.wrap(encoded.data()));
+        }
+
+        /**
+         * Transforms an entry without holding its content in memory.
+         * The content is streamed through the modifications, with a temporary file between each of them,
+         * and the encoded result is spilled to a temporary file until it is written.
+         * Large entries are not cached.
+         */
+        private TransformedEntry transformLarge(TransformContext context, ZipArchiveEntry entry, JarEntry jarEntry, List<Modification> modifications) throws IOException {
+            if (modifications.isEmpty()) {
+                return TransformedEntry.copied(entry, entry);
+            }
+
+            var modifiedEntry = jarEntry;
+            var modified = new boolean[modifications.size()];
+            var contentModifications = new ArrayList<Modification>();
+            try {
+                modifiedEntry = applyName(modifications, modifiedEntry, modified);
+                for (var modification : modifications) {
+                    if (modification.modifiesContent()) {
+                        contentModifications.add(modification);
+                    }
+                }
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Failed to process JAR entry: " + entry.getName(), e);
+            }
+
+            // Entries that are only renamed are copied without being decompressed
+            if (contentModifications.isEmpty()) {
+                recordModified(modifications, modified);
+                return TransformedEntry.copied(entry.withName(modifiedEntry.getName()), entry);
+            }
+
+            var spillFiles = context.spillFiles();
+            Path intermediate = null;
+            try {
+                for (var modification : contentModifications.subList(0, contentModifications.size() - 1)) {
+                    var next = spillFiles.create();
+                    var start = System.nanoTime();
+                    try (var input = open(context, entry, intermediate);
+                         var output = new BufferedOutputStream(Files.newOutputStream(next))) {
+                        modification.apply(input, output);
+                    }
+                    metrics.of(modification).apply(System.nanoTime() - start, intermediate == null ? entry.getSize() : Files.size(intermediate), Files.size(next));
+                    spillFiles.delete(intermediate);
+                    intermediate = next;
+                }
+
+                var last = contentModifications.get(contentModifications.size() - 1);
+                var source = intermediate;
+                var time = modifiedEntry.getTime() != -1 ? modifiedEntry.getTime() : entry.getTime();
+                var spill = spillFiles.create();
+                try (var output = new BufferedOutputStream(Files.newOutputStream(spill))) {
+                    var bytesIn = source == null ? entry.getSize() : Files.size(source);
+                    var start = System.nanoTime();
+                    var encoded = context.encoder().encode(modifiedEntry.getName(), time, content -> {
+                        try (var input = open(context, entry, source)) {
+                            last.apply(input, content);
+                        }
+                    }, output);
+                    // The content is compressed while the last modification streams it, so the compression counts as part of it
+                    metrics.of(last).apply(System.nanoTime() - start, bytesIn, encoded.getSize());
+                    if (encoded.getCrc() != entry.getCrc() || encoded.getSize() != entry.getSize()) {
+                        for (var index = 0; index < modifications.size(); index++) {
+                            modified[index] |= modifications.get(index).modifiesContent();
+                        }
+                    }
+                    recordModified(modifications, modified);
+                    return TransformedEntry.spilled(encoded, spill);
+                }
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Failed to process JAR entry: " + entry.getName(), e);
+            } finally {
+                spillFiles.delete(intermediate);
+            }
+        }
+
+        private static InputStream open(TransformContext context, ZipArchiveEntry entry, Path intermediate) throws IOException {
+            if (intermediate == null) {
+                return new BufferedInputStream(context.jarInput().open(entry));
+            }
+            return new BufferedInputStream(Files.newInputStream(intermediate));
+        }
+
+        private void cache(String cacheKey, CachedEntry cached) {
+            if (cacheKey != null) {
+                entryCache.put(cacheKey, cached);
+            }
+        }
+
+        private static TransformedEntry restore(ZipArchiveEntry entry, ByteBuffer rawContent, CachedEntry cached) {
+            if (cached.isUnchanged()) {
+                return new TransformedEntry(entry.withName(cached.name()), rawContent);
+            }
+            var restored = ZipArchiveEntry.of(cached.name(), cached.method(), entry.getTime(), cached.crc(), cached.compressedSize(), cached.size());
+            return new TransformedEntry(restored, ByteBuffer.wrap(cached.data()));
+        }
+
+        /**
+         * Applies the modifications to the name of an entry in order.
+         *
+         * @param modified Set for the modifications that renamed the entry.
+         */
+        private JarEntry applyName(List<Modification> modifications, JarEntry entry, boolean[] modified) {
+            for (var index = 0; index < modifications.size(); index++) {
+                var modification = modifications.get(index);
+                var start = System.nanoTime();
+                var modifiedEntry = modification.apply(entry);
+                metrics.of(modification).apply(System.nanoTime() - start);
+                modified[index] |= !modifiedEntry.getName().equals(entry.getName());
+                entry = modifiedEntry;
+            }
+            return entry;
+        }
+
+        /**
+         * Applies the content modifications in order.
+         * Consecutive class modifications are fused into a single ASM pass, so the class is only parsed and written once.
+         * The modifications of a pass share its time equally.
+         *
+         * @param modified Set for the modifications that changed the content.
+         */
+        private byte[] applyContent(List<Modification> modifications, byte[] content, boolean[] modified) {
+            var classModifications = new ArrayList<ClassModification>();
+            for (var index = 0; index < modifications.size(); index++) {
+                var modification = modifications.get(index);
+                if (modification instanceof ClassModification classModification) {
+                    classModifications.add(classModification);
+                    continue;
+                }
+                if (!classModifications.isEmpty()) {
+                    content = applyClass(classModifications, index - classModifications.size(), content, modified);
+                    classModifications.clear();
+                }
+                var start = System.nanoTime();
+                var modifiedContent = modification.apply(content);
+                if (modification.modifiesContent()) {
+                    metrics.of(modification).apply(System.nanoTime() - start, content.length, modifiedContent.length);
+                } else {
+                    metrics.of(modification).apply(System.nanoTime() - start);
+                }
+                modified[index] |= modifiedContent != content && !Arrays.equals(modifiedContent, content);
+                content = modifiedContent;
+            }
+            if (!classModifications.isEmpty()) {
+                content = applyClass(classModifications, modifications.size() - classModifications.size(), content, modified);
+            }
+            return content;
+        }
+
+        private byte[] applyClass(List<ClassModification> modifications, int offset, byte[] content, boolean[] modified) {
+            var start = System.nanoTime();
+            var modifiedContent = ClassModification.apply(content, modifications);
+            var share = (System.nanoTime() - start) / modifications.size();
+            var changed = modifiedContent != content && !Arrays.equals(modifiedContent, content);
+            for (var index = 0; index < modifications.size(); index++) {
+                metrics.of(modifications.get(index)).apply(share, content.length, modifiedContent.length);
+                modified[offset + index] |= changed;
+            }
+            return modifiedContent;
+        }
+
+        private void recordModified(List<Modification> modifications, boolean[] modified) {
+            for (var index = 0; index < modifications.size(); index++) {
+                if (modified[index]) {
+                    metrics.of(modifications.get(index)).modified();
+                }
+            }
+        }
+
+        /**
+         * Writes a transformed entry.
+         * Reproducible entries are normalized here, so cached transformations are shared with JARs that are not reproducible.
+         *
+         * @return True if the entry was renamed or changed. Entries kept as they are remain the very same instance.
+         */
+        private boolean write(TransformContext context, ZipArchiveEntry entry, TransformedEntry transformed) throws IOException {
+            var written = reproducible ? transformed.entry().normalized() : transformed.entry();
+            var start = System.nanoTime();
+            if (transformed.data() != null) {
+                context.jarOutput().write(written, transformed.data());
+            } else if (transformed.spill() != null) {
+                try (var input = Files.newInputStream(transformed.spill())) {
+                    context.jarOutput().write(written, input);
+                } finally {
+                    context.spillFiles().delete(transformed.spill());
+                }
+            } else {
+                try (var input = context.jarInput().openRaw(transformed.source())) {
+                    context.jarOutput().write(written, input);
+                }
+            }
+            metrics.write(System.nanoTime() - start, written.getCompressedSize());
+            return written != entry;
+        }
+
+        private static TransformedEntry await(Future<TransformedEntry> future) throws IOException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for JAR entry transformation", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException ioException) {
+                    throw ioException;
+                }
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        /**
+         * An entry after all applicable modifications have been applied, ready to be written.
+         * Its encoded data is either held in memory, spilled to a temporary file or copied from the input when written.
+         *
+         * @param entry  The entry to write.
+         * @param data   The encoded data of the entry, possibly a slice of the mapped input, or null if it is not held in memory.
+         * @param spill  The temporary file holding the encoded data, or null.
+         * @param source The input entry whose raw data is copied, or null.
+         */
+        private record TransformedEntry(ZipArchiveEntry entry, ByteBuffer data, Path spill, ZipArchiveEntry source) {
+
+            TransformedEntry(ZipArchiveEntry entry, ByteBuffer data) {
+                this(entry, data, null, null);
+            }
+
+            static TransformedEntry spilled(ZipArchiveEntry entry, Path spill) {
+                return new TransformedEntry(entry, null, spill, null);
+            }
+
+            static TransformedEntry copied(ZipArchiveEntry entry, ZipArchiveEntry source) {
+                return new TransformedEntry(entry, null, null, source);
+            }
+        }
+
+        /**
+         * An entry submitted to the pool, with the memory reserved for it.
+         */
+        private record InFlightEntry(ZipArchiveEntry entry, Future<TransformedEntry> future, long footprint) {
+        }
+
+        /**
+         * The archives and helpers shared by all entries of a transformation.
+         */
+        private record TransformContext(ZipArchiveReader jarInput, ZipArchiveWriter jarOutput, ZipEntryEncoder encoder, SpillFiles spillFiles) {
+        }
+
+        /**
+         * Temporary files holding the content of large entries, in a directory next to the output that is created on first use.
+         * Closing deletes the directory with any file left behind by a failed transformation.
+         */
+        private static final class SpillFiles implements Closeable {
+
+            private final File outputJar;
+            private Path directory;
+
+            private SpillFiles(File outputJar) {
+                this.outputJar = outputJar;
+            }
+
+            synchronized Path create() throws IOException {
+                if (directory == null) {
+                    directory = Files.createTempDirectory(outputJar.getParentFile().toPath(), outputJar.getName() + ".spill");
+                }
+                return Files.createTempFile(directory, "entry", ".tmp");
+            }
+
+            void delete(Path file) throws IOException {
+                if (file != null) {
+                    Files.deleteIfExists(file);
+                }
+            }
+
+            @Override
+            public synchronized void close() throws IOException {
+                if (directory == null) {
+                    return;
+                }
+                try (Stream<Path> files = Files.list(directory)) {
+                    for (var file : (Iterable<Path>) files::iterator) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+                Files.deleteIfExists(directory);
+            }
+        }
+
+        /**
+         * Creates daemon worker threads so a failed build never waits on the pool.
+         */
+        static final class WorkerThreadFactory implements ThreadFactory {
+
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                var thread = new Thread(runnable, "jar-modification-worker-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
             }
         }
     }
@@ -0,0 +1,80 @@
+package dev.huskuraft.universal.gradle.task;
+
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+import dev.huskuraft.universal.gradle.task.cache.TransformedEntryCache;
+import dev.huskuraft.universal.gradle.task.cache.TransformedEntryCacheService;
+import dev.huskuraft.universal.gradle.task.modification.Modification;
+import dev.huskuraft.universal.gradle.zip.ZipArchiveReader;
+
+/**
+ * Runs a {@link JarModificationTask.JarModificationAction} through the Gradle Worker API,
+ * so JARs of independent tasks are modified concurrently, optionally in a separate process.
+ * The modifications are serialized when submitted, so they must be {@link java.io.Serializable}.
+ */
+public abstract class JarModificationWorkAction implements WorkAction<JarModificationWorkAction.Parameters> {
+
+    /**
+     * The parameters of a JAR modification.
+     */
+    public interface Parameters extends WorkParameters {
+
+        RegularFileProperty getInputFile();
+
+        RegularFileProperty getOutputFile();
+
+        ListProperty<Modification> getModifications();
+
+        Property<Integer> getThreads();
+
+        Property<Long> getMemoryBudget();
+
+        Property<ZipArchiveReader.Backend> getReaderBackend();
+
+        Property<Boolean> getReproducible();
+
+        RegularFileProperty getReportFile();
+
+        Property<String> getTarget();
+
+        Property<TransformedEntryCacheService> getEntryCache();
+
+        Property<JarModificationService> getService();
+
+        DirectoryProperty getEntryCacheDirectory();
+    }
+
+    @Override
+    public void execute() {
+        var parameters = getParameters();
+        TransformedEntryCache entryCache = null;
+        if (parameters.getEntryCache().isPresent()) {
+            entryCache = parameters.getEntryCache().get().getCache();
+        } else if (parameters.getEntryCacheDirectory().isPresent()) {
+            // In a worker process only the disk cache is shared with other tasks
+            entryCache = new TransformedEntryCache(0, parameters.getEntryCacheDirectory().get().getAsFile().toPath());
+        }
+        var options = new JarModificationTask.JarModificationAction.Options(
+                parameters.getThreads().get(),
+                parameters.getService().isPresent() ? parameters.getService().get().getExecutor() : null,
+                entryCache,
+                parameters.getMemoryBudget().get(),
+                parameters.getService().isPresent() ? parameters.getService().get().getMemoryBudget() : null,
+                parameters.getReaderBackend().get(),
+                parameters.getReproducible().get()
+        );
+        var action = new JarModificationTask.JarModificationAction(
+                parameters.getInputFile().get(),
+                parameters.getOutputFile().get(),
+                parameters.getModifications().get(),
+                options
+        );
+        action.execute();
+        action.report(parameters.getReportFile().getAsFile().getOrNull(), parameters.getTarget().get());
+    }
+}
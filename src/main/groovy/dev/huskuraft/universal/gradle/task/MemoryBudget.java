@@ -0,0 +1,75 @@
+package dev.huskuraft.universal.gradle.task;
+
+/**
+ * A number of bytes of entry content shared by concurrent JAR modifications, so the entries they hold in memory fit in the heap together.
+ * Bytes are reserved before an entry is transformed and released once it is written.
+ * The budget is safe to use from multiple threads.
+ */
+public final class MemoryBudget {
+
+    private final long maxBytes;
+    private long availableBytes;
+
+    /**
+     * Creates a budget.
+     *
+     * @param maxBytes The number of bytes that may be reserved at once.
+     */
+    public MemoryBudget(long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("Memory budget must be at least 1 byte, but was: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.availableBytes = maxBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Reserves bytes if they are available.
+     *
+     * @param bytes The number of bytes, at most {@link #getMaxBytes()}.
+     * @return True if the bytes were reserved.
+     */
+    public synchronized boolean tryAcquire(long bytes) {
+        checkBytes(bytes);
+        if (bytes > availableBytes) {
+            return false;
+        }
+        availableBytes -= bytes;
+        return true;
+    }
+
+    /**
+     * Reserves bytes, waiting until other reservations release enough of them.
+     * Callers must not hold reservations of their own while waiting, or concurrent callers may wait on each other.
+     *
+     * @param bytes The number of bytes, at most {@link #getMaxBytes()}.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public synchronized void acquire(long bytes) throws InterruptedException {
+        checkBytes(bytes);
+        while (bytes > availableBytes) {
+            wait();
+        }
+        availableBytes -= bytes;
+    }
+
+    /**
+     * Releases reserved bytes.
+     *
+     * @param bytes The number of bytes.
+     */
+    public synchronized void release(long bytes) {
+        availableBytes += bytes;
+        notifyAll();
+    }
+
+    private void checkBytes(long bytes) {
+        if (bytes < 0 || bytes > maxBytes) {
+            throw new IllegalArgumentException("Cannot reserve " + bytes + " bytes of a budget of " + maxBytes + " bytes");
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package dev.huskuraft.universal.gradle.task.cache;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.stream.Stream;
+
+import org.objectweb.asm.ClassVisitor;
+
+import dev.huskuraft.universal.gradle.task.modification.Modification;
+
+/**
+ * Computes stable fingerprints of modifications, used to key the outputs they produce.
+ * A fingerprint covers the bytecode of the modification class and its superclasses as well as the serialized state,
+ * so it changes when either the configuration or the implementation of the modification changes.
+ * It also covers the build of the plugin and of ASM, since modifications rely on helpers outside their own class hierarchy.
+ */
+public final class ModificationFingerprint {
+
+    private static volatile byte[] buildIdentity;
+
+    private ModificationFingerprint() {
+    }
+
+    /**
+     * Computes the fingerprint of a modification.
+     *
+     * @param modification The modification.
+     * @return The SHA-256 fingerprint, or null if the modification cannot be fingerprinted, e.g. if it is not serializable.
+     */
+    public static byte[] of(Modification modification) {
+        var identity = buildIdentity();
+        return identity == null ? null : of(modification, identity);
+    }
+
+    static byte[] of(Modification modification, byte[] buildIdentity) {
+        var digest = newDigest();
+        digest.update(buildIdentity);
+        try {
+            // The implementation
+            for (Class<?> type = modification.getClass(); type != null && type != Object.class; type = type.getSuperclass()) {
+                digest.update(type.getName().getBytes(StandardCharsets.UTF_8));
+                try (var bytecode = type.getResourceAsStream("/" + type.getName().replace('.', '/') + ".class")) {
+                    if (bytecode == null) {
+                        return null;
+                    }
+                    digest.update(bytecode.readAllBytes());
+                }
+            }
+
+            // The configuration
+            try (var output = new ObjectOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), digest))) {
+                output.writeObject(modification);
+            }
+        } catch (IOException e) {
+            // Not serializable, or the bytecode cannot be read
+            return null;
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Computes the identity of the build of the plugin, a hash of the code sources of the plugin and of ASM.
+     *
+     * @return The SHA-256 identity, or null if a code source cannot be read and the plugin has no implementation version.
+     */
+    static byte[] buildIdentity() {
+        var identity = buildIdentity;
+        if (identity == null) {
+            var digest = newDigest();
+            try {
+                for (var type : new Class<?>[]{ModificationFingerprint.class, ClassVisitor.class}) {
+                    hashCodeSource(type, digest);
+                }
+            } catch (IOException | URISyntaxException | RuntimeException e) {
+                // E.g. a code source that is not a file, fall back to the version of the plugin
+                var version = ModificationFingerprint.class.getPackage().getImplementationVersion();
+                if (version == null) {
+                    return null;
+                }
+                digest = newDigest();
+                digest.update(version.getBytes(StandardCharsets.UTF_8));
+            }
+            buildIdentity = identity = digest.digest();
+        }
+        return identity;
+    }
+
+    private static void hashCodeSource(Class<?> type, MessageDigest digest) throws IOException, URISyntaxException {
+        var codeSource = type.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null) {
+            throw new IOException("No code source for " + type.getName());
+        }
+        var location = Path.of(codeSource.getLocation().toURI());
+        if (!Files.isDirectory(location)) {
+            digest.update(Files.readAllBytes(location));
+            return;
+        }
+        // Classes directories during development, hashed in a stable order
+        try (Stream<Path> files = Files.walk(location)) {
+            for (var file : files.filter(Files::isRegularFile).sorted().toList()) {
+                digest.update(location.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                digest.update(Files.readAllBytes(file));
+            }
+        }
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
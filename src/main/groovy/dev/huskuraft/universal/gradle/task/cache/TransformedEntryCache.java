@@ -0,0 +1,278 @@
+package dev.huskuraft.universal.gradle.task.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import dev.huskuraft.universal.gradle.task.modification.Modification;
+
+/**
+ * A content-addressed cache of transformed JAR entries.
+ * Entries are keyed by their name, their content and the fingerprints of the modifications applied to them,
+ * so identical entries of different JARs, e.g. the relocated classes shared by all targets, are transformed once.
+ * Outputs are kept in memory up to a byte budget and, if a directory is given, on disk across builds.
+ * Disk entries are stored in a subdirectory per format version and touched when read, so {@link #cleanup} can delete those no build used for a while.
+ * The cache is safe to use from multiple threads.
+ */
+public final class TransformedEntryCache {
+
+    private static final int DISK_FORMAT_VERSION = 1;
+    /** The file whose modification time records the last cleanup of the disk cache. */
+    private static final String CLEANUP_MARKER = "cleanup";
+    private static final Duration CLEANUP_INTERVAL = Duration.ofDays(1);
+
+    private final long maxMemoryBytes;
+    private final Path directory;
+    private final Map<String, CachedEntry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong memoryBytes = new AtomicLong();
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxMemoryBytes The maximum number of content bytes kept in memory.
+     * @param directory      The directory of the disk cache, or null to only cache in memory. It may be shared with other caches,
+     *                       the entries are kept in a subdirectory of it.
+     */
+    public TransformedEntryCache(long maxMemoryBytes, Path directory) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = directory == null ? null : directory.resolve("entries-v" + DISK_FORMAT_VERSION);
+    }
+
+    /**
+     * A transformed entry, either re-encoded or copied as is under a possibly different name.
+     *
+     * @param name           The name of the transformed entry.
+     * @param method         The compression method of the data.
+     * @param crc            The CRC-32 of the uncompressed content.
+     * @param compressedSize The size of the data.
+     * @param size           The size of the uncompressed content.
+     * @param data           The compressed data, or null if the original data is kept.
+     */
+    public record CachedEntry(String name, int method, long crc, long compressedSize, long size, byte[] data) {
+
+        public static CachedEntry unchanged(String name) {
+            return new CachedEntry(name, -1, -1, -1, -1, null);
+        }
+
+        public boolean isUnchanged() {
+            return data == null;
+        }
+    }
+
+    /**
+     * Computes the key of an entry.
+     *
+     * @param name          The name of the entry.
+     * @param method        The compression method of the raw data.
+     * @param rawContent    The raw, possibly compressed, data of the entry. Its position is left unchanged.
+     * @param modifications The modifications applied to the entry, in order.
+     * @param fingerprints  The fingerprints of the modifications.
+     * @return The key, or null if one of the modifications has no fingerprint.
+     */
+    public static String key(String name, int method, ByteBuffer rawContent, List<Modification> modifications, Map<Modification, byte[]> fingerprints) {
+        var digest = ModificationFingerprint.newDigest();
+        for (var modification : modifications) {
+            var fingerprint = fingerprints.get(modification);
+            if (fingerprint == null) {
+                return null;
+            }
+            digest.update(fingerprint);
+        }
+        digest.update(name.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update((byte) method);
+        digest.update(rawContent.duplicate());
+
+        var hash = digest.digest();
+        var key = new StringBuilder(hash.length * 2);
+        for (var value : hash) {
+            key.append(Character.forDigit((value >> 4) & 0xF, 16)).append(Character.forDigit(value & 0xF, 16));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Gets a transformed entry.
+     *
+     * @param key The key of the entry.
+     * @return The transformed entry, or null if it is not cached.
+     */
+    public CachedEntry get(String key) {
+        var entry = entries.get(key);
+        if (entry == null && directory != null) {
+            entry = read(key);
+            if (entry != null) {
+                remember(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Stores a transformed entry.
+     *
+     * @param key   The key of the entry.
+     * @param entry The transformed entry.
+     */
+    public void put(String key, CachedEntry entry) {
+        remember(key, entry);
+        if (directory != null) {
+            write(key, entry);
+        }
+    }
+
+    /**
+     * Deletes the disk entries that were neither written nor read for a while.
+     * The entries are only scanned once a day, so closing every build with a cleanup stays cheap.
+     *
+     * @param maxUnused How long an entry is kept without being used.
+     */
+    public void cleanup(Duration maxUnused) {
+        if (directory == null || !Files.isDirectory(directory)) {
+            return;
+        }
+        var now = System.currentTimeMillis();
+        var marker = directory.resolve(CLEANUP_MARKER);
+        try {
+            if (Files.exists(marker) && Files.getLastModifiedTime(marker).toMillis() > now - CLEANUP_INTERVAL.toMillis()) {
+                return;
+            }
+            Files.write(marker, new byte[0]);
+            var expiry = now - maxUnused.toMillis();
+            try (Stream<Path> paths = Files.walk(directory)) {
+                // Deepest paths first, so directories left empty are deleted after their entries
+                for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    if (path.equals(directory) || path.equals(marker)) {
+                        continue;
+                    }
+                    if (Files.isDirectory(path)) {
+                        try (Stream<Path> files = Files.list(path)) {
+                            if (files.findAny().isEmpty()) {
+                                Files.deleteIfExists(path);
+                            }
+                        }
+                    } else if (Files.getLastModifiedTime(path).toMillis() < expiry) {
+                        Files.deleteIfExists(path);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // The cleanup is best effort, it is tried again by the next build
+        }
+    }
+
+    /**
+     * Gets the number of entries held in memory.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private void remember(String key, CachedEntry entry) {
+        var bytes = entry.isUnchanged() ? 0 : entry.data().length;
+        if (memoryBytes.addAndGet(bytes) > maxMemoryBytes) {
+            // Over budget, later entries are only kept on disk
+            memoryBytes.addAndGet(-bytes);
+            return;
+        }
+        if (entries.putIfAbsent(key, entry) != null) {
+            memoryBytes.addAndGet(-bytes);
+        }
+    }
+
+    private Path path(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    private CachedEntry read(String key) {
+        var path = path(key);
+        try (var input = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(path)))) {
+            if (input.readInt() != DISK_FORMAT_VERSION) {
+                return null;
+            }
+            var name = input.readUTF();
+            if (input.readBoolean()) {
+                touch(path);
+                return CachedEntry.unchanged(name);
+            }
+            var method = input.readInt();
+            var crc = input.readLong();
+            var compressedSize = input.readLong();
+            var size = input.readLong();
+            var data = input.readNBytes(input.readInt());
+            if (data.length != compressedSize) {
+                return null;
+            }
+            touch(path);
+            return new CachedEntry(name, method, crc, compressedSize, size, data);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            // A corrupted or concurrently written file is a cache miss
+            return null;
+        }
+    }
+
+    /**
+     * Marks an entry as used, so the cleanup keeps it.
+     */
+    private static void touch(Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // A concurrently deleted entry is written again when missed
+        }
+    }
+
+    private void write(String key, CachedEntry entry) {
+        var path = path(key);
+        if (Files.exists(path)) {
+            return;
+        }
+        try {
+            var bytes = new ByteArrayOutputStream();
+            try (var output = new DataOutputStream(bytes)) {
+                output.writeInt(DISK_FORMAT_VERSION);
+                output.writeUTF(entry.name());
+                output.writeBoolean(entry.isUnchanged());
+                if (!entry.isUnchanged()) {
+                    output.writeInt(entry.method());
+                    output.writeLong(entry.crc());
+                    output.writeLong(entry.compressedSize());
+                    output.writeLong(entry.size());
+                    output.writeInt(entry.data().length);
+                    output.write(entry.data());
+                }
+            }
+            Files.createDirectories(path.getParent());
+            // Write to a unique file first so readers never see a partial entry
+            var temp = Files.createTempFile(path.getParent(), key, ".tmp");
+            try {
+                Files.write(temp, bytes.toByteArray());
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            // The disk cache is best effort, the entry is still cached in memory
+        }
+    }
+}
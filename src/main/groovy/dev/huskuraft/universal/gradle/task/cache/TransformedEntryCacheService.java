@@ -0,0 +1,65 @@
+package dev.huskuraft.universal.gradle.task.cache;
+
+import java.time.Duration;
+
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+/**
+ * A build service holding the {@link TransformedEntryCache} shared by all JAR modification tasks of a build.
+ * When the build finishes, the disk entries no build used for {@link #MAX_UNUSED} are deleted.
+ */
+public abstract class TransformedEntryCacheService implements BuildService<TransformedEntryCacheService.Parameters>, AutoCloseable {
+
+    /** How long disk entries are kept without being used. */
+    public static final Duration MAX_UNUSED = Duration.ofDays(7);
+
+    /**
+     * The parameters of the cache.
+     */
+    public interface Parameters extends BuildServiceParameters {
+
+        /**
+         * The directory of the disk cache. The cache only lives in memory if it is not set.
+         *
+         * @return The directory property.
+         */
+        DirectoryProperty getDirectory();
+
+        /**
+         * The maximum number of content bytes kept in memory.
+         *
+         * @return The byte budget property, a quarter of the maximum heap size if not set.
+         */
+        Property<Long> getMaxMemoryBytes();
+    }
+
+    private final TransformedEntryCache cache;
+
+    public TransformedEntryCacheService() {
+        var parameters = getParameters();
+        var directory = parameters.getDirectory().isPresent() ? parameters.getDirectory().get().getAsFile().toPath() : null;
+        this.cache = new TransformedEntryCache(parameters.getMaxMemoryBytes().getOrElse(defaultMaxMemoryBytes()), directory);
+    }
+
+    /**
+     * Gets the default number of content bytes kept in memory, a quarter of the maximum heap size,
+     * as the entries being transformed take another quarter of it.
+     *
+     * @return The number of bytes.
+     */
+    public static long defaultMaxMemoryBytes() {
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    public TransformedEntryCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public void close() {
+        cache.cleanup(MAX_UNUSED);
+    }
+}
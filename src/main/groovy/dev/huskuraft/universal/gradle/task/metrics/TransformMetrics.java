@@ -0,0 +1,281 @@
+package dev.huskuraft.universal.gradle.task.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import dev.huskuraft.universal.gradle.task.modification.Modification;
+
+/**
+ * Metrics of a JAR modification, per modification class and for reading, compressing and writing entries.
+ * Times are the sum of the time spent by every thread, so with several threads they may exceed the duration of the modification.
+ * The metrics are safe to record from multiple threads.
+ */
+public final class TransformMetrics {
+
+    /** The version of the report format, increased when fields are removed or change meaning. */
+    public static final int REPORT_VERSION = 1;
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    private final Map<Class<?>, ModificationMetrics> modifications = new LinkedHashMap<>();
+    private final LongAdder entries = new LongAdder();
+    private final LongAdder cachedEntries = new LongAdder();
+    private final LongAdder readNanos = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder compressNanos = new LongAdder();
+    private final LongAdder bytesCompressed = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder durationNanos = new LongAdder();
+
+    /**
+     * Creates the metrics of a list of modifications.
+     * The map of modification classes is filled here and only read afterwards, so it needs no synchronization.
+     *
+     * @param modifications The modifications, in the order they are applied.
+     */
+    public TransformMetrics(List<Modification> modifications) {
+        for (var modification : modifications) {
+            this.modifications.computeIfAbsent(modification.getClass(), type -> new ModificationMetrics());
+        }
+    }
+
+    /**
+     * The metrics shared by all modifications of a class.
+     */
+    public static final class ModificationMetrics {
+
+        private final LongAdder entriesMatched = new LongAdder();
+        private final LongAdder entriesModified = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+        private final LongAdder appliesToNanos = new LongAdder();
+        private final LongAdder applyNanos = new LongAdder();
+
+        private ModificationMetrics() {
+        }
+
+        /**
+         * Records a call to {@link Modification#appliesTo}.
+         *
+         * @param nanos   The time spent.
+         * @param matched Whether the modification applies to the entry.
+         */
+        public void appliesTo(long nanos, boolean matched) {
+            appliesToNanos.add(nanos);
+            if (matched) {
+                entriesMatched.increment();
+            }
+        }
+
+        /**
+         * Records the renaming of an entry, which does not process its content.
+         *
+         * @param nanos The time spent.
+         */
+        public void apply(long nanos) {
+            applyNanos.add(nanos);
+        }
+
+        /**
+         * Records the modification of the content of an entry.
+         *
+         * @param nanos    The time spent.
+         * @param bytesIn  The size of the content before the modification.
+         * @param bytesOut The size of the content after the modification.
+         */
+        public void apply(long nanos, long bytesIn, long bytesOut) {
+            applyNanos.add(nanos);
+            this.bytesIn.add(bytesIn);
+            this.bytesOut.add(bytesOut);
+        }
+
+        /**
+         * Records an entry renamed or changed by the modification.
+         */
+        public void modified() {
+            entriesModified.increment();
+        }
+    }
+
+    /**
+     * Gets the metrics of the class of a modification.
+     *
+     * @param modification One of the modifications the metrics were created with.
+     * @return The metrics.
+     */
+    public ModificationMetrics of(Modification modification) {
+        return modifications.get(modification.getClass());
+    }
+
+    /**
+     * Records the reading of an entry, including its decompression.
+     *
+     * @param nanos The time spent.
+     * @param bytes The size of the raw, possibly compressed, data read.
+     */
+    public void read(long nanos, long bytes) {
+        readNanos.add(nanos);
+        bytesRead.add(bytes);
+    }
+
+    /**
+     * Records the compression of a modified entry.
+     *
+     * @param nanos The time spent.
+     * @param bytes The size of the compressed data.
+     */
+    public void compress(long nanos, long bytes) {
+        compressNanos.add(nanos);
+        bytesCompressed.add(bytes);
+    }
+
+    /**
+     * Records the writing of an entry to the output.
+     *
+     * @param nanos The time spent.
+     * @param bytes The size of the raw, possibly compressed, data written.
+     */
+    public void write(long nanos, long bytes) {
+        entries.increment();
+        writeNanos.add(nanos);
+        bytesWritten.add(bytes);
+    }
+
+    /**
+     * Records an entry served from the entry cache, whose modifications were not applied.
+     */
+    public void cached() {
+        cachedEntries.increment();
+    }
+
+    /**
+     * Records the time the whole modification took.
+     *
+     * @param nanos The time spent.
+     */
+    public void duration(long nanos) {
+        durationNanos.add(nanos);
+    }
+
+    public long getEntries() {
+        return entries.sum();
+    }
+
+    public long getCachedEntries() {
+        return cachedEntries.sum();
+    }
+
+    public long getDurationNanos() {
+        return durationNanos.sum();
+    }
+
+    /**
+     * Creates the machine-readable report of the metrics.
+     *
+     * @param target The name of the target, e.g. the task modifying the JAR.
+     * @param input  The JAR that was modified.
+     * @param output The modified JAR.
+     * @return The report.
+     */
+    public JsonObject toJson(String target, Path input, Path output) {
+        var report = new JsonObject();
+        report.addProperty("version", REPORT_VERSION);
+        var pluginVersion = TransformMetrics.class.getPackage().getImplementationVersion();
+        if (pluginVersion != null) {
+            report.addProperty("pluginVersion", pluginVersion);
+        }
+        report.addProperty("target", target);
+        report.addProperty("input", input.getFileName().toString());
+        report.addProperty("output", output.getFileName().toString());
+        report.addProperty("durationNanos", durationNanos.sum());
+        report.addProperty("entries", entries.sum());
+        report.addProperty("cachedEntries", cachedEntries.sum());
+
+        var read = new JsonObject();
+        read.addProperty("nanos", readNanos.sum());
+        read.addProperty("bytes", bytesRead.sum());
+        report.add("read", read);
+        var compress = new JsonObject();
+        compress.addProperty("nanos", compressNanos.sum());
+        compress.addProperty("bytes", bytesCompressed.sum());
+        report.add("compress", compress);
+        var write = new JsonObject();
+        write.addProperty("nanos", writeNanos.sum());
+        write.addProperty("bytes", bytesWritten.sum());
+        report.add("write", write);
+
+        var modificationReports = new JsonArray();
+        modifications.forEach((type, metrics) -> {
+            var modification = new JsonObject();
+            modification.addProperty("type", type.getName());
+            modification.addProperty("entriesMatched", metrics.entriesMatched.sum());
+            modification.addProperty("entriesModified", metrics.entriesModified.sum());
+            modification.addProperty("bytesIn", metrics.bytesIn.sum());
+            modification.addProperty("bytesOut", metrics.bytesOut.sum());
+            modification.addProperty("appliesToNanos", metrics.appliesToNanos.sum());
+            modification.addProperty("applyNanos", metrics.applyNanos.sum());
+            modificationReports.add(modification);
+        });
+        report.add("modifications", modificationReports);
+        return report;
+    }
+
+    /**
+     * Writes the machine-readable report of the metrics, replacing the previous one at once.
+     *
+     * @param reportFile The report file.
+     * @param target     The name of the target, e.g. the task modifying the JAR.
+     * @param input      The JAR that was modified.
+     * @param output     The modified JAR.
+     * @throws IOException If the report cannot be written.
+     */
+    public void writeReport(Path reportFile, String target, Path input, Path output) throws IOException {
+        Files.createDirectories(reportFile.toAbsolutePath().getParent());
+        var tempFile = reportFile.resolveSibling(reportFile.getFileName() + ".tmp");
+        Files.writeString(tempFile, GSON.toJson(toJson(target, input, output)), StandardCharsets.UTF_8);
+        Files.move(tempFile, reportFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Summarizes the metrics in a few lines, with the modifications that took the most time first.
+     *
+     * @param target The name of the target, e.g. the task modifying the JAR.
+     * @return The summary.
+     */
+    public String summary(String target) {
+        var summary = new StringBuilder();
+        summary.append(String.format("%s: %d entries (%d cached) in %d ms, read %d ms, compress %d ms, write %d ms",
+                target, entries.sum(), cachedEntries.sum(), millis(durationNanos), millis(readNanos), millis(compressNanos), millis(writeNanos)));
+        modifications.entrySet().stream()
+                .sorted((first, second) -> Long.compare(total(second.getValue()), total(first.getValue())))
+                .forEach(entry -> {
+                    var metrics = entry.getValue();
+                    summary.append(String.format("%n  %s: %d matched, %d modified, apply %d ms, appliesTo %d ms, %d -> %d bytes",
+                            entry.getKey().getSimpleName(), metrics.entriesMatched.sum(), metrics.entriesModified.sum(),
+                            millis(metrics.applyNanos), millis(metrics.appliesToNanos), metrics.bytesIn.sum(), metrics.bytesOut.sum()));
+                });
+        return summary.toString();
+    }
+
+    private static long total(ModificationMetrics metrics) {
+        return metrics.appliesToNanos.sum() + metrics.applyNanos.sum();
+    }
+
+    private static long millis(LongAdder nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos.sum());
+    }
+}
@@ -1,13 +1,20 @@
 package dev.huskuraft.universal.gradle.task.modification;
 
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
 import org.objectweb.asm.*;
 
+import java.io.Serializable;
+import java.util.Set;
+
 /**
  * A modification that updates annotations within class files.
  */
 public class AnnotationModification extends ClassModification {
 
+    /** The numeric types of annotation values. */
+    private static final Set<Class<?>> VALUE_TYPES = Set.of(Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class);
+
     /** The descriptor of the annotation to modify (e.g., "Lcom/example/YourAnnotation;"). */
     @Input
     private String descriptor;
@@ -16,9 +23,9 @@ public class AnnotationModification extends ClassModification {
     @Input
     private String field;
 
-    /** The new value to set for the annotation field. */
+    /** The new value to set for the annotation field, a string or a boxed primitive. */
     @Input
-    private Object newValue;
+    private Serializable newValue;
 
     /**
      * Gets the descriptor of the annotation to modify.
@@ -61,22 +68,37 @@ public class AnnotationModification extends ClassModification {
      *
      * @return The new value.
      */
-    public Object getNewValue() {
+    public Serializable getNewValue() {
         return newValue;
     }
 
     /**
      * Sets the new value to set for the annotation field.
+     * Character sequences such as Groovy strings are converted to strings.
      *
-     * @param newValue The new value.
+     * @param newValue The new value, a string or a boxed primitive.
+     * @throws IllegalArgumentException If the value is of another type.
      */
     public void setNewValue(Object newValue) {
-        this.newValue = newValue;
+        if (newValue instanceof CharSequence) {
+            newValue = newValue.toString();
+        }
+        if (!(newValue instanceof String || newValue instanceof Boolean || newValue instanceof Character || newValue instanceof Number && VALUE_TYPES.contains(newValue.getClass()))) {
+            throw new IllegalArgumentException("Unsupported annotation value: " + (newValue == null ? null : newValue.getClass().getName()));
+        }
+        this.newValue = (Serializable) newValue;
+    }
+
+    @Override
+    @Internal
+    public Set<String> getRequiredDescriptors() {
+        // Only classes carrying the annotation can be affected
+        return descriptor == null ? Set.of() : Set.of(descriptor);
     }
 
     @Override
-    public ClassVisitor createVisitor(ClassWriter classWriter) {
-        return new ClassVisitor(Opcodes.ASM9, classWriter) {
+    public ClassVisitor createVisitor(ClassVisitor classVisitor) {
+        return new ClassVisitor(Opcodes.ASM9, classVisitor) {
             @Override
             public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
                 // Custom logic to modify annotations
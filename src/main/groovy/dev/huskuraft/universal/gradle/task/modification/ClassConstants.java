@@ -0,0 +1,181 @@
+package dev.huskuraft.universal.gradle.task.modification;
+
+import java.util.Arrays;
+
+/**
+ * A view of the constant pool of a class file, built without parsing the rest of the class.
+ * Scanning only records where the UTF8 constants are, so queries compare raw bytes and never decode strings.
+ */
+public final class ClassConstants {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private final byte[] classFile;
+    /** Offsets of the UTF8 constants, pointing at their length field. */
+    private final int[] utf8Offsets;
+    private final int utf8Count;
+
+    private ClassConstants(byte[] classFile, int[] utf8Offsets, int utf8Count) {
+        this.classFile = classFile;
+        this.utf8Offsets = utf8Offsets;
+        this.utf8Count = utf8Count;
+    }
+
+    /**
+     * Scans the constant pool of a class file.
+     *
+     * @param classFile The class file.
+     * @return The constants of the class.
+     * @throws IllegalArgumentException If the data is not a valid class file.
+     */
+    public static ClassConstants scan(byte[] classFile) {
+        if (classFile.length < 10 || readInt(classFile, 0) != MAGIC) {
+            throw new IllegalArgumentException("Not a class file");
+        }
+        var count = readUnsignedShort(classFile, 8);
+        // Constant pool indices start at 1
+        var utf8Offsets = new int[count];
+        var utf8Count = 0;
+        var position = 10;
+        try {
+            for (var index = 1; index < count; index++) {
+                var tag = classFile[position];
+                switch (tag) {
+                    case CONSTANT_UTF8 -> {
+                        utf8Offsets[utf8Count++] = position + 1;
+                        position += 3 + readUnsignedShort(classFile, position + 1);
+                    }
+                    case CONSTANT_CLASS, CONSTANT_STRING, CONSTANT_METHOD_TYPE, CONSTANT_MODULE, CONSTANT_PACKAGE -> position += 3;
+                    case CONSTANT_METHOD_HANDLE -> position += 4;
+                    case CONSTANT_INTEGER, CONSTANT_FLOAT, CONSTANT_FIELDREF, CONSTANT_METHODREF, CONSTANT_INTERFACE_METHODREF,
+                         CONSTANT_NAME_AND_TYPE, CONSTANT_DYNAMIC, CONSTANT_INVOKE_DYNAMIC -> position += 5;
+                    case CONSTANT_LONG, CONSTANT_DOUBLE -> {
+                        // Eight byte constants take up two slots in the constant pool
+                        position += 9;
+                        index++;
+                    }
+                    default -> throw new IllegalArgumentException("Invalid constant pool tag " + tag + " at index " + index);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated constant pool", e);
+        }
+        if (position > classFile.length) {
+            // The last constant ends past the data, which would otherwise only be noticed when it is compared
+            throw new IllegalArgumentException("Truncated constant pool");
+        }
+        return new ClassConstants(classFile, utf8Offsets, utf8Count);
+    }
+
+    /**
+     * Checks whether the class has a UTF8 constant equal to the given string.
+     *
+     * @param value The value to look for.
+     * @return True if the constant exists.
+     */
+    public boolean containsUtf8(String value) {
+        return indexOf(utf8Offsets, utf8Count, encode(value)) >= 0;
+    }
+
+    /**
+     * Checks whether any UTF8 constant of the class contains the given string,
+     * e.g. a package name within descriptors and signatures.
+     *
+     * @param value The value to look for.
+     * @return True if a constant contains the value.
+     */
+    public boolean containsUtf8Substring(String value) {
+        var encoded = encode(value);
+        for (var index = 0; index < utf8Count; index++) {
+            if (contains(utf8Offsets[index], encoded)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the class may use the given field or annotation descriptor, e.g. {@code Lnet/minecraftforge/fml/common/Mod;}.
+     *
+     * @param descriptor The descriptor to look for.
+     * @return True if the descriptor appears as a constant.
+     */
+    public boolean containsDescriptor(String descriptor) {
+        return containsUtf8(descriptor);
+    }
+
+    private int indexOf(int[] offsets, int count, byte[] encoded) {
+        for (var index = 0; index < count; index++) {
+            var offset = offsets[index];
+            if (readUnsignedShort(classFile, offset) == encoded.length
+                    && Arrays.equals(classFile, offset + 2, offset + 2 + encoded.length, encoded, 0, encoded.length)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private boolean contains(int offset, byte[] encoded) {
+        var start = offset + 2;
+        var end = start + readUnsignedShort(classFile, offset) - encoded.length;
+        for (var position = start; position <= end; position++) {
+            if (Arrays.equals(classFile, position, position + encoded.length, encoded, 0, encoded.length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Encodes a string in the modified UTF-8 format of the class file specification.
+     */
+    static byte[] encode(String value) {
+        var length = 0;
+        for (var index = 0; index < value.length(); index++) {
+            var c = value.charAt(index);
+            length += c >= 0x01 && c <= 0x7F ? 1 : c <= 0x7FF ? 2 : 3;
+        }
+        var bytes = new byte[length];
+        var position = 0;
+        for (var index = 0; index < value.length(); index++) {
+            var c = value.charAt(index);
+            if (c >= 0x01 && c <= 0x7F) {
+                bytes[position++] = (byte) c;
+            } else if (c <= 0x7FF) {
+                bytes[position++] = (byte) (0xC0 | (c >> 6));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                bytes[position++] = (byte) (0xE0 | (c >> 12));
+                bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return bytes;
+    }
+
+    private static int readUnsignedShort(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16) | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,37 @@
+package dev.huskuraft.universal.gradle.task.modification;
+
+import java.util.List;
+
+/**
+ * Skips class modifications that cannot change a class, judging by a scan of its constant pool.
+ * Nothing is kept between classes, so the same lists of modifications can be filtered from multiple threads.
+ */
+public final class ClassIndex {
+
+    private ClassIndex() {
+    }
+
+    /**
+     * Filters class modifications down to those that may change a class, judging by its constant pool.
+     * Modifications of other kinds are always kept.
+     *
+     * @param classFile     The class file.
+     * @param modifications The modifications matching the entry.
+     * @return The modifications that need to be applied, or the given list if none can be skipped.
+     */
+    public static List<Modification> filter(byte[] classFile, List<Modification> modifications) {
+        if (modifications.stream().noneMatch(modification -> modification instanceof ClassModification)) {
+            return modifications;
+        }
+        ClassConstants constants;
+        try {
+            constants = ClassConstants.scan(classFile);
+        } catch (IllegalArgumentException e) {
+            // Leave malformed classes to ASM, which reports a proper error
+            return modifications;
+        }
+        return modifications.stream()
+                .filter(modification -> !(modification instanceof ClassModification classModification) || classModification.mayApply(constants))
+                .toList();
+    }
+}
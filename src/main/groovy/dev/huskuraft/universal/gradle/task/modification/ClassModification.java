@@ -1,9 +1,12 @@
 package dev.huskuraft.universal.gradle.task.modification;
 
+import org.gradle.api.tasks.Internal;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 
+import java.util.List;
+import java.util.Set;
 import java.util.jar.JarEntry;
 
 /**
@@ -16,18 +19,78 @@ public abstract class ClassModification implements Modification {
 
     @Override
     public boolean appliesTo(JarEntry entry) {
+        return getSelector().matches(entry.getName());
+    }
+
+    @Override
+    @Internal
+    public EntrySelector getSelector() {
         // Only apply to .class files
-        return entry.getName().endsWith(CLASS_EXTENSION);
+        return EntrySelector.suffix(CLASS_EXTENSION);
+    }
+
+    /**
+     * Gets the descriptors a class must reference for this modification to have any effect.
+     * Classes whose constant pool lacks one of them are skipped before any visitor is created.
+     *
+     * @return The required descriptors, or an empty set if every class has to be visited.
+     */
+    @Internal
+    public Set<String> getRequiredDescriptors() {
+        return Set.of();
+    }
+
+    /**
+     * Determines from the constant pool of a class whether this modification may change it.
+     *
+     * @param constants The constants of the class.
+     * @return False if the modification can be skipped for the class, otherwise true.
+     */
+    public boolean mayApply(ClassConstants constants) {
+        for (var descriptor : getRequiredDescriptors()) {
+            if (!constants.containsDescriptor(descriptor)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines if this modification renames constants, e.g. to relocate the types of the class.
+     * The constant pool of the input is then not copied to the output, as it would keep the constants that were renamed.
+     *
+     * @return False by default.
+     */
+    @Internal
+    public boolean remapsConstants() {
+        return false;
     }
 
     @Override
     public byte[] apply(byte[] input) {
+        return apply(input, List.of(this));
+    }
+
+    /**
+     * Applies several class modifications in a single pass.
+     * The class is parsed and written once, with the visitors of all modifications chained in the given order.
+     *
+     * @param input         The input class file.
+     * @param modifications The modifications to apply, in order.
+     * @return The modified class file.
+     */
+    public static byte[] apply(byte[] input, List<? extends ClassModification> modifications) {
         // Initialize ClassReader and ClassWriter
         var classReader = new ClassReader(input);
-        var classWriter = new ClassWriter(classReader, 0);
+        var classWriter = modifications.stream().anyMatch(ClassModification::remapsConstants)
+                ? new ClassWriter(0)
+                : new ClassWriter(classReader, 0);
 
-        // Apply the modification
-        var visitor = createVisitor(classWriter);
+        // Chain the modifications so that the first one receives the events from the reader
+        ClassVisitor visitor = classWriter;
+        for (var index = modifications.size() - 1; index >= 0; index--) {
+            visitor = modifications.get(index).createVisitor(visitor);
+        }
         classReader.accept(visitor, 0);
 
         return classWriter.toByteArray();
@@ -36,8 +99,8 @@ public abstract class ClassModification implements Modification {
     /**
      * Abstract method to create a ClassVisitor to modify the class.
      *
-     * @param classWriter The ClassWriter to use for modifications.
+     * @param classVisitor The visitor to delegate to, either the ClassWriter or the visitor of the next modification.
      * @return A ClassVisitor that applies the desired modifications.
      */
-    public abstract ClassVisitor createVisitor(ClassWriter classWriter);
+    public abstract ClassVisitor createVisitor(ClassVisitor classVisitor);
 }
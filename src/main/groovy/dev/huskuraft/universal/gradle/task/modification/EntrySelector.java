@@ -0,0 +1,108 @@
+package dev.huskuraft.universal.gradle.task.modification;
+
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Describes which JAR entries a {@link Modification} is interested in.
+ * Selectors with an exact name, a prefix or a suffix can be compiled into a lookup structure,
+ * so finding the modifications of an entry does not require checking every modification.
+ */
+public final class EntrySelector {
+
+    /**
+     * The kinds of selectors, from the cheapest to the most expensive to match.
+     */
+    public enum Kind {
+        /** Matches a single entry name. */
+        EXACT,
+        /** Matches entry names starting with a value. */
+        PREFIX,
+        /** Matches entry names ending with a value, e.g. a file extension. */
+        SUFFIX,
+        /** Matches entry names fully matching a regular expression. */
+        REGEX,
+        /** Matches every entry, leaving the decision to {@link Modification#appliesTo}. */
+        ANY
+    }
+
+    private static final EntrySelector ANY = new EntrySelector(Kind.ANY, "", null);
+
+    private final Kind kind;
+    private final String value;
+    private final Pattern pattern;
+
+    private EntrySelector(Kind kind, String value, Pattern pattern) {
+        this.kind = kind;
+        this.value = value;
+        this.pattern = pattern;
+    }
+
+    public static EntrySelector exact(String name) {
+        return new EntrySelector(Kind.EXACT, Objects.requireNonNull(name), null);
+    }
+
+    public static EntrySelector prefix(String prefix) {
+        return new EntrySelector(Kind.PREFIX, Objects.requireNonNull(prefix), null);
+    }
+
+    public static EntrySelector suffix(String suffix) {
+        return new EntrySelector(Kind.SUFFIX, Objects.requireNonNull(suffix), null);
+    }
+
+    public static EntrySelector regex(Pattern pattern) {
+        return new EntrySelector(Kind.REGEX, pattern.pattern(), pattern);
+    }
+
+    public static EntrySelector any() {
+        return ANY;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Gets the name, prefix, suffix or regular expression of this selector.
+     *
+     * @return The value of the selector, or an empty string for {@link Kind#ANY}.
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Determines if an entry name is selected.
+     *
+     * @param name The entry name.
+     * @return True if the entry is selected.
+     */
+    public boolean matches(String name) {
+        return switch (kind) {
+            case EXACT -> name.equals(value);
+            case PREFIX -> name.startsWith(value);
+            case SUFFIX -> name.endsWith(value);
+            case REGEX -> pattern.matcher(name).matches();
+            case ANY -> true;
+        };
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof EntrySelector selector && kind == selector.kind && value.equals(selector.value) && flags() == selector.flags();
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * kind.hashCode() + value.hashCode()) + flags();
+    }
+
+    private int flags() {
+        return pattern == null ? 0 : pattern.flags();
+    }
+
+    @Override
+    public String toString() {
+        return kind.name().toLowerCase() + "(" + value + ")";
+    }
+}
@@ -1,32 +1,60 @@
 package dev.huskuraft.universal.gradle.task.modification;
 
+import org.gradle.api.tasks.Internal;
+
+import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.jar.JarEntry;
 
 /**
  * A modification that updates the value of a specific field in a JSON file using GSON.
+ * Subclasses either modify a tree of the whole file in {@link #modifyJson}, or register path handlers in
+ * {@link #registerHandlers} to rewrite the file token by token without building a tree.
  */
 public abstract class JsonModification implements Modification {
 
     /** The file extension for JSON files. */
     public static final String JSON_EXTENSION = ".json";
 
+    /** The Gson instance writing the modified files, shared by all modifications. */
+    protected static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    private static final String INDENT = "  ";
+
+    private transient volatile JsonStreamRewriter rewriter;
+
     @Override
     public boolean appliesTo(JarEntry entry) {
+        return getSelector().matches(entry.getName());
+    }
+
+    @Override
+    @Internal
+    public EntrySelector getSelector() {
         // Only apply to .json files
-        return entry.getName().endsWith(JSON_EXTENSION);
+        return EntrySelector.suffix(JSON_EXTENSION);
     }
 
     @Override
     public byte[] apply(byte[] input) {
+        var rewriter = getRewriter();
+        if (!rewriter.isEmpty()) {
+            return rewrite(rewriter, input);
+        }
+
         // Parse the input JSON file
         var jsonElement = JsonParser.parseReader(
                 new InputStreamReader(new ByteArrayInputStream(input), StandardCharsets.UTF_8)
@@ -44,10 +72,9 @@ public abstract class JsonModification implements Modification {
         modifyJson(jsonObject);
 
         // Write the modified JSON to the output stream
-        try (var outputStream = new ByteArrayOutputStream();
+        try (var outputStream = new ByteArrayOutputStream(input.length);
              var writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)) {
-            var gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
-            gson.toJson(jsonObject, writer);
+            GSON.toJson(jsonObject, writer);
             writer.flush();
             return outputStream.toByteArray();
         } catch (Exception e) {
@@ -55,10 +82,64 @@ public abstract class JsonModification implements Modification {
         }
     }
 
+    @Override
+    public void apply(InputStream input, OutputStream output) throws IOException {
+        var rewriter = getRewriter();
+        if (rewriter.isEmpty()) {
+            // The tree mode needs the whole file
+            Modification.super.apply(input, output);
+            return;
+        }
+        rewrite(rewriter, input, output);
+    }
+
+    private static byte[] rewrite(JsonStreamRewriter rewriter, byte[] input) {
+        try (var outputStream = new ByteArrayOutputStream(input.length)) {
+            rewrite(rewriter, new ByteArrayInputStream(input), outputStream);
+            return outputStream.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to rewrite JSON", e);
+        }
+    }
+
+    private static void rewrite(JsonStreamRewriter rewriter, InputStream input, OutputStream output) throws IOException {
+        // Neither stream is closed, the caller owns them
+        var reader = new JsonReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        var writer = new JsonWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        // Match the output of the tree mode, but keep null members as they are
+        reader.setLenient(true);
+        writer.setIndent(INDENT);
+        writer.setHtmlSafe(false);
+        writer.setSerializeNulls(true);
+        rewriter.rewrite(reader, writer);
+        writer.flush();
+    }
+
+    private JsonStreamRewriter getRewriter() {
+        // Handlers only depend on the modification, so they are registered once and reused for every entry
+        var rewriter = this.rewriter;
+        if (rewriter == null) {
+            rewriter = new JsonStreamRewriter(GSON);
+            registerHandlers(rewriter);
+            this.rewriter = rewriter;
+        }
+        return rewriter;
+    }
+
     /**
-     * Abstract method to modify the JSON object.
+     * Registers the path handlers of the streaming mode.
+     * If at least one handler is registered, files are rewritten token by token and {@link #modifyJson} is not called.
+     *
+     * @param rewriter The rewriter to register the handlers with.
+     */
+    protected void registerHandlers(JsonStreamRewriter rewriter) {
+    }
+
+    /**
+     * Modifies a tree of the whole JSON file, unless handlers are registered in {@link #registerHandlers}.
      *
      * @param jsonObject The JSON object to modify.
      */
-    protected abstract void modifyJson(JsonObject jsonObject);
+    protected void modifyJson(JsonObject jsonObject) {
+    }
 }
@@ -0,0 +1,299 @@
+package dev.huskuraft.universal.gradle.task.modification;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Rewrites a JSON document token by token, without building a tree of the whole document.
+ * Handlers are registered for paths such as {@code $.refmap} or {@code $.mappings.*}: a path starts with {@code $},
+ * followed by {@code .name} segments, where {@code *} matches any member of an object or any element of an array.
+ * Subtrees that no handler can match are copied token by token.
+ * A rewriter is immutable once its handlers are registered and can be shared between threads.
+ */
+public final class JsonStreamRewriter {
+
+    /**
+     * Rewrites the value at a matching path.
+     */
+    @FunctionalInterface
+    public interface Handler {
+        /**
+         * Reads the value from the reader and writes its replacement.
+         * Inside an object the handler writes the member name as well, or nothing to remove the member.
+         *
+         * @param name   The member name, or null for the root and array elements.
+         * @param reader The reader, positioned before the value.
+         * @param writer The writer.
+         * @throws IOException If the value cannot be read or written.
+         */
+        void handle(String name, JsonReader reader, JsonWriter writer) throws IOException;
+    }
+
+    private record PathHandler(String[] segments, Handler handler) {
+    }
+
+    private record Put(String[] parent, String name, JsonElement value) {
+    }
+
+    private final Gson gson;
+    private final List<PathHandler> handlers = new ArrayList<>();
+    private final List<Put> puts = new ArrayList<>();
+    /** The segments of all handlers and puts, used to find out if a subtree can be copied as is. */
+    private final List<String[]> watched = new ArrayList<>();
+
+    /**
+     * Creates a rewriter.
+     *
+     * @param gson The Gson instance used to write replacement values.
+     */
+    public JsonStreamRewriter(Gson gson) {
+        this.gson = gson;
+    }
+
+    /**
+     * Registers a handler for the values at a path.
+     *
+     * @param path    The path.
+     * @param handler The handler.
+     * @return This rewriter.
+     */
+    public JsonStreamRewriter handle(String path, Handler handler) {
+        var segments = parse(path);
+        handlers.add(new PathHandler(segments, handler));
+        watched.add(segments);
+        return this;
+    }
+
+    /**
+     * Renames the members of the objects at a path, keeping their values and order.
+     *
+     * @param path    The path of the objects.
+     * @param renamer The function computing the new member names.
+     * @return This rewriter.
+     */
+    public JsonStreamRewriter renameMembers(String path, UnaryOperator<String> renamer) {
+        return handle(path + ".*", (name, reader, writer) -> {
+            if (name != null) {
+                writer.name(renamer.apply(name));
+            }
+            copy(reader, writer);
+        });
+    }
+
+    /**
+     * Sets a member of the objects at the parent path, in place if it exists and at the end of the object otherwise.
+     *
+     * @param path  The path of the member, its last segment must be a name.
+     * @param value The new value.
+     * @return This rewriter.
+     */
+    public JsonStreamRewriter put(String path, JsonElement value) {
+        var segments = parse(path);
+        var name = segments[segments.length - 1];
+        if (segments.length < 2 || name.equals("*")) {
+            throw new IllegalArgumentException("Expected a member path, but found: " + path);
+        }
+        var parent = new String[segments.length - 1];
+        System.arraycopy(segments, 0, parent, 0, parent.length);
+        puts.add(new Put(parent, name, value));
+        return handle(path, (memberName, reader, writer) -> {
+            reader.skipValue();
+            if (memberName != null) {
+                writer.name(memberName);
+            }
+            gson.toJson(value, writer);
+        });
+    }
+
+    /**
+     * Checks whether no handler has been registered.
+     *
+     * @return True if the rewriter would copy every document as is.
+     */
+    public boolean isEmpty() {
+        return handlers.isEmpty();
+    }
+
+    /**
+     * Rewrites a document whose root is an object.
+     *
+     * @param reader The reader of the input document.
+     * @param writer The writer of the output document.
+     * @throws IOException              If the document cannot be read or written.
+     * @throws IllegalArgumentException If the root of the document is not an object.
+     */
+    public void rewrite(JsonReader reader, JsonWriter writer) throws IOException {
+        var token = reader.peek();
+        if (token != JsonToken.BEGIN_OBJECT) {
+            throw new IllegalArgumentException("Expected a JSON object, but found: " + token);
+        }
+        var path = new ArrayList<String>();
+        path.add("$");
+        rewriteValue(null, reader, writer, path);
+    }
+
+    private void rewriteValue(String name, JsonReader reader, JsonWriter writer, List<String> path) throws IOException {
+        for (var pathHandler : handlers) {
+            if (matches(pathHandler.segments(), path)) {
+                pathHandler.handler().handle(name, reader, writer);
+                return;
+            }
+        }
+        if (name != null) {
+            writer.name(name);
+        }
+        if (!isWatched(path)) {
+            copy(reader, writer);
+            return;
+        }
+        switch (reader.peek()) {
+            case BEGIN_OBJECT -> rewriteObject(reader, writer, path);
+            case BEGIN_ARRAY -> rewriteArray(reader, writer, path);
+            default -> copy(reader, writer);
+        }
+    }
+
+    private void rewriteObject(JsonReader reader, JsonWriter writer, List<String> path) throws IOException {
+        List<Put> missing = null;
+        for (var put : puts) {
+            if (matches(put.parent(), path)) {
+                if (missing == null) {
+                    missing = new ArrayList<>();
+                }
+                missing.add(put);
+            }
+        }
+        Set<String> names = missing == null ? null : new HashSet<>();
+
+        reader.beginObject();
+        writer.beginObject();
+        while (reader.hasNext()) {
+            var name = reader.nextName();
+            if (names != null) {
+                names.add(name);
+            }
+            path.add(name);
+            rewriteValue(name, reader, writer, path);
+            path.remove(path.size() - 1);
+        }
+        if (missing != null) {
+            for (var put : missing) {
+                if (!names.contains(put.name())) {
+                    writer.name(put.name());
+                    gson.toJson(put.value(), writer);
+                }
+            }
+        }
+        reader.endObject();
+        writer.endObject();
+    }
+
+    private void rewriteArray(JsonReader reader, JsonWriter writer, List<String> path) throws IOException {
+        reader.beginArray();
+        writer.beginArray();
+        for (var index = 0; reader.hasNext(); index++) {
+            path.add(Integer.toString(index));
+            rewriteValue(null, reader, writer, path);
+            path.remove(path.size() - 1);
+        }
+        reader.endArray();
+        writer.endArray();
+    }
+
+    /**
+     * Checks whether a handler may match a value below the path.
+     */
+    private boolean isWatched(List<String> path) {
+        for (var segments : watched) {
+            if (segments.length > path.size() && matchesPrefix(segments, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a pattern matches a path exactly.
+     */
+    private static boolean matches(String[] segments, List<String> path) {
+        return segments.length == path.size() && matchesPrefix(segments, path);
+    }
+
+    /**
+     * Checks whether the first segments of a pattern match a path.
+     */
+    private static boolean matchesPrefix(String[] segments, List<String> path) {
+        if (segments.length < path.size()) {
+            return false;
+        }
+        for (var index = 0; index < path.size(); index++) {
+            var segment = segments[index];
+            if (!segment.equals("*") && !segment.equals(path.get(index))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String[] parse(String path) {
+        if (!path.equals("$") && !path.startsWith("$.")) {
+            throw new IllegalArgumentException("Expected a path starting with '$', but found: " + path);
+        }
+        return path.split("\\.", -1);
+    }
+
+    /**
+     * Copies the next value from the reader to the writer token by token.
+     *
+     * @param reader The reader, positioned before the value.
+     * @param writer The writer.
+     * @throws IOException If the value cannot be read or written.
+     */
+    public static void copy(JsonReader reader, JsonWriter writer) throws IOException {
+        var depth = 0;
+        do {
+            switch (reader.peek()) {
+                case BEGIN_OBJECT -> {
+                    reader.beginObject();
+                    writer.beginObject();
+                    depth++;
+                }
+                case END_OBJECT -> {
+                    reader.endObject();
+                    writer.endObject();
+                    depth--;
+                }
+                case BEGIN_ARRAY -> {
+                    reader.beginArray();
+                    writer.beginArray();
+                    depth++;
+                }
+                case END_ARRAY -> {
+                    reader.endArray();
+                    writer.endArray();
+                    depth--;
+                }
+                case NAME -> writer.name(reader.nextName());
+                case STRING -> writer.value(reader.nextString());
+                // Keep the number literal as written
+                case NUMBER -> writer.jsonValue(reader.nextString());
+                case BOOLEAN -> writer.value(reader.nextBoolean());
+                case NULL -> {
+                    reader.nextNull();
+                    writer.nullValue();
+                }
+                case END_DOCUMENT -> throw new IllegalStateException("Unexpected end of JSON document");
+            }
+        } while (depth > 0);
+    }
+}
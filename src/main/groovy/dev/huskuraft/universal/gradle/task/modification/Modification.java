@@ -1,11 +1,18 @@
 package dev.huskuraft.universal.gradle.task.modification;
 
+import org.gradle.api.tasks.Internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
 import java.util.jar.JarEntry;
 
 /**
  * Interface for defining modifications to JAR entries.
+ * Modifications are serialized when submitted to a Gradle worker, so their state must be serializable.
  */
-public interface Modification {
+public interface Modification extends Serializable {
     /**
      * Determines if this modification applies to a given JAR entry.
      *
@@ -14,6 +21,18 @@ public interface Modification {
      */
     boolean appliesTo(JarEntry entry);
 
+    /**
+     * Gets the selector describing the entries this modification may apply to.
+     * The selector is used to find candidate modifications for an entry quickly, and {@link #appliesTo}
+     * is still checked for every candidate, so the selector may be broader but never narrower.
+     *
+     * @return The selector, matching every entry by default.
+     */
+    @Internal
+    default EntrySelector getSelector() {
+        return EntrySelector.any();
+    }
+
     /**
      * Applies the modification to the entry.
      *
@@ -27,8 +46,31 @@ public interface Modification {
     /**
      * Applies the modification to the entry's content.
      *
-     * @param input The input byte array of the entry.
+     * @param input The input byte array of the entry. Implementations must not modify it in place.
      * @return The modified byte array.
      */
     byte[] apply(byte[] input);
+
+    /**
+     * Applies the modification to the entry's content as a stream, used for entries too large to be held in memory.
+     * The default implementation reads the whole content and delegates to {@link #apply(byte[])},
+     * modifications that can work on a stream override it to keep memory bounded.
+     *
+     * @param input  The content of the entry.
+     * @param output The stream the modified content is written to. Implementations must not close it.
+     * @throws IOException If the content cannot be read or written.
+     */
+    default void apply(InputStream input, OutputStream output) throws IOException {
+        output.write(apply(input.readAllBytes()));
+    }
+
+    /**
+     * Determines if the modification may change the content of the entries it applies to.
+     * Entries whose modifications all keep their content are copied without being decompressed.
+     *
+     * @return True by default.
+     */
+    default boolean modifiesContent() {
+        return true;
+    }
 }
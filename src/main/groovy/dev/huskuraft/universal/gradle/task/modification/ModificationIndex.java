@@ -0,0 +1,173 @@
+package dev.huskuraft.universal.gradle.task.modification;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+
+/**
+ * Dispatches JAR entries to the modifications that apply to them.
+ * The {@link EntrySelector}s of all modifications are compiled once: exact names and extensions are hashed,
+ * so most entries are resolved with a couple of hash probes instead of checking every modification.
+ * The index is immutable and safe to share between threads.
+ */
+public final class ModificationIndex {
+
+    private final Map<Modification, Integer> order = new IdentityHashMap<>();
+    private final Map<String, List<Modification>> exact = new HashMap<>();
+    /** Suffixes of the form {@code .ext}, keyed by the extension including the dot. */
+    private final Map<String, List<Modification>> extensions = new HashMap<>();
+    /** Prefixes and suffixes that cannot be hashed, checked one by one. */
+    private final Map<EntrySelector, List<Modification>> scanned = new LinkedHashMap<>();
+
+    /**
+     * Receives the outcome of {@link Modification#appliesTo} for each candidate of an entry, e.g. to time it.
+     */
+    @FunctionalInterface
+    public interface AppliesToListener {
+
+        /**
+         * Called after a candidate was checked.
+         *
+         * @param modification The candidate.
+         * @param nanos        The time {@link Modification#appliesTo} took.
+         * @param applies      Whether the candidate applies to the entry.
+         */
+        void appliesTo(Modification modification, long nanos, boolean applies);
+    }
+
+    private ModificationIndex(List<Modification> modifications) {
+        for (var modification : modifications) {
+            order.putIfAbsent(modification, order.size());
+            var selector = modification.getSelector();
+            switch (selector.getKind()) {
+                case EXACT -> exact.computeIfAbsent(selector.getValue(), key -> new ArrayList<>()).add(modification);
+                case SUFFIX -> {
+                    if (isExtension(selector.getValue())) {
+                        extensions.computeIfAbsent(selector.getValue(), key -> new ArrayList<>()).add(modification);
+                    } else {
+                        scanned.computeIfAbsent(selector, key -> new ArrayList<>()).add(modification);
+                    }
+                }
+                default -> scanned.computeIfAbsent(selector, key -> new ArrayList<>()).add(modification);
+            }
+        }
+    }
+
+    /**
+     * Compiles the selectors of a list of modifications.
+     *
+     * @param modifications The modifications, in the order they are applied.
+     * @return The index.
+     */
+    public static ModificationIndex of(List<Modification> modifications) {
+        return new ModificationIndex(modifications);
+    }
+
+    /**
+     * Gets the modifications whose selectors match an entry name, in declaration order.
+     * {@link Modification#appliesTo} has not been checked for the returned modifications.
+     *
+     * @param name The entry name.
+     * @return The candidate modifications.
+     */
+    public List<Modification> candidates(String name) {
+        List<Modification> result = exact.getOrDefault(name, List.of());
+
+        var dot = name.lastIndexOf('.');
+        if (dot >= 0 && !extensions.isEmpty()) {
+            result = merge(result, extensions.getOrDefault(name.substring(dot), List.of()));
+        }
+
+        if (!scanned.isEmpty()) {
+            for (var entry : scanned.entrySet()) {
+                if (entry.getKey().matches(name)) {
+                    result = merge(result, entry.getValue());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the modifications that apply to an entry, in declaration order.
+     *
+     * @param entry The entry.
+     * @return The applicable modifications.
+     */
+    public List<Modification> select(JarEntry entry) {
+        return filter(candidates(entry.getName()), entry);
+    }
+
+    /**
+     * Keeps the candidates that accept an entry through {@link Modification#appliesTo}.
+     *
+     * @param candidates The candidate modifications.
+     * @param entry      The entry.
+     * @return The applicable modifications, or the candidates themselves if all of them apply.
+     */
+    public static List<Modification> filter(List<Modification> candidates, JarEntry entry) {
+        return filter(candidates, entry, null);
+    }
+
+    /**
+     * Keeps the candidates that accept an entry through {@link Modification#appliesTo}, reporting each check to a listener.
+     *
+     * @param candidates The candidate modifications.
+     * @param entry      The entry.
+     * @param listener   The listener, or null to not time the checks.
+     * @return The applicable modifications, or the candidates themselves if all of them apply.
+     */
+    public static List<Modification> filter(List<Modification> candidates, JarEntry entry, AppliesToListener listener) {
+        List<Modification> applicable = null;
+        for (var index = 0; index < candidates.size(); index++) {
+            var modification = candidates.get(index);
+            var applies = appliesTo(modification, entry, listener);
+            if (!applies && applicable == null) {
+                // Only allocate in the rare case a modification narrows its selector
+                applicable = new ArrayList<>(candidates.subList(0, index));
+            } else if (applies && applicable != null) {
+                applicable.add(modification);
+            }
+        }
+        return applicable == null ? candidates : applicable;
+    }
+
+    private static boolean appliesTo(Modification modification, JarEntry entry, AppliesToListener listener) {
+        if (listener == null) {
+            return modification.appliesTo(entry);
+        }
+        var start = System.nanoTime();
+        var applies = modification.appliesTo(entry);
+        listener.appliesTo(modification, System.nanoTime() - start, applies);
+        return applies;
+    }
+
+    private List<Modification> merge(List<Modification> first, List<Modification> second) {
+        if (second.isEmpty()) {
+            return first;
+        }
+        if (first.isEmpty()) {
+            return second;
+        }
+        var merged = new ArrayList<Modification>(first.size() + second.size());
+        int i = 0, j = 0;
+        while (i < first.size() && j < second.size()) {
+            if (order.get(first.get(i)) < order.get(second.get(j))) {
+                merged.add(first.get(i++));
+            } else {
+                merged.add(second.get(j++));
+            }
+        }
+        merged.addAll(first.subList(i, first.size()));
+        merged.addAll(second.subList(j, second.size()));
+        return merged;
+    }
+
+    private static boolean isExtension(String suffix) {
+        return suffix.length() > 1 && suffix.lastIndexOf('.') == 0 && suffix.indexOf('/') < 0;
+    }
+}
@@ -1,62 +1,78 @@
 package dev.huskuraft.universal.gradle.task.modification;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import org.gradle.api.tasks.Internal;
+
 import java.nio.charset.StandardCharsets;
 import java.util.jar.JarEntry;
 
 /**
  * A modification that updates the content of a plain text file.
+ * Subclasses either modify the decoded text in {@link #modifyText}, or register substitution rules in
+ * {@link #registerRules} to rewrite the UTF-8 bytes in a single pass.
  */
 public abstract class PlainTextModification implements Modification {
 
     /** The file extension for plain text files. */
     public static final String TXT_EXTENSION = ".txt";
 
+    private transient volatile TextRewriter rewriter;
+
     @Override
     public boolean appliesTo(JarEntry entry) {
+        return getSelector().matches(entry.getName());
+    }
+
+    @Override
+    @Internal
+    public EntrySelector getSelector() {
         // Only apply to .txt files
-        return entry.getName().endsWith(TXT_EXTENSION);
+        return EntrySelector.suffix(TXT_EXTENSION);
     }
 
     @Override
     public byte[] apply(byte[] input) {
-        // Read the input text file
-        String content;
-        try (var inputStream = new ByteArrayInputStream(input);
-             var reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
-            StringBuilder builder = new StringBuilder();
-            char[] buffer = new char[1024];
-            int length;
-            while ((length = reader.read(buffer)) != -1) {
-                builder.append(buffer, 0, length);
-            }
-            content = builder.toString();
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to read plain text from byte array", e);
+        var rewriter = getRewriter();
+        if (!rewriter.isEmpty()) {
+            return rewriter.rewrite(input);
         }
 
+        // Decode the input text file
+        var content = new String(input, StandardCharsets.UTF_8);
+
         // Apply the modification to the content
-        String modifiedContent = modifyText(content);
-
-        // Write the modified content to the output stream
-        try (var outputStream = new ByteArrayOutputStream();
-             var writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)) {
-            writer.write(modifiedContent);
-            writer.flush();
-            return outputStream.toByteArray();
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to write modified plain text to byte array", e);
+        var modifiedContent = modifyText(content);
+
+        // Encode the modified content
+        return modifiedContent.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private TextRewriter getRewriter() {
+        // Rules only depend on the modification, so they are compiled once and reused for every entry
+        var rewriter = this.rewriter;
+        if (rewriter == null) {
+            rewriter = new TextRewriter();
+            registerRules(rewriter);
+            this.rewriter = rewriter;
         }
+        return rewriter;
     }
 
     /**
-     * Abstract method to modify the text content.
+     * Registers the substitution rules of the byte-level mode.
+     * If at least one rule is registered, files are rewritten without being decoded and {@link #modifyText} is not called.
+     *
+     * @param rewriter The rewriter to register the rules with.
+     */
+    protected void registerRules(TextRewriter rewriter) {
+    }
+
+    /**
+     * Modifies the decoded text content, unless rules are registered in {@link #registerRules}.
      *
      * @param content The original text content.
      * @return The modified text content.
      */
-    protected abstract String modifyText(String content);
+    protected String modifyText(String content) {
+        return content;
+    }
 }
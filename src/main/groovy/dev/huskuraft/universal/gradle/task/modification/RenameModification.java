@@ -1,21 +1,31 @@
 package dev.huskuraft.universal.gradle.task.modification;
 
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.jar.JarEntry;
 import java.util.regex.Pattern;
 
 /**
  * A modification that renames a JAR entry based on a pattern.
+ * The pattern is kept as its source and flags, and compiled again after the modification is deserialized.
  */
 public class RenameModification implements Modification {
 
     @Input
-    private final Pattern pattern;
+    private final String regex;
+
+    @Input
+    private final int flags;
 
     @Input
     private final String replacement;
 
+    private transient volatile Pattern pattern;
+
     /**
      * Creates a new `RenameModification` instance.
      *
@@ -23,20 +33,80 @@ public class RenameModification implements Modification {
      * @param replacement The replacement string for the matched pattern.
      */
     public RenameModification(Pattern pattern, String replacement) {
-        this.pattern = pattern;
+        this.regex = pattern.pattern();
+        this.flags = pattern.flags();
         this.replacement = replacement;
+        this.pattern = pattern;
+    }
+
+    /**
+     * Creates a new `RenameModification` instance.
+     *
+     * @param regex       The regular expression matching the entry name.
+     * @param replacement The replacement string for the matched pattern.
+     */
+    public RenameModification(String regex, String replacement) {
+        this(Pattern.compile(regex), replacement);
+    }
+
+    /**
+     * Gets the regular expression matching the entry name.
+     *
+     * @return The regular expression.
+     */
+    public String getRegex() {
+        return regex;
+    }
+
+    /**
+     * Gets the flags of the regular expression, see {@link Pattern#flags()}.
+     *
+     * @return The flags.
+     */
+    public int getFlags() {
+        return flags;
+    }
+
+    /**
+     * Gets the regex pattern matching the entry name.
+     *
+     * @return The pattern.
+     */
+    @Internal
+    public Pattern getPattern() {
+        var pattern = this.pattern;
+        if (pattern == null) {
+            pattern = Pattern.compile(regex, flags);
+            this.pattern = pattern;
+        }
+        return pattern;
+    }
+
+    /**
+     * Gets the replacement string for the matched pattern.
+     *
+     * @return The replacement.
+     */
+    public String getReplacement() {
+        return replacement;
     }
 
     @Override
     public boolean appliesTo(JarEntry entry) {
         // Apply to all entries that match the pattern
-        return pattern.matcher(entry.getName()).matches();
+        return getPattern().matcher(entry.getName()).matches();
+    }
+
+    @Override
+    @Internal
+    public EntrySelector getSelector() {
+        return EntrySelector.regex(getPattern());
     }
 
     @Override
     public JarEntry apply(JarEntry inputEntry) {
         // Rename the entry by replacing the matched pattern
-        String newName = pattern.matcher(inputEntry.getName()).replaceAll(replacement);
+        String newName = getPattern().matcher(inputEntry.getName()).replaceAll(replacement);
         return new JarEntry(newName);
     }
 
@@ -45,4 +115,14 @@ public class RenameModification implements Modification {
         // Return the input as-is (no modification to the content)
         return input;
     }
+
+    @Override
+    public void apply(InputStream input, OutputStream output) throws IOException {
+        input.transferTo(output);
+    }
+
+    @Override
+    public boolean modifiesContent() {
+        return false;
+    }
 }
@@ -0,0 +1,274 @@
+package dev.huskuraft.universal.gradle.task.modification;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Rewrites UTF-8 text by substituting tokens and lines, without decoding it.
+ * All rules are compiled into a single Aho-Corasick automaton, so the text is scanned once regardless of the number of rules.
+ * It works for any UTF-8 text, e.g. {@code .txt}, {@code .properties}, {@code .mcmeta}, lang files or {@code mods.toml}.
+ * Matches are resolved from left to right; line rules take precedence over tokens, and longer tokens over shorter ones.
+ * A rewriter is immutable once it has been used and can be shared between threads.
+ */
+public final class TextRewriter {
+
+    private static final int ALPHABET = 256;
+
+    private final List<Rule> rules = new ArrayList<>();
+    private volatile Automaton automaton;
+
+    /**
+     * A rule replacing a token anywhere in the text, or a whole line starting with a key.
+     *
+     * @param pattern     The UTF-8 bytes of the token or key.
+     * @param replacement The UTF-8 bytes of the replacement.
+     * @param line        True if the whole line is replaced.
+     */
+    private record Rule(byte[] pattern, byte[] replacement, boolean line) {
+    }
+
+    /**
+     * A match found while scanning.
+     *
+     * @param regionStart The start of the replaced region, the start of the line for line rules.
+     * @param end         The end of the matched pattern.
+     * @param rule        The index of the rule.
+     */
+    private record Match(int regionStart, int end, int rule) {
+    }
+
+    /**
+     * Replaces every occurrence of a token.
+     *
+     * @param token       The token.
+     * @param replacement The replacement.
+     * @return This rewriter.
+     */
+    public TextRewriter replaceToken(String token, String replacement) {
+        return add(token, replacement, false);
+    }
+
+    /**
+     * Replaces the lines whose content starts with a key, ignoring leading whitespace, e.g. {@code license=} in a TOML file.
+     * The indentation of the line is dropped and its line terminator is kept.
+     * If several keys match a line, the first one registered wins.
+     *
+     * @param key  The key.
+     * @param line The new content of the line.
+     * @return This rewriter.
+     */
+    public TextRewriter replaceLine(String key, String line) {
+        if (key.indexOf('\n') >= 0 || !key.equals(key.stripLeading())) {
+            throw new IllegalArgumentException("Line keys must not contain line breaks or start with whitespace: " + key);
+        }
+        return add(key, line, true);
+    }
+
+    private TextRewriter add(String pattern, String replacement, boolean line) {
+        if (pattern.isEmpty()) {
+            throw new IllegalArgumentException("Patterns must not be empty");
+        }
+        if (automaton != null) {
+            throw new IllegalStateException("Rules cannot be added once the rewriter has been used");
+        }
+        rules.add(new Rule(pattern.getBytes(StandardCharsets.UTF_8), replacement.getBytes(StandardCharsets.UTF_8), line));
+        return this;
+    }
+
+    /**
+     * Checks whether no rule has been registered.
+     *
+     * @return True if the rewriter would leave every text as is.
+     */
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    /**
+     * Rewrites a UTF-8 text.
+     *
+     * @param input The text. It is not modified.
+     * @return The rewritten text, or the input itself if no rule matched.
+     */
+    public byte[] rewrite(byte[] input) {
+        var matches = scan(input);
+        if (matches.isEmpty()) {
+            return input;
+        }
+        matches.sort(Comparator.comparingInt(Match::regionStart).thenComparing(this::priority));
+
+        var output = new ByteArrayOutputStream(input.length + input.length / 8);
+        var position = 0;
+        for (var match : matches) {
+            if (match.regionStart() < position) {
+                // Overlaps a region that has already been replaced
+                continue;
+            }
+            var rule = rules.get(match.rule());
+            var end = rule.line() ? lineEnd(input, match.end()) : match.end();
+            output.write(input, position, match.regionStart() - position);
+            output.writeBytes(rule.replacement());
+            position = end;
+        }
+        output.write(input, position, input.length - position);
+        return output.toByteArray();
+    }
+
+    /**
+     * Orders matches starting at the same position: line rules in registration order first, then the longest tokens.
+     */
+    private int priority(Match first, Match second) {
+        var firstRule = rules.get(first.rule());
+        var secondRule = rules.get(second.rule());
+        if (firstRule.line() != secondRule.line()) {
+            return firstRule.line() ? -1 : 1;
+        }
+        if (!firstRule.line() && firstRule.pattern().length != secondRule.pattern().length) {
+            return Integer.compare(secondRule.pattern().length, firstRule.pattern().length);
+        }
+        return Integer.compare(first.rule(), second.rule());
+    }
+
+    private List<Match> scan(byte[] input) {
+        var automaton = getAutomaton();
+        var matches = new ArrayList<Match>();
+        var state = 0;
+        var lineStart = 0;
+        var contentStart = 0;
+        var indentation = true;
+        for (var index = 0; index < input.length; index++) {
+            var value = input[index] & 0xFF;
+            if (value == '\n') {
+                lineStart = index + 1;
+                contentStart = index + 1;
+                indentation = true;
+            } else if (indentation) {
+                if (value <= ' ') {
+                    contentStart = index + 1;
+                } else {
+                    indentation = false;
+                }
+            }
+
+            state = automaton.transitions[state * ALPHABET + value];
+            for (var ruleIndex : automaton.outputs[state]) {
+                var rule = rules.get(ruleIndex);
+                var start = index + 1 - rule.pattern().length;
+                if (!rule.line()) {
+                    matches.add(new Match(start, index + 1, ruleIndex));
+                } else if (start == contentStart) {
+                    matches.add(new Match(lineStart, index + 1, ruleIndex));
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Finds the end of the line containing a position, excluding the line terminator.
+     */
+    private static int lineEnd(byte[] input, int position) {
+        var end = position;
+        while (end < input.length && input[end] != '\n') {
+            end++;
+        }
+        if (end > position && input[end - 1] == '\r') {
+            end--;
+        }
+        return end;
+    }
+
+    private Automaton getAutomaton() {
+        var automaton = this.automaton;
+        if (automaton == null) {
+            synchronized (this) {
+                automaton = this.automaton;
+                if (automaton == null) {
+                    automaton = Automaton.compile(rules);
+                    this.automaton = automaton;
+                }
+            }
+        }
+        return automaton;
+    }
+
+    /**
+     * A deterministic Aho-Corasick automaton over bytes, with a full transition table.
+     */
+    private static final class Automaton {
+
+        private final int[] transitions;
+        /** The rules whose pattern ends in each state, following failure links. */
+        private final int[][] outputs;
+
+        private Automaton(int[] transitions, int[][] outputs) {
+            this.transitions = transitions;
+            this.outputs = outputs;
+        }
+
+        static Automaton compile(List<Rule> rules) {
+            // Build the trie, -1 marks a missing edge
+            var size = 1 + rules.stream().mapToInt(rule -> rule.pattern().length).sum();
+            var transitions = new int[size * ALPHABET];
+            Arrays.fill(transitions, -1);
+            var terminals = new ArrayList<List<Integer>>();
+            terminals.add(new ArrayList<>());
+            var states = 1;
+            for (var ruleIndex = 0; ruleIndex < rules.size(); ruleIndex++) {
+                var state = 0;
+                for (var value : rules.get(ruleIndex).pattern()) {
+                    var edge = state * ALPHABET + (value & 0xFF);
+                    if (transitions[edge] == -1) {
+                        transitions[edge] = states++;
+                        terminals.add(new ArrayList<>());
+                    }
+                    state = transitions[edge];
+                }
+                terminals.get(state).add(ruleIndex);
+            }
+
+            // Resolve failure links breadth first, turning missing edges into transitions of the failure state
+            var failures = new int[states];
+            var outputs = new int[states][];
+            outputs[0] = toArray(terminals.get(0));
+            var queue = new ArrayDeque<Integer>();
+            for (var value = 0; value < ALPHABET; value++) {
+                var next = transitions[value];
+                if (next == -1) {
+                    transitions[value] = 0;
+                } else {
+                    failures[next] = 0;
+                    queue.add(next);
+                }
+            }
+            while (!queue.isEmpty()) {
+                var state = queue.poll();
+                var inherited = outputs[failures[state]];
+                var own = terminals.get(state);
+                var merged = Arrays.copyOf(toArray(own), own.size() + inherited.length);
+                System.arraycopy(inherited, 0, merged, own.size(), inherited.length);
+                outputs[state] = merged;
+                for (var value = 0; value < ALPHABET; value++) {
+                    var edge = state * ALPHABET + value;
+                    var next = transitions[edge];
+                    if (next == -1) {
+                        transitions[edge] = transitions[failures[state] * ALPHABET + value];
+                    } else {
+                        failures[next] = transitions[failures[state] * ALPHABET + value];
+                        queue.add(next);
+                    }
+                }
+            }
+            return new Automaton(Arrays.copyOf(transitions, states * ALPHABET), outputs);
+        }
+
+        private static int[] toArray(List<Integer> values) {
+            return values.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package dev.huskuraft.universal.gradle.task.modification;
 
+import org.gradle.api.tasks.Internal;
+
 import com.electronwill.nightconfig.core.Config;
 import com.electronwill.nightconfig.core.InMemoryFormat;
 import com.electronwill.nightconfig.core.io.IndentStyle;
@@ -29,8 +31,14 @@ public abstract class TomlModification implements Modification {
 
     @Override
     public boolean appliesTo(JarEntry entry) {
+        return getSelector().matches(entry.getName());
+    }
+
+    @Override
+    @Internal
+    public EntrySelector getSelector() {
         // Only apply to .toml files
-        return entry.getName().endsWith(TOML_EXTENSION);
+        return EntrySelector.suffix(TOML_EXTENSION);
     }
 
     @Override
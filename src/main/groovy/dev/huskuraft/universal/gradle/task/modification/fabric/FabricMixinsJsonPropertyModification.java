@@ -1,19 +1,23 @@
 package dev.huskuraft.universal.gradle.task.modification.fabric;
 
-import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
 import dev.huskuraft.universal.gradle.Mod;
+import dev.huskuraft.universal.gradle.task.modification.EntrySelector;
 import dev.huskuraft.universal.gradle.task.modification.JsonModification;
-
-import java.util.jar.JarEntry;
+import dev.huskuraft.universal.gradle.task.modification.JsonStreamRewriter;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
 
 /**
- * A modification that updates the `mixins.json` file within a JAR.
+ * A modification that updates the `mixins.json` file within a JAR, pointing it to the refmap of the mod.
+ * The mixin package is relocated along with the mixin classes, see {@link dev.huskuraft.universal.gradle.task.modification.relocation.MixinJsonRelocationModification}.
  */
 public class FabricMixinsJsonPropertyModification extends JsonModification {
 
     /** The name of the `mixins.json` file. */
     public static final String FILE_NAME = "fabric.mixins.json";
 
+    @Input
     private final Mod mod;
 
     /**
@@ -25,15 +29,24 @@ public class FabricMixinsJsonPropertyModification extends JsonModification {
         this.mod = mod;
     }
 
+    /**
+     * Gets the mod information used for modifications.
+     *
+     * @return The mod information.
+     */
+    public Mod getMod() {
+        return mod;
+    }
+
     @Override
-    public boolean appliesTo(JarEntry entry) {
+    @Internal
+    public EntrySelector getSelector() {
         // Only apply to the `mixins.json` file
-        return entry.getName().equals(FILE_NAME);
+        return EntrySelector.exact(FILE_NAME);
     }
 
     @Override
-    protected void modifyJson(JsonObject jsonObject) {
-        jsonObject.addProperty("package", mod.getGroupId() + ".fabric.mixin");
-        jsonObject.addProperty("refmap", mod.getId() + ".refmap.json");
+    protected void registerHandlers(JsonStreamRewriter rewriter) {
+        rewriter.put("$.refmap", new JsonPrimitive(mod.getId() + ".refmap.json"));
     }
 }
@@ -3,9 +3,10 @@ package dev.huskuraft.universal.gradle.task.modification.fabric;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import dev.huskuraft.universal.gradle.Mod;
+import dev.huskuraft.universal.gradle.task.modification.EntrySelector;
 import dev.huskuraft.universal.gradle.task.modification.JsonModification;
-
-import java.util.jar.JarEntry;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
 
 /**
  * A modification that updates the `fabric.mod.json` file within a JAR.
@@ -15,6 +16,7 @@ public class FabricModJsonPropertyModification extends JsonModification {
     /** The name of the `fabric.mod.json` file. */
     public static final String FILE_NAME = "fabric.mod.json";
 
+    @Input
     private final Mod mod;
 
     /**
@@ -26,10 +28,20 @@ public class FabricModJsonPropertyModification extends JsonModification {
         this.mod = mod;
     }
 
+    /**
+     * Gets the mod information used for modifications.
+     *
+     * @return The mod information.
+     */
+    public Mod getMod() {
+        return mod;
+    }
+
     @Override
-    public boolean appliesTo(JarEntry entry) {
+    @Internal
+    public EntrySelector getSelector() {
         // Only apply to the `fabric.mod.json` file
-        return entry.getName().equals(FILE_NAME);
+        return EntrySelector.exact(FILE_NAME);
     }
 
     @Override
@@ -1,19 +1,25 @@
 package dev.huskuraft.universal.gradle.task.modification.fabric;
 
-import com.google.gson.JsonObject;
 import dev.huskuraft.universal.gradle.Mod;
+import dev.huskuraft.universal.gradle.task.modification.EntrySelector;
 import dev.huskuraft.universal.gradle.task.modification.JsonModification;
-
-import java.util.jar.JarEntry;
+import dev.huskuraft.universal.gradle.task.modification.JsonStreamRewriter;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
 
 /**
  * A modification that updates the `refmap.json` file within a JAR, replacing all properties with the groupId from the mod.
+ *
+ * @deprecated Only the keys are relocated. Use {@link dev.huskuraft.universal.gradle.task.modification.relocation.Relocator#modifications()},
+ * which relocates the keys and values of refmaps consistently with the classes.
  */
+@Deprecated
 public class FabricRefmapJsonPropertyModification extends JsonModification {
 
     /** The name of the `refmap.json` file. */
     public static final String FILE_NAME = "fabric.refmap.json";
 
+    @Input
     private final Mod mod;
 
     /**
@@ -25,36 +31,31 @@ public class FabricRefmapJsonPropertyModification extends JsonModification {
         this.mod = mod;
     }
 
+    /**
+     * Gets the mod information used for modifications.
+     *
+     * @return The mod information.
+     */
+    public Mod getMod() {
+        return mod;
+    }
+
     @Override
-    public boolean appliesTo(JarEntry entry) {
+    @Internal
+    public EntrySelector getSelector() {
         // Only apply to the `refmap.json` file
-        return entry.getName().equals(FILE_NAME);
+        return EntrySelector.exact(FILE_NAME);
     }
 
     @Override
-    protected void modifyJson(JsonObject jsonObject) {
+    protected void registerHandlers(JsonStreamRewriter rewriter) {
         // Replace all properties with the groupId from the mod
         var groupIdPath = mod.getGroupId().replace('.', '/');
 
         // Update the "mappings" section
-        if (jsonObject.has("mappings")) {
-            var mappings = jsonObject.getAsJsonObject("mappings");
-            mappings.keySet().stream().toList().forEach(key -> {
-                String newKey = key.replace("dev/huskuraft/universal", groupIdPath);
-                mappings.add(newKey, mappings.remove(key));
-            });
-        }
+        rewriter.renameMembers("$.mappings", key -> key.replace("dev/huskuraft/universal", groupIdPath));
 
         // Update the "data" section
-        if (jsonObject.has("data")) {
-            var data = jsonObject.getAsJsonObject("data");
-            if (data.has("named:intermediary")) {
-                var namedIntermediary = data.getAsJsonObject("named:intermediary");
-                namedIntermediary.keySet().stream().toList().forEach(key -> {
-                    String newKey = key.replaceFirst("dev/huskuraft/universal", groupIdPath);
-                    namedIntermediary.add(newKey, namedIntermediary.remove(key));
-                });
-            }
-        }
+        rewriter.renameMembers("$.data.named:intermediary", key -> key.replaceFirst("dev/huskuraft/universal", groupIdPath));
     }
 }
@@ -1,7 +1,9 @@
 package dev.huskuraft.universal.gradle.task.modification.fabric;
 
 import dev.huskuraft.universal.gradle.Mod;
+import dev.huskuraft.universal.gradle.task.modification.EntrySelector;
 import dev.huskuraft.universal.gradle.task.modification.RenameModification;
+import org.gradle.api.tasks.Internal;
 
 import java.util.regex.Pattern;
 
@@ -20,4 +22,11 @@ public class FabricRefmapJsonRenameModification extends RenameModification {
     public FabricRefmapJsonRenameModification(Mod mod) {
         super(Pattern.compile(FABRIC_REFMAP_JSON), mod.getId() + ".refmap.json");
     }
+
+    @Override
+    @Internal
+    public EntrySelector getSelector() {
+        // Only apply to the file itself, the name is not meant as a regular expression
+        return EntrySelector.exact(FABRIC_REFMAP_JSON);
+    }
 }
@@ -1,9 +1,13 @@
 package dev.huskuraft.universal.gradle.task.modification.forge;
 
 import dev.huskuraft.universal.gradle.Mod;
+import dev.huskuraft.universal.gradle.task.modification.EntrySelector;
 import dev.huskuraft.universal.gradle.task.modification.PlainTextModification;
+import dev.huskuraft.universal.gradle.task.modification.TextRewriter;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
 
-import java.util.jar.JarEntry;
+import java.util.Arrays;
 
 /**
  * A modification that updates specific lines in the `mods.toml` file for Forge mods.
@@ -13,6 +17,7 @@ public class ForgeModTomlModification extends PlainTextModification {
     /** The name of the `mods.toml` file. */
     public static final String FILE_NAME = "META-INF/mods.toml";
 
+    @Input
     private final Mod mod;
 
     /**
@@ -24,53 +29,57 @@ public class ForgeModTomlModification extends PlainTextModification {
         this.mod = mod;
     }
 
+    /**
+     * Gets the mod information used for modifications.
+     *
+     * @return The mod information.
+     */
+    public Mod getMod() {
+        return mod;
+    }
+
     @Override
-    public boolean appliesTo(JarEntry entry) {
+    @Internal
+    public EntrySelector getSelector() {
         // Only apply to the `mods.toml` file
-        return entry.getName().equals(FILE_NAME);
+        return EntrySelector.exact(FILE_NAME);
     }
 
     @Override
-    protected String modifyText(String content) {
-        // Split the content into lines
-        var lines = content.split("\n");
-        var modifiedContent = new StringBuilder();
-
-        // Iterate through each line and modify it as needed
-        for (var line : lines) {
-            if (line.trim().startsWith("license=")) {
-                line = "license=\"" + mod.getLicense() + "\"";
-            } else if (line.trim().startsWith("issueTrackerURL=")) {
-                line = "issueTrackerURL=\"" + mod.getSupportUrl() + "\"";
-            } else if (line.trim().startsWith("modId=\"universal\"")) {
-                line = "modId=\"" + mod.getId() + "\"";
-            } else if (line.trim().startsWith("version=")) {
-                line = "version=\"" + mod.getVersion() + "\"";
-            } else if (line.trim().startsWith("displayName=")) {
-                line = "displayName=\"" + mod.getName() + "\"";
-            } else if (line.trim().startsWith("displayURL=")) {
-                line = "displayURL=\"" + mod.getPrimaryUrl() + "\"";
-            } else if (line.trim().startsWith("logoFile=")) {
-                line = "logoFile=\"" + "assets/" + mod.getId() + "/icon.png" + "\"";
-            } else if (line.trim().startsWith("authors=")) {
-                line = "authors=\"" + String.join(",", mod.getAuthors()) + "\"";
-            } else if (line.trim().startsWith("displayTest=")) {
-                // MATCH_VERSION, IGNORE_SERVER_VERSION, IGNORE_ALL_VERSION, NONE
-                line = "displayTest=\"" + "MATCH_VERSION" + "\"";
-            } else if (line.trim().startsWith("description=")) {
-                line = "description=\"" + mod.getDescription() + "\"";
-            } else if (line.trim().startsWith("[[dependencies.universal]]")) {
-                line = "[[dependencies." + mod.getId() + "]]";
-            } else if (line.trim().startsWith("side=")) {
-                line = switch (mod.getEnvironment()) {
-                    case BOTH -> "side=\"" + "BOTH" + "\"";
-                    case CLIENT -> "side=\"" + "CLIENT" + "\"";
-                    case SERVER ->  "side=\"" + "SERVER" + "\"";
-                };
-            }
-            modifiedContent.append(line).append("\n");
+    public byte[] apply(byte[] input) {
+        var output = super.apply(input);
+        // The file ends with a single line break, whatever it ended with before
+        var end = output.length;
+        while (end > 0 && output[end - 1] == '\n') {
+            end--;
+        }
+        if (end == output.length - 1) {
+            return output;
         }
+        var normalized = Arrays.copyOf(output, end + 1);
+        normalized[end] = '\n';
+        return normalized;
+    }
 
-        return modifiedContent.toString();
+    @Override
+    protected void registerRules(TextRewriter rewriter) {
+        // Replace the lines starting with each key, the first matching key wins
+        rewriter.replaceLine("license=", "license=\"" + mod.getLicense() + "\"");
+        rewriter.replaceLine("issueTrackerURL=", "issueTrackerURL=\"" + mod.getSupportUrl() + "\"");
+        rewriter.replaceLine("modId=\"universal\"", "modId=\"" + mod.getId() + "\"");
+        rewriter.replaceLine("version=", "version=\"" + mod.getVersion() + "\"");
+        rewriter.replaceLine("displayName=", "displayName=\"" + mod.getName() + "\"");
+        rewriter.replaceLine("displayURL=", "displayURL=\"" + mod.getPrimaryUrl() + "\"");
+        rewriter.replaceLine("logoFile=", "logoFile=\"" + "assets/" + mod.getId() + "/icon.png" + "\"");
+        rewriter.replaceLine("authors=", "authors=\"" + String.join(",", mod.getAuthors()) + "\"");
+        // MATCH_VERSION, IGNORE_SERVER_VERSION, IGNORE_ALL_VERSION, NONE
+        rewriter.replaceLine("displayTest=", "displayTest=\"" + "MATCH_VERSION" + "\"");
+        rewriter.replaceLine("description=", "description=\"" + mod.getDescription() + "\"");
+        rewriter.replaceLine("[[dependencies.universal]]", "[[dependencies." + mod.getId() + "]]");
+        rewriter.replaceLine("side=", switch (mod.getEnvironment()) {
+            case BOTH -> "side=\"" + "BOTH" + "\"";
+            case CLIENT -> "side=\"" + "CLIENT" + "\"";
+            case SERVER -> "side=\"" + "SERVER" + "\"";
+        });
     }
 }
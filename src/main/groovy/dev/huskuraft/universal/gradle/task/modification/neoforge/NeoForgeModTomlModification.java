@@ -1,9 +1,9 @@
 package dev.huskuraft.universal.gradle.task.modification.neoforge;
 
 import dev.huskuraft.universal.gradle.Mod;
+import dev.huskuraft.universal.gradle.task.modification.EntrySelector;
 import dev.huskuraft.universal.gradle.task.modification.forge.ForgeModTomlModification;
-
-import java.util.jar.JarEntry;
+import org.gradle.api.tasks.Internal;
 
 /**
  * A modification that updates specific lines in the `mods.toml` file for Forge mods.
@@ -23,8 +23,9 @@ public class NeoForgeModTomlModification extends ForgeModTomlModification {
     }
 
     @Override
-    public boolean appliesTo(JarEntry entry) {
+    @Internal
+    public EntrySelector getSelector() {
         // Only apply to the `neoforge.mods.toml` file
-        return entry.getName().equals(FILE_NAME);
+        return EntrySelector.exact(FILE_NAME);
     }
 }
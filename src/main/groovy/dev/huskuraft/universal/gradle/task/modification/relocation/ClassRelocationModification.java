@@ -0,0 +1,60 @@
+package dev.huskuraft.universal.gradle.task.modification.relocation;
+
+import java.util.jar.JarEntry;
+
+import org.gradle.api.tasks.Nested;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.commons.ClassRemapper;
+
+import dev.huskuraft.universal.gradle.task.modification.ClassConstants;
+import dev.huskuraft.universal.gradle.task.modification.ClassModification;
+
+/**
+ * A modification that relocates class files: their entry names, the types they reference,
+ * and the names within their string constants and annotation values.
+ * It is fused with the other class modifications, so a class is relocated and modified in a single ASM pass.
+ */
+public class ClassRelocationModification extends ClassModification {
+
+    @Nested
+    private final Relocator relocator;
+
+    /**
+     * Creates a new `ClassRelocationModification` instance.
+     *
+     * @param relocator The relocator.
+     */
+    public ClassRelocationModification(Relocator relocator) {
+        this.relocator = relocator;
+    }
+
+    /**
+     * Gets the relocator.
+     *
+     * @return The relocator.
+     */
+    public Relocator getRelocator() {
+        return relocator;
+    }
+
+    @Override
+    public boolean mayApply(ClassConstants constants) {
+        return relocator.mayRelocate(constants);
+    }
+
+    @Override
+    public boolean remapsConstants() {
+        return true;
+    }
+
+    @Override
+    public JarEntry apply(JarEntry inputEntry) {
+        var name = relocator.relocateInternalName(inputEntry.getName());
+        return name.equals(inputEntry.getName()) ? inputEntry : new JarEntry(name);
+    }
+
+    @Override
+    public ClassVisitor createVisitor(ClassVisitor classVisitor) {
+        return new ClassRemapper(classVisitor, relocator.getRemapper());
+    }
+}
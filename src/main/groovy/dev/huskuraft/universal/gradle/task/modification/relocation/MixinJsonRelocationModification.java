@@ -0,0 +1,86 @@
+package dev.huskuraft.universal.gradle.task.modification.relocation;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.jar.JarEntry;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import org.gradle.api.tasks.Nested;
+
+import dev.huskuraft.universal.gradle.task.modification.JsonModification;
+
+/**
+ * A modification that relocates mixin configs and refmaps, e.g. {@code modid.mixins.json} and {@code modid.refmap.json}.
+ * The names in every member name and string value are relocated, so the mixin package, the mixin classes and the
+ * refmap keys keep matching the relocated classes and the relocated strings of their annotations.
+ */
+public class MixinJsonRelocationModification extends JsonModification {
+
+    @Nested
+    private final Relocator relocator;
+
+    /**
+     * Creates a new `MixinJsonRelocationModification` instance.
+     *
+     * @param relocator The relocator.
+     */
+    public MixinJsonRelocationModification(Relocator relocator) {
+        this.relocator = relocator;
+    }
+
+    /**
+     * Gets the relocator.
+     *
+     * @return The relocator.
+     */
+    public Relocator getRelocator() {
+        return relocator;
+    }
+
+    @Override
+    public boolean appliesTo(JarEntry entry) {
+        if (!super.appliesTo(entry)) {
+            return false;
+        }
+        // Mixin configs and refmaps are named after the mod, with a mixins or refmap part
+        var fileName = entry.getName().substring(entry.getName().lastIndexOf('/') + 1);
+        return fileName.contains("mixins") || fileName.contains("refmap");
+    }
+
+    @Override
+    protected void modifyJson(JsonObject jsonObject) {
+        relocate(jsonObject);
+    }
+
+    private void relocate(JsonObject jsonObject) {
+        // Members are removed and added again, so their order is kept when one of them is renamed
+        var members = new ArrayList<>(jsonObject.entrySet());
+        for (var member : members) {
+            jsonObject.remove(member.getKey());
+        }
+        for (Map.Entry<String, JsonElement> member : members) {
+            jsonObject.add(relocator.relocateText(member.getKey()), relocate(member.getValue()));
+        }
+    }
+
+    private JsonElement relocate(JsonElement element) {
+        if (element.isJsonObject()) {
+            relocate(element.getAsJsonObject());
+        } else if (element.isJsonArray()) {
+            var array = element.getAsJsonArray();
+            for (var index = 0; index < array.size(); index++) {
+                array.set(index, relocate(array.get(index)));
+            }
+        } else if (element.isJsonPrimitive() && element.getAsJsonPrimitive().isString()) {
+            var value = element.getAsString();
+            var relocated = relocator.relocateText(value);
+            if (!relocated.equals(value)) {
+                return new JsonPrimitive(relocated);
+            }
+        }
+        return element;
+    }
+}
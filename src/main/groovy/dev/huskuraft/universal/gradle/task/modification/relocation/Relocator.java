@@ -0,0 +1,332 @@
+package dev.huskuraft.universal.gradle.task.modification.relocation;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.objectweb.asm.commons.Remapper;
+
+import dev.huskuraft.universal.gradle.task.modification.ClassConstants;
+import dev.huskuraft.universal.gradle.task.modification.Modification;
+
+/**
+ * Relocates packages, e.g. {@code dev.huskuraft.universal} to the group of the mod, in class files, entry names and text.
+ * The mappings are compiled into a trie of package segments, so a name is relocated by its longest mapped package
+ * in a single walk, whatever the number of mappings. The trie is compiled again after the relocator is deserialized.
+ * The modifications of {@link #modifications()} share the relocator, so classes, service files, mixin configs and refmaps
+ * are relocated consistently in the same pass over the JAR.
+ */
+public final class Relocator implements Serializable {
+
+    @Input
+    private final LinkedHashMap<String, String> mappings;
+
+    private transient volatile Node trie;
+    private transient volatile Remapper remapper;
+
+    /**
+     * A package segment of the trie, with the replacement of the package ending at it, if it is mapped.
+     */
+    private static final class Node {
+
+        private String[] keys = new String[0];
+        private Node[] children = new Node[0];
+        private String slashedReplacement;
+        private String dottedReplacement;
+
+        private Node child(String text, int start, int end) {
+            // Nodes have few children, so scanning them is cheaper than hashing a substring
+            for (var index = 0; index < keys.length; index++) {
+                var key = keys[index];
+                if (key.length() == end - start && text.regionMatches(start, key, 0, key.length())) {
+                    return children[index];
+                }
+            }
+            return null;
+        }
+
+        private Node getOrCreateChild(String key) {
+            for (var index = 0; index < keys.length; index++) {
+                if (keys[index].equals(key)) {
+                    return children[index];
+                }
+            }
+            var child = new Node();
+            var count = keys.length;
+            keys = Arrays.copyOf(keys, count + 1);
+            children = Arrays.copyOf(children, count + 1);
+            keys[count] = key;
+            children[count] = child;
+            return child;
+        }
+    }
+
+    /**
+     * The longest mapped package at a position.
+     *
+     * @param end         The end of the package in the text.
+     * @param replacement The replacement of the package, with the separator of the text.
+     */
+    private record Match(int end, String replacement) {
+    }
+
+    private Relocator(LinkedHashMap<String, String> mappings) {
+        this.mappings = mappings;
+    }
+
+    /**
+     * Creates a relocator.
+     *
+     * @param mappings The packages to relocate, e.g. {@code dev.huskuraft.universal}, and the packages to relocate them to.
+     * @return The relocator.
+     * @throws IllegalArgumentException If a package is not a valid package name.
+     */
+    public static Relocator of(Map<String, String> mappings) {
+        for (var mapping : mappings.entrySet()) {
+            checkPackage(mapping.getKey());
+            checkPackage(mapping.getValue());
+        }
+        return new Relocator(new LinkedHashMap<>(mappings));
+    }
+
+    /**
+     * Creates a relocator of a single package.
+     *
+     * @param from The package to relocate.
+     * @param to   The package to relocate it to.
+     * @return The relocator.
+     */
+    public static Relocator of(String from, String to) {
+        return of(Map.of(from, to));
+    }
+
+    private static void checkPackage(String name) {
+        for (var segment : name.split("\\.", -1)) {
+            if (segment.isEmpty() || !Character.isJavaIdentifierStart(segment.charAt(0))
+                    || !segment.chars().skip(1).allMatch(Character::isJavaIdentifierPart)) {
+                throw new IllegalArgumentException("Invalid package name: " + name);
+            }
+        }
+    }
+
+    /**
+     * Gets the packages to relocate and the packages to relocate them to.
+     *
+     * @return The mappings, in declaration order.
+     */
+    public Map<String, String> getMappings() {
+        return Collections.unmodifiableMap(mappings);
+    }
+
+    /**
+     * Creates the modifications relocating the entries of a JAR: classes, resources, service files, mixin configs and refmaps.
+     *
+     * @return The modifications sharing this relocator.
+     */
+    public List<Modification> modifications() {
+        var modifications = new ArrayList<Modification>();
+        modifications.add(new ClassRelocationModification(this));
+        modifications.add(new ServiceFileRelocationModification(this));
+        modifications.add(new MixinJsonRelocationModification(this));
+        modifications.add(new ResourceRelocationModification(this));
+        return modifications;
+    }
+
+    /**
+     * Relocates an internal class name, e.g. {@code dev/huskuraft/universal/Foo}, or an entry name.
+     *
+     * @param name The internal name or entry name.
+     * @return The relocated name, or the name itself if it is not in a relocated package.
+     */
+    public String relocateInternalName(String name) {
+        var match = match(name, 0, '/');
+        if (match == null) {
+            return name;
+        }
+        return match.replacement() + name.substring(match.end());
+    }
+
+    /**
+     * Relocates a class name, e.g. {@code dev.huskuraft.universal.Foo}.
+     *
+     * @param name The class or package name.
+     * @return The relocated name, or the name itself if it is not in a relocated package.
+     */
+    public String relocateClassName(String name) {
+        var match = match(name, 0, '.');
+        if (match == null) {
+            return name;
+        }
+        return match.replacement() + name.substring(match.end());
+    }
+
+    /**
+     * Relocates the class and package names within a text, either dotted or slashed, including those of descriptors
+     * such as {@code Ldev/huskuraft/universal/Foo;}. Names are only matched as a whole, from the start of an identifier.
+     *
+     * @param text The text.
+     * @return The relocated text, or the text itself if it names nothing in a relocated package.
+     */
+    public String relocateText(String text) {
+        StringBuilder builder = null;
+        var copied = 0;
+        var length = text.length();
+        for (var index = 0; index < length; index++) {
+            var identifier = Character.isJavaIdentifierStart(text.charAt(index)) && (index == 0 || !Character.isJavaIdentifierPart(text.charAt(index - 1)));
+            var descriptor = text.charAt(index) == 'L' && index + 1 < length && isDescriptorStart(text, index);
+            if (!identifier && !descriptor) {
+                continue;
+            }
+            var start = index;
+            var match = identifier ? match(text, start) : null;
+            if (match == null && descriptor) {
+                // A descriptor, whose type name follows the L
+                start = index + 1;
+                match = match(text, start);
+            }
+            if (match == null) {
+                continue;
+            }
+            if (builder == null) {
+                builder = new StringBuilder(length + 16);
+            }
+            builder.append(text, copied, start).append(match.replacement());
+            copied = match.end();
+            index = match.end() - 1;
+        }
+        if (builder == null) {
+            return text;
+        }
+        return builder.append(text, copied, length).toString();
+    }
+
+    /**
+     * Determines whether an L may start a descriptor, i.e. it follows the start of the text, a character that is not part of an identifier
+     * or other types of a method descriptor, such as the {@code I} of {@code (ILdev/huskuraft/universal/Foo;)V}.
+     */
+    private static boolean isDescriptorStart(String text, int index) {
+        var position = index;
+        while (position > 0 && "BCDFIJSZ[".indexOf(text.charAt(position - 1)) >= 0) {
+            position--;
+        }
+        return position == 0 || !Character.isJavaIdentifierPart(text.charAt(position - 1));
+    }
+
+    /**
+     * Determines from the constant pool of a class whether it names a relocated package, including the class itself.
+     *
+     * @param constants The constants of the class.
+     * @return False if relocating the class would not change it.
+     */
+    public boolean mayRelocate(ClassConstants constants) {
+        for (var from : mappings.keySet()) {
+            if (constants.containsUtf8Substring(from.replace('.', '/')) || constants.containsUtf8Substring(from)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the ASM remapper relocating the types of a class, and the names within its string constants and annotation values,
+     * so strings such as mixin targets stay consistent with the relocated refmap.
+     *
+     * @return The remapper.
+     */
+    @Internal
+    public Remapper getRemapper() {
+        var remapper = this.remapper;
+        if (remapper == null) {
+            remapper = new Remapper() {
+                @Override
+                public String map(String internalName) {
+                    return relocateInternalName(internalName);
+                }
+
+                @Override
+                public String mapPackageName(String name) {
+                    return relocateInternalName(name);
+                }
+
+                @Override
+                public Object mapValue(Object value) {
+                    if (value instanceof String string) {
+                        return relocateText(string);
+                    }
+                    return super.mapValue(value);
+                }
+            };
+            this.remapper = remapper;
+        }
+        return remapper;
+    }
+
+    /**
+     * Finds the longest mapped package at a position of a text, using the separator following its first segment.
+     */
+    private Match match(String text, int start) {
+        var end = segmentEnd(text, start);
+        if (end < text.length() && (text.charAt(end) == '/' || text.charAt(end) == '.')) {
+            return match(text, start, text.charAt(end));
+        }
+        return match(text, start, '.');
+    }
+
+    /**
+     * Finds the longest mapped package at a position of a text, walking the trie one segment at a time.
+     */
+    private Match match(String text, int start, char separator) {
+        Match match = null;
+        var node = getTrie();
+        var position = start;
+        while (true) {
+            var end = segmentEnd(text, position);
+            if (end == position) {
+                return match;
+            }
+            node = node.child(text, position, end);
+            if (node == null) {
+                return match;
+            }
+            if (node.slashedReplacement != null) {
+                match = new Match(end, separator == '/' ? node.slashedReplacement : node.dottedReplacement);
+            }
+            if (end >= text.length() || text.charAt(end) != separator) {
+                return match;
+            }
+            position = end + 1;
+        }
+    }
+
+    private static int segmentEnd(String text, int start) {
+        var end = start;
+        while (end < text.length() && Character.isJavaIdentifierPart(text.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    private Node getTrie() {
+        // The trie only depends on the mappings, so it is compiled once and shared by all threads
+        var trie = this.trie;
+        if (trie == null) {
+            trie = new Node();
+            for (var mapping : mappings.entrySet()) {
+                var node = trie;
+                for (var segment : mapping.getKey().split("\\.")) {
+                    node = node.getOrCreateChild(segment);
+                }
+                node.dottedReplacement = mapping.getValue();
+                node.slashedReplacement = mapping.getValue().replace('.', '/');
+            }
+            this.trie = trie;
+        }
+        return trie;
+    }
+}
@@ -0,0 +1,93 @@
+package dev.huskuraft.universal.gradle.task.modification.relocation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.jar.JarEntry;
+
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Nested;
+
+import dev.huskuraft.universal.gradle.task.modification.ClassModification;
+import dev.huskuraft.universal.gradle.task.modification.EntrySelector;
+import dev.huskuraft.universal.gradle.task.modification.Modification;
+
+/**
+ * A modification that moves the resources within relocated packages, e.g. {@code dev/huskuraft/universal/lang/en_us.json},
+ * keeping their content. Class files are moved by {@link ClassRelocationModification}.
+ * Directory entries stay in place, as the relocated package may share its directories with the classes of the mod.
+ */
+public class ResourceRelocationModification implements Modification {
+
+    @Nested
+    private final Relocator relocator;
+
+    /**
+     * Creates a new `ResourceRelocationModification` instance.
+     *
+     * @param relocator The relocator.
+     */
+    public ResourceRelocationModification(Relocator relocator) {
+        this.relocator = relocator;
+    }
+
+    /**
+     * Gets the relocator.
+     *
+     * @return The relocator.
+     */
+    public Relocator getRelocator() {
+        return relocator;
+    }
+
+    /**
+     * Selects the entries within the relocated packages, by the directory of the package when there is a single one,
+     * or else by the directory the packages have in common.
+     *
+     * @return The selector.
+     */
+    @Override
+    @Internal
+    public EntrySelector getSelector() {
+        String prefix = null;
+        for (var from : relocator.getMappings().keySet()) {
+            var directory = from.replace('.', '/') + "/";
+            if (prefix == null) {
+                prefix = directory;
+                continue;
+            }
+            var length = 0;
+            while (length < prefix.length() && length < directory.length() && prefix.charAt(length) == directory.charAt(length)) {
+                length++;
+            }
+            prefix = prefix.substring(0, length);
+        }
+        return prefix == null || prefix.isEmpty() ? EntrySelector.any() : EntrySelector.prefix(prefix);
+    }
+
+    @Override
+    public boolean appliesTo(JarEntry entry) {
+        var name = entry.getName();
+        return !entry.isDirectory() && !name.endsWith(ClassModification.CLASS_EXTENSION) && !relocator.relocateInternalName(name).equals(name);
+    }
+
+    @Override
+    public JarEntry apply(JarEntry inputEntry) {
+        return new JarEntry(relocator.relocateInternalName(inputEntry.getName()));
+    }
+
+    @Override
+    public byte[] apply(byte[] input) {
+        return input;
+    }
+
+    @Override
+    public void apply(InputStream input, OutputStream output) throws IOException {
+        input.transferTo(output);
+    }
+
+    @Override
+    public boolean modifiesContent() {
+        return false;
+    }
+}
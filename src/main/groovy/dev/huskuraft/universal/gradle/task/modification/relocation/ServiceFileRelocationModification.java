@@ -0,0 +1,63 @@
+package dev.huskuraft.universal.gradle.task.modification.relocation;
+
+import java.util.jar.JarEntry;
+
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Nested;
+
+import dev.huskuraft.universal.gradle.task.modification.EntrySelector;
+import dev.huskuraft.universal.gradle.task.modification.PlainTextModification;
+
+/**
+ * A modification that relocates the service files in {@code META-INF/services}: both the service named by the file
+ * and the providers it lists.
+ */
+public class ServiceFileRelocationModification extends PlainTextModification {
+
+    /** The directory of the service files. */
+    public static final String SERVICES_DIRECTORY = "META-INF/services/";
+
+    @Nested
+    private final Relocator relocator;
+
+    /**
+     * Creates a new `ServiceFileRelocationModification` instance.
+     *
+     * @param relocator The relocator.
+     */
+    public ServiceFileRelocationModification(Relocator relocator) {
+        this.relocator = relocator;
+    }
+
+    /**
+     * Gets the relocator.
+     *
+     * @return The relocator.
+     */
+    public Relocator getRelocator() {
+        return relocator;
+    }
+
+    @Override
+    public boolean appliesTo(JarEntry entry) {
+        return super.appliesTo(entry) && !entry.isDirectory();
+    }
+
+    @Override
+    @Internal
+    public EntrySelector getSelector() {
+        return EntrySelector.prefix(SERVICES_DIRECTORY);
+    }
+
+    @Override
+    public JarEntry apply(JarEntry inputEntry) {
+        var service = inputEntry.getName().substring(SERVICES_DIRECTORY.length());
+        var relocated = relocator.relocateClassName(service);
+        return relocated.equals(service) ? inputEntry : new JarEntry(SERVICES_DIRECTORY + relocated);
+    }
+
+    @Override
+    protected String modifyText(String content) {
+        return relocator.relocateText(content);
+    }
+}
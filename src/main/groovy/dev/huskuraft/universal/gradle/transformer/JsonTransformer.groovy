@@ -4,17 +4,20 @@ import com.github.jengelman.gradle.plugins.shadow.transformers.CacheableTransfor
 import com.github.jengelman.gradle.plugins.shadow.transformers.Transformer
 import com.github.jengelman.gradle.plugins.shadow.transformers.TransformerContext
 import com.google.gson.*
+import groovy.transform.CompileStatic
 import org.apache.tools.zip.ZipEntry
 import org.apache.tools.zip.ZipOutputStream
 import org.gradle.api.file.FileTreeElement
+import org.gradle.api.logging.Logger
 import org.gradle.api.logging.Logging
 import org.gradle.api.tasks.Input
 import org.gradle.api.tasks.Optional
 
 @CacheableTransformer
+@CompileStatic
 class JsonTransformer implements Transformer {
-    static final GSON = new GsonBuilder().disableHtmlEscaping().create()
-    static final LOGGER = Logging.getLogger(JsonTransformer.class)
+    static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create()
+    static final Logger LOGGER = Logging.getLogger(JsonTransformer.class)
 
     @Optional
     @Input
@@ -56,6 +59,8 @@ class JsonTransformer implements Transformer {
     }
 
     /**
+     * Merges {@code rhs} into {@code lhs} in place, so merging many resources into one accumulator takes linear time.
+     * Keys keep their insertion order, those of {@code lhs} first, and values of {@code rhs} may be adopted by {@code lhs}.
      * <table>
      *     <tr>
      *         <td>{@code lhs}</td> <td>{@code rhs}</td> <td>{@code return}</td>
@@ -80,58 +85,85 @@ class JsonTransformer implements Transformer {
      *         <td colspan="2">Other</td> <td>error</td>
      *     </tr>
      * </table>
-     * @param lhs a {@code JsonElement}
-     * @param rhs a {@code JsonElement}
+     * @param lhs a {@code JsonElement}, modified in place
+     * @param rhs a {@code JsonElement}, which must not be used afterwards
      * @param id used for logging purpose only
      * @return the merged {@code JsonElement}
      */
     static JsonElement mergeJson(JsonElement lhs, JsonElement rhs, String id = "") {
+        return merge(lhs, rhs, new ConflictPath(null, id))
+    }
+
+    static JsonPrimitive mergeJsonPrimitive(JsonPrimitive lhs, JsonPrimitive rhs, String id) {
+        return mergePrimitive(lhs, rhs, new ConflictPath(null, id))
+    }
+
+    static JsonObject mergeJsonObject(JsonObject lhs, JsonObject rhs, String id) {
+        return mergeObject(lhs, rhs, new ConflictPath(null, id))
+    }
+
+    static JsonArray mergeJsonArray(JsonArray lhs, JsonArray rhs, String id) {
+        lhs.addAll(rhs)
+        return lhs
+    }
+
+    private static JsonElement merge(JsonElement lhs, JsonElement rhs, ConflictPath path) {
         if (rhs == null || rhs instanceof JsonNull) {
             return lhs
         } else if (lhs == null || lhs instanceof JsonNull) {
             return rhs
         } else if (lhs instanceof JsonArray && rhs instanceof JsonArray) {
-            return mergeJsonArray(lhs as JsonArray, rhs as JsonArray, id)
+            (lhs as JsonArray).addAll(rhs as JsonArray)
+            return lhs
         } else if (lhs instanceof JsonObject && rhs instanceof JsonObject) {
-            return mergeJsonObject(lhs as JsonObject, rhs as JsonObject, id)
+            return mergeObject(lhs as JsonObject, rhs as JsonObject, path)
         } else if (lhs instanceof JsonPrimitive && rhs instanceof JsonPrimitive) {
-            return mergeJsonPrimitive(lhs as JsonPrimitive, rhs as JsonPrimitive, id)
+            return mergePrimitive(lhs as JsonPrimitive, rhs as JsonPrimitive, path)
         } else {
-            LOGGER.warn("conflicts for property {} detected, {} & {}",
-                id, lhs.toString(), rhs.toString())
+            LOGGER.warn("conflicts for property {} detected, {} & {}", path, lhs, rhs)
             return lhs
         }
     }
 
-    static JsonPrimitive mergeJsonPrimitive(JsonPrimitive lhs, JsonPrimitive rhs, String id) {
+    private static JsonPrimitive mergePrimitive(JsonPrimitive lhs, JsonPrimitive rhs, ConflictPath path) {
         / In Groovy, {@code a == b} is equivalent to {@code a.equals(b)} /
         if (lhs != rhs) {
-            LOGGER.warn("conflicts for property {} detected, {} & {}",
-                id, lhs.toString(), rhs.toString())
+            LOGGER.warn("conflicts for property {} detected, {} & {}", path, lhs, rhs)
         }
         return lhs
     }
 
-    static JsonObject mergeJsonObject(JsonObject lhs, JsonObject rhs, String id) {
-        JsonObject object = new JsonObject()
-
-        Set<String> properties = new HashSet<>()
-        properties.addAll(lhs.keySet())
-        properties.addAll(rhs.keySet())
-        for (String property : properties) {
-            object.add(property,
-                mergeJson(lhs.get(property), rhs.get(property), id + ":" + property))
+    private static JsonObject mergeObject(JsonObject lhs, JsonObject rhs, ConflictPath path) {
+        for (Map.Entry<String, JsonElement> property : rhs.entrySet()) {
+            def existing = lhs.get(property.key)
+            if (existing == null) {
+                // New keys are appended, keeping the order of the merged resources
+                lhs.add(property.key, property.value)
+                continue
+            }
+            def merged = merge(existing, property.value, new ConflictPath(path, property.key))
+            if (!merged.is(existing)) {
+                lhs.add(property.key, merged)
+            }
         }
-
-        return object
+        return lhs
     }
 
-    static JsonArray mergeJsonArray(JsonArray lhs, JsonArray rhs, String id) {
-        JsonArray array = new JsonArray()
+    /**
+     * The path of a merged property, only turned into a string when a conflict is logged.
+     */
+    private static final class ConflictPath {
+        private final ConflictPath parent
+        private final String key
 
-        array.addAll(lhs)
-        array.addAll(rhs)
+        ConflictPath(ConflictPath parent, String key) {
+            this.parent = parent
+            this.key = key
+        }
 
-        return array
+        @Override
+        String toString() {
+            return parent == null ? key : parent.toString() + ":" + key
+        }
     }
 }
@@ -0,0 +1,89 @@
+package dev.huskuraft.universal.gradle.transformer
+
+import com.github.jengelman.gradle.plugins.shadow.transformers.CacheableTransformer
+import com.github.jengelman.gradle.plugins.shadow.transformers.Transformer
+import com.github.jengelman.gradle.plugins.shadow.transformers.TransformerContext
+import dev.huskuraft.universal.gradle.task.modification.ClassModification
+import dev.huskuraft.universal.gradle.task.modification.Modification
+import dev.huskuraft.universal.gradle.task.modification.ModificationIndex
+import org.apache.tools.zip.ZipEntry
+import org.apache.tools.zip.ZipOutputStream
+import org.gradle.api.file.FileTreeElement
+import org.gradle.api.tasks.Nested
+
+import java.util.jar.JarEntry
+
+/**
+ * Runs {@link Modification}s on resources while Shadow builds the jar, so the jar does not have to be rewritten afterwards.
+ * Shadow relocates class files without passing them to transformers, so {@link ClassModification}s are not supported
+ * and still have to run in a {@link dev.huskuraft.universal.gradle.task.JarModificationTask}.
+ * Shadow only hands a resource to the first transformer accepting it, so all modifications of a jar belong in one transformer.
+ */
+@CacheableTransformer
+class ModificationTransformer implements Transformer {
+
+    @Nested
+    final List<Modification> modifications = []
+
+    private ModificationIndex modificationIndex
+
+    private final Map<String, byte[]> resources = new LinkedHashMap<>()
+
+    void modification(Modification modification) {
+        if (modification instanceof ClassModification) {
+            throw new IllegalArgumentException("Class modifications cannot run inside Shadow: ${modification.class.name}")
+        }
+        modifications.add(modification)
+        modificationIndex = null
+    }
+
+    @Override
+    boolean canTransformResource(FileTreeElement element) {
+        def path = element.relativePath.pathString
+        return !select(new JarEntry(path)).isEmpty()
+    }
+
+    @Override
+    void transform(TransformerContext context) {
+        def entry = new JarEntry(context.path)
+        def applicableModifications = select(entry)
+        def content = context.is.readAllBytes()
+        try {
+            for (def modification : applicableModifications) {
+                entry = modification.apply(entry)
+            }
+            for (def modification : applicableModifications) {
+                content = modification.apply(content)
+            }
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Failed to process resource: ${context.path}", e)
+        }
+
+        // Shadow keeps the first of duplicate resources, do the same for the transformed ones
+        resources.putIfAbsent(entry.name, content)
+    }
+
+    @Override
+    boolean hasTransformedResource() {
+        return !resources.isEmpty()
+    }
+
+    @Override
+    void modifyOutputStream(ZipOutputStream os, boolean preserveFileTimestamps) {
+        resources.forEach { name, content ->
+            ZipEntry entry = new ZipEntry(name)
+            entry.time = TransformerContext.getEntryTimestamp(preserveFileTimestamps, entry.time)
+            os.putNextEntry(entry)
+            os.write(content)
+        }
+
+        resources.clear()
+    }
+
+    private List<Modification> select(JarEntry entry) {
+        if (modificationIndex == null) {
+            modificationIndex = ModificationIndex.of(modifications)
+        }
+        return modificationIndex.select(entry)
+    }
+}
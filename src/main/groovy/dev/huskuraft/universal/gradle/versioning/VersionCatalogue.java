@@ -0,0 +1,222 @@
+package dev.huskuraft.universal.gradle.versioning;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * An immutable catalogue of Minecraft versions, indexed by id, by type and in release time order.
+ * It is built once per manifest, and queries return views of its indexes, so they neither scan nor copy the versions.
+ */
+public final class VersionCatalogue {
+
+    public static final String RELEASE = "release";
+    public static final String SNAPSHOT = "snapshot";
+
+    private static final VersionCatalogue EMPTY = of(List.of());
+
+    private final Map<String, Minecraft> byId;
+    private final List<Minecraft> versions;
+    private final Map<String, Integer> positions;
+    private final Map<String, TypeIndex> byType;
+    private final Map<Integer, List<Minecraft>> byDataPackVersion;
+
+    /**
+     * The versions of a type in release time order, with their positions in the catalogue.
+     */
+    private record TypeIndex(List<Minecraft> versions, int[] positions) {
+    }
+
+    private VersionCatalogue(Map<String, Minecraft> byId, List<Minecraft> versions, Map<String, Integer> positions,
+                             Map<String, TypeIndex> byType, Map<Integer, List<Minecraft>> byDataPackVersion) {
+        this.byId = byId;
+        this.versions = versions;
+        this.positions = positions;
+        this.byType = byType;
+        this.byDataPackVersion = byDataPackVersion;
+    }
+
+    /**
+     * Builds a catalogue.
+     * Versions released at the same time keep their relative order, reversed, as the manifest lists the newest version first.
+     *
+     * @param versions The versions, in manifest order.
+     * @return The catalogue.
+     */
+    public static VersionCatalogue of(Collection<Minecraft> versions) {
+        var byId = new LinkedHashMap<String, Minecraft>();
+        for (var version : versions) {
+            byId.put(version.getId(), version);
+        }
+
+        var releaseTimes = new HashMap<String, Instant>();
+        for (var version : byId.values()) {
+            releaseTimes.put(version.getId(), OffsetDateTime.parse(version.getReleaseTime()).toInstant());
+        }
+        var ordered = new ArrayList<>(byId.values());
+        Collections.reverse(ordered);
+        ordered.sort(Comparator.comparing(version -> releaseTimes.get(version.getId())));
+
+        var positions = new HashMap<String, Integer>();
+        var typeVersions = new LinkedHashMap<String, List<Minecraft>>();
+        var typePositions = new HashMap<String, List<Integer>>();
+        var byDataPackVersion = new HashMap<Integer, List<Minecraft>>();
+        for (int i = 0; i < ordered.size(); i++) {
+            var version = ordered.get(i);
+            positions.put(version.getId(), i);
+            typeVersions.computeIfAbsent(version.getType(), type -> new ArrayList<>()).add(version);
+            typePositions.computeIfAbsent(version.getType(), type -> new ArrayList<>()).add(i);
+            if (version.getDataPackVersion() != null) {
+                byDataPackVersion.computeIfAbsent(version.getDataPackVersion(), dataPackVersion -> new ArrayList<>()).add(version);
+            }
+        }
+
+        var byType = new HashMap<String, TypeIndex>();
+        typeVersions.forEach((type, list) -> byType.put(type, new TypeIndex(
+                Collections.unmodifiableList(list),
+                typePositions.get(type).stream().mapToInt(Integer::intValue).toArray()
+        )));
+        byDataPackVersion.replaceAll((dataPackVersion, list) -> Collections.unmodifiableList(list));
+
+        return new VersionCatalogue(
+                Collections.unmodifiableMap(byId),
+                Collections.unmodifiableList(ordered),
+                positions,
+                byType,
+                byDataPackVersion
+        );
+    }
+
+    /**
+     * @return The empty catalogue.
+     */
+    public static VersionCatalogue empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @return The number of versions.
+     */
+    public int size() {
+        return versions.size();
+    }
+
+    /**
+     * @return The versions by id, in manifest order.
+     */
+    public Map<String, Minecraft> asMap() {
+        return byId;
+    }
+
+    /**
+     * @return All versions, in release time order.
+     */
+    public List<Minecraft> getVersions() {
+        return versions;
+    }
+
+    public Optional<Minecraft> findById(String id) {
+        return Optional.ofNullable(byId.get(id));
+    }
+
+    /**
+     * @param type The type, e.g. {@link #RELEASE}.
+     * @return The versions of the type, in release time order.
+     */
+    public List<Minecraft> findByType(String type) {
+        var index = byType.get(type);
+        return index == null ? List.of() : index.versions();
+    }
+
+    /**
+     * @param type The type, e.g. {@link #RELEASE}.
+     * @return The version of the type released last.
+     */
+    public Optional<Minecraft> findLatest(String type) {
+        var versions = findByType(type);
+        return versions.isEmpty() ? Optional.empty() : Optional.of(versions.get(versions.size() - 1));
+    }
+
+    /**
+     * Finds the versions released between two versions, of any type.
+     *
+     * @param fromId The id of the first version, inclusive.
+     * @param toId   The id of the last version, inclusive.
+     * @return The versions in release time order, or an empty list if the first version was released after the last.
+     * @throws IllegalArgumentException If either version is unknown.
+     */
+    public List<Minecraft> findBetween(String fromId, String toId) {
+        int from = positionOf(fromId);
+        int to = positionOf(toId);
+        return from > to ? List.of() : versions.subList(from, to + 1);
+    }
+
+    /**
+     * Finds the versions of a type released between two versions, e.g. all releases between 1.18 and 1.21.4.
+     * The bounds need not be of the type themselves.
+     *
+     * @param type   The type, e.g. {@link #RELEASE}.
+     * @param fromId The id of the first version, inclusive.
+     * @param toId   The id of the last version, inclusive.
+     * @return The versions in release time order, or an empty list if the first version was released after the last.
+     * @throws IllegalArgumentException If either version is unknown.
+     */
+    public List<Minecraft> findBetween(String type, String fromId, String toId) {
+        int from = positionOf(fromId);
+        int to = positionOf(toId);
+        var index = byType.get(type);
+        if (index == null || from > to) {
+            return List.of();
+        }
+        int start = insertionPoint(index.positions(), from);
+        int end = insertionPoint(index.positions(), to + 1);
+        return index.versions().subList(start, end);
+    }
+
+    /**
+     * Finds the versions of a data pack version.
+     * Only detailed versions know their data pack version, see {@link VersionResolver#getDetailedCatalogue(Collection)}.
+     *
+     * @param dataPackVersion The data pack version.
+     * @return The versions in release time order.
+     */
+    public List<Minecraft> findByDataPackVersion(int dataPackVersion) {
+        return byDataPackVersion.getOrDefault(dataPackVersion, List.of());
+    }
+
+    /**
+     * Finds the versions sharing the data pack version of a version, including the version itself.
+     *
+     * @param id The id of the version.
+     * @return The versions in release time order, or an empty list if the data pack version of the version is unknown.
+     */
+    public List<Minecraft> findSharingDataPackVersion(String id) {
+        var version = byId.get(id);
+        if (version == null || version.getDataPackVersion() == null) {
+            return List.of();
+        }
+        return findByDataPackVersion(version.getDataPackVersion());
+    }
+
+    private int positionOf(String id) {
+        var position = positions.get(id);
+        if (position == null) {
+            throw new IllegalArgumentException("Unknown version: " + id);
+        }
+        return position;
+    }
+
+    private static int insertionPoint(int[] positions, int position) {
+        int index = Arrays.binarySearch(positions, position);
+        return index >= 0 ? index : -index - 1;
+    }
+}
@@ -3,97 +3,265 @@ package dev.huskuraft.universal.gradle.versioning
 import com.google.gson.Gson
 import com.google.gson.GsonBuilder
 import com.google.gson.JsonObject
+import dev.huskuraft.universal.gradle.zip.ZipArchiveReader
+import dev.huskuraft.universal.gradle.zip.ZipCentralDirectory
 
+import java.net.http.HttpClient
+import java.net.http.HttpRequest
+import java.net.http.HttpResponse
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
 import java.nio.file.Files
 import java.nio.file.Path
 import java.nio.file.Paths
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
 import java.time.Duration
 import java.time.Instant
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.zip.CRC32
 
 /**
  * Resolves Minecraft version information from Mojang's API.
  * 
  * File structure:
  *   ~/.gradle/caches/universal-gradle-plugin/
- *   ├── version_manifest.json           (cached manifest, 24h TTL)
+ *   ├── version_manifest.json           (cached manifest, 24h TTL, then revalidated)
+ *   ├── version_manifest.meta.json      (fetch time, ETag and Last-Modified of the cached manifest)
  *   ├── version-detail-<version>.json   (detailed version data)
- *   └── tmp/                            (temporary JAR downloads, auto-cleaned)
+ *   └── tmp/                            (temporary JAR downloads from servers without range support, auto-cleaned)
  */
 class VersionResolver {
 
     private static final String MANIFEST_URL = "https://launchermeta.mojang.com/mc/game/version_manifest.json"
     private static final Gson gson = new GsonBuilder().disableHtmlEscaping().create()
     private static final Duration CACHE_DURATION = Duration.ofHours(24)
-    private static final Path cacheDir = Paths.get(System.getProperty("user.home"), ".gradle", "caches", "universal-gradle-plugin")
-    private static final Path manifestCache = cacheDir.resolve("version_manifest.json")
-    
-    private static Map<String, Minecraft> versionCache = null
+    private static final Path DEFAULT_CACHE_DIR = Paths.get(System.getProperty("user.home"), ".gradle", "caches", "universal-gradle-plugin")
+    private static final String USER_AGENT = "UniversalGradlePlugin/1.0"
+
+    /** The number of bytes fetched after a requested range, so a local header and the data following it are fetched at once. */
+    private static final int RANGE_READ_AHEAD = 64 * 1024
+
+    /**
+     * Whether {@code version.json} is read from client jars with HTTP range requests instead of downloading them.
+     * Servers without range support are handled either way, by downloading the whole jar.
+     */
+    static boolean rangeRequests = true
+
+    /**
+     * Whether only cached data is used, without any network access.
+     * The version manifest must have been fetched before, and detailed versions that are not cached only hold their basic data.
+     */
+    static boolean offline = false
+
+    /** The maximum number of detailed versions fetched at the same time. */
+    static final int MAX_CONCURRENT_FETCHES = 6
+
+    private static final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build()
+    private static final Map<String, CompletableFuture<Optional<Minecraft>>> inFlight = new ConcurrentHashMap<>()
+    private static ExecutorService fetchExecutor = null
+
+    private static String manifestUrl = MANIFEST_URL
+    private static Path cacheDir = DEFAULT_CACHE_DIR
+    private static Path manifestCache = cacheDir.resolve("version_manifest.json")
+    private static Path manifestMetadata = cacheDir.resolve("version_manifest.meta.json")
+
+    private static VersionCatalogue versionCache = null
     private static Instant lastFetchTime = null
 
     static Optional<Minecraft> findById(String id) {
         ensureVersionsLoaded()
-        def version = versionCache?.get(id)
-        return version ? Optional.of(version) : Optional.empty()
+        return versionCache ? versionCache.findById(id) : Optional.empty()
     }
 
     static Optional<Minecraft> findDetailedById(String id) {
+        return findDetailedByIdAsync(id).join()
+    }
+
+    /**
+     * Resolves detailed versions concurrently, so resolving many versions takes about as long as the slowest one.
+     * Unknown ids are left out, and versions whose details cannot be fetched only hold their basic data.
+     *
+     * @param ids The version ids.
+     * @return The versions by id, in the order of the given ids.
+     */
+    static Map<String, Minecraft> findDetailedByIds(Collection<String> ids) {
+        def futures = new LinkedHashMap<String, CompletableFuture<Optional<Minecraft>>>()
+        ids.each { id -> futures.computeIfAbsent(id) { findDetailedByIdAsync(id) } }
+        CompletableFuture.allOf(futures.values() as CompletableFuture[]).join()
+
+        def versions = new LinkedHashMap<String, Minecraft>()
+        futures.each { id, future -> future.join().ifPresent { versions.put(id, it) } }
+        return versions
+    }
+
+    /**
+     * Resolves a detailed version without blocking.
+     * At most {@link #MAX_CONCURRENT_FETCHES} versions are fetched at once, and concurrent requests for the same id share a single fetch.
+     *
+     * @param id The version id.
+     * @return The detailed version, or the basic version if its details cannot be fetched, or empty if the id is unknown.
+     */
+    static CompletableFuture<Optional<Minecraft>> findDetailedByIdAsync(String id) {
         def basic = findById(id)
         if (!basic.isPresent() || !basic.get().url) {
-            return Optional.empty()
+            return CompletableFuture.completedFuture(Optional.empty())
         }
 
-        try {
-            return Optional.of(fetchDetailedVersion(id, basic.get()))
-        } catch (Exception e) {
-            println "Warning: Could not fetch detailed version for ${id}: ${e.message}"
-            return basic
+        def future = inFlight.computeIfAbsent(id) {
+            CompletableFuture.supplyAsync({
+                try {
+                    return Optional.of(fetchDetailedVersion(id, basic.get()))
+                } catch (Exception e) {
+                    println "Warning: Could not fetch detailed version for ${id}: ${e.message}"
+                    return basic
+                }
+            }, getFetchExecutor())
         }
+        future.whenComplete { result, error -> inFlight.remove(id, future) }
+        return future
     }
 
     static Map<String, Minecraft> getAllVersions() {
         ensureVersionsLoaded()
-        return Collections.unmodifiableMap(versionCache ?: [:])
+        return getCatalogue().asMap()
+    }
+
+    /**
+     * @return The catalogue of the versions in the manifest, indexed by id, by type and in release time order.
+     */
+    static VersionCatalogue getCatalogue() {
+        ensureVersionsLoaded()
+        return versionCache ?: VersionCatalogue.empty()
     }
 
+    /**
+     * Resolves detailed versions into a catalogue, which also indexes them by data pack version.
+     *
+     * @param ids The version ids.
+     * @return The catalogue of the known versions among the given ids.
+     */
+    static VersionCatalogue getDetailedCatalogue(Collection<String> ids) {
+        return VersionCatalogue.of(findDetailedByIds(ids).values())
+    }
+
+    /**
+     * Revalidates the version manifest, even if the one on disk is fresh.
+     * In offline mode, the manifest on disk is read again instead.
+     */
     static synchronized void refresh() {
         versionCache = null
         lastFetchTime = null
-        loadVersions()
+        loadVersions(true)
+    }
+
+    /**
+     * Points the resolver to another manifest and cache directory, e.g. a local server in tests.
+     *
+     * @param manifestUrl The URL of the version manifest, or null for Mojang's.
+     * @param cacheDir    The cache directory, or null for the one in the Gradle user home.
+     */
+    static synchronized void configure(String manifestUrl, Path cacheDir) {
+        VersionResolver.manifestUrl = manifestUrl ?: MANIFEST_URL
+        VersionResolver.cacheDir = cacheDir ?: DEFAULT_CACHE_DIR
+        VersionResolver.manifestCache = VersionResolver.cacheDir.resolve("version_manifest.json")
+        VersionResolver.manifestMetadata = VersionResolver.cacheDir.resolve("version_manifest.meta.json")
+        versionCache = null
+        lastFetchTime = null
+    }
+
+    private static synchronized ExecutorService getFetchExecutor() {
+        if (fetchExecutor == null) {
+            def counter = new AtomicInteger()
+            // Daemon threads, so an idle pool never keeps the Gradle daemon or a test JVM alive
+            fetchExecutor = Executors.newFixedThreadPool(MAX_CONCURRENT_FETCHES) { Runnable runnable ->
+                def thread = new Thread(runnable, "version-resolver-${counter.incrementAndGet()}")
+                thread.daemon = true
+                return thread
+            }
+        }
+        return fetchExecutor
     }
 
     private static synchronized void ensureVersionsLoaded() {
         if (versionCache && lastFetchTime) {
             def age = Duration.between(lastFetchTime, Instant.now())
-            if (age < CACHE_DURATION) return
+            if (age < CACHE_DURATION || offline) return
         }
-        loadVersions()
+        loadVersions(false)
     }
 
-    private static void loadVersions() {
+    /**
+     * Loads the manifest from disk while it is fresh, and revalidates it with a conditional request otherwise,
+     * so an unchanged manifest is not downloaded again.
+     *
+     * @param revalidate Whether to revalidate the manifest on disk even if it is fresh.
+     */
+    private static void loadVersions(boolean revalidate) {
+        def metadata = readManifestMetadata()
+        if (metadata && (offline || !revalidate && Duration.between(metadata.fetched, Instant.now()) < CACHE_DURATION)) {
+            try {
+                versionCache = parseManifest(Files.readString(manifestCache))
+                lastFetchTime = metadata.fetched
+                return
+            } catch (Exception e) {
+                if (offline) throw new RuntimeException("Failed to load versions", e)
+                // Fetch it again below
+                metadata = null
+            }
+        }
+        if (offline) {
+            throw new RuntimeException("Failed to load versions: no cached version manifest in offline mode")
+        }
+
         try {
-            versionCache = loadVersionsFromSource(MANIFEST_URL)
-            lastFetchTime = Instant.now()
-            saveToCache()
+            def headers = [:]
+            if (metadata?.etag) headers["If-None-Match"] = metadata.etag
+            if (metadata?.lastModified) headers["If-Modified-Since"] = metadata.lastModified
+            def response = httpClient.send(request(manifestUrl, Duration.ofSeconds(10), headers), HttpResponse.BodyHandlers.ofByteArray())
+            def now = Instant.now()
+            if (response.statusCode() == 304 && metadata) {
+                versionCache = parseManifest(Files.readString(manifestCache))
+            } else if (response.statusCode() == 200) {
+                // Parsed before it is stored, so a broken manifest never replaces a working one
+                versionCache = parseManifest(new String(response.body(), StandardCharsets.UTF_8))
+                writeAtomically(manifestCache, response.body())
+            } else {
+                throw new IOException("HTTP ${response.statusCode()}")
+            }
+            lastFetchTime = now
+            writeManifestMetadata(new ManifestMetadata(
+                fetched: now,
+                etag: response.headers().firstValue("ETag").orElse(metadata?.etag),
+                lastModified: response.headers().firstValue("Last-Modified").orElse(metadata?.lastModified)
+            ))
         } catch (Exception e) {
             try {
-                versionCache = loadVersionsFromSource(manifestCache.toUri().toString())
+                versionCache = parseManifest(Files.readString(manifestCache))
+                // The stored fetch time is left as is, so the next daemon tries again
                 lastFetchTime = Instant.now()
                 println "Warning: Using cached data: ${e.message}"
             } catch (Exception cacheError) {
-                throw new RuntimeException("Failed to load versions", cacheError)
+                throw new RuntimeException("Failed to load versions", e)
             }
         }
     }
 
-    private static Map<String, Minecraft> loadVersionsFromSource(String source) {
-        def manifest = source.startsWith("http") ? fetchJson(source) : 
-                      gson.fromJson(Files.readString(Paths.get(new URI(source))), JsonObject.class)
+    private static VersionCatalogue parseManifest(String json) {
+        def manifest = gson.fromJson(json, JsonObject.class)
         def versions = manifest.getAsJsonArray("versions")
         
-        return versions.collectEntries { versionElement ->
+        return VersionCatalogue.of(versions.collect { versionElement ->
             def v = versionElement.getAsJsonObject()
             def id = v.get("id").getAsString()
-            [(id): new Minecraft(
+            new Minecraft(
                 id: id,
                 name: id,
                 type: v.get("type").getAsString(),
@@ -104,19 +272,58 @@ class VersionResolver {
                 dataVersion: null, protocolVersion: null,
                 dataPackVersion: null, resourcePackVersion: null,
                 buildTime: null, complianceLevel: null
-            )]
+            )
+        })
+    }
+
+    /**
+     * When and how the manifest on disk was fetched, stored next to it so the TTL holds across daemons.
+     */
+    private static final class ManifestMetadata {
+        Instant fetched
+        String etag
+        String lastModified
+    }
+
+    private static ManifestMetadata readManifestMetadata() {
+        if (!Files.exists(manifestMetadata) || !Files.exists(manifestCache)) {
+            return null
+        }
+        try {
+            def json = gson.fromJson(Files.readString(manifestMetadata), JsonObject.class)
+            return new ManifestMetadata(
+                fetched: Instant.ofEpochMilli(json.get("fetched").getAsLong()),
+                etag: getStringOrNull(json, "etag"),
+                lastModified: getStringOrNull(json, "last_modified")
+            )
+        } catch (Exception e) {
+            return null
         }
     }
 
-    private static void saveToCache() {
+    private static void writeManifestMetadata(ManifestMetadata metadata) {
         try {
-            Files.createDirectories(cacheDir)
-            Files.writeString(manifestCache, fetchJsonString(MANIFEST_URL))
+            def json = new JsonObject()
+            json.addProperty("fetched", metadata.fetched.toEpochMilli())
+            if (metadata.etag) json.addProperty("etag", metadata.etag)
+            if (metadata.lastModified) json.addProperty("last_modified", metadata.lastModified)
+            writeAtomically(manifestMetadata, gson.toJson(json).getBytes(StandardCharsets.UTF_8))
         } catch (Exception e) {
             println "Warning: Could not save cache: ${e.message}"
         }
     }
 
+    private static void writeAtomically(Path file, byte[] content) {
+        Files.createDirectories(file.parent)
+        def temp = Files.createTempFile(file.parent, file.fileName.toString(), ".tmp")
+        try {
+            Files.write(temp, content)
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        } finally {
+            Files.deleteIfExists(temp)
+        }
+    }
+
     private static Minecraft fetchDetailedVersion(String id, Minecraft basic) {
         def detailCache = cacheDir.resolve("version-detail-${id}.json")
         
@@ -127,27 +334,30 @@ class VersionResolver {
             } catch (Exception ignored) {}
         }
 
+        if (offline) {
+            throw new IOException("Not cached, and offline")
+        }
+
         // Fetch from API
         def versionMeta = fetchJson(basic.url)
-        def clientUrl = versionMeta.getAsJsonObject("downloads")
-                                   .getAsJsonObject("client")
-                                   .get("url").getAsString()
-        
+        def client = versionMeta.getAsJsonObject("downloads").getAsJsonObject("client")
+        def clientUrl = client.get("url").getAsString()
+        def clientSha1 = client.has("sha1") ? client.get("sha1").getAsString() : null
+
         // Store temp JARs in Gradle cache directory (not system temp)
         def tmpDir = cacheDir.resolve("tmp")
         Files.createDirectories(tmpDir)
         def jarFile = tmpDir.resolve("${id}-client.jar")
-        
+
         try {
-            downloadFile(clientUrl, jarFile)
-            def versionJson = extractVersionJson(jarFile)
+            def versionJson = fetchVersionJson(clientUrl, clientSha1, jarFile)
             def detailed = parseFromJar(id, versionJson, basic)
-            
+
             // Save to cache
             try {
                 Files.writeString(detailCache, gson.toJson(detailed))
             } catch (Exception ignored) {}
-            
+
             return detailed
         } finally {
             // Delete JAR immediately after extraction (20-40MB each)
@@ -156,6 +366,103 @@ class VersionResolver {
         }
     }
 
+    /**
+     * Reads {@code version.json} from a client jar.
+     * With range requests only the end of the jar, its central directory and the entry itself are fetched.
+     * If the server ignores ranges, the response is the whole jar, which is downloaded and verified instead.
+     */
+    private static String fetchVersionJson(String clientUrl, String clientSha1, Path jarFile) {
+        if (rangeRequests) {
+            def tailRequest = request(clientUrl, Duration.ofSeconds(60), ["Range": "bytes=-${ZipCentralDirectory.MAX_TAIL_SIZE}".toString()])
+            def response = httpClient.send(tailRequest, { HttpResponse.ResponseInfo info ->
+                info.statusCode() == 206 ? HttpResponse.BodySubscribers.ofByteArray() : HttpResponse.BodySubscribers.ofFile(jarFile)
+            } as HttpResponse.BodyHandler)
+            if (response.statusCode() == 206) {
+                return readVersionJsonByRange(clientUrl, response as HttpResponse<byte[]>)
+            }
+            if (response.statusCode() != 200) {
+                throw new IOException("HTTP ${response.statusCode()}")
+            }
+        } else {
+            downloadFile(clientUrl, jarFile)
+        }
+        verifySha1(jarFile, clientSha1)
+        return extractVersionJson(jarFile)
+    }
+
+    private static String readVersionJsonByRange(String url, HttpResponse<byte[]> tailResponse) {
+        def contentRange = tailResponse.headers().firstValue("Content-Range").orElse("") =~ /^bytes (\d+)-(\d+)\/(\d+)$/
+        if (!contentRange.matches()) {
+            throw new IOException("Invalid Content-Range: ${tailResponse.headers().firstValue("Content-Range").orElse(null)}")
+        }
+        def size = contentRange.group(3) as long
+        def source = new RangeSource(url, size, contentRange.group(1) as long, tailResponse.body())
+
+        def entry = ZipCentralDirectory.read(source, size, ByteBuffer.wrap(tailResponse.body())).find { it.name == "version.json" }
+        if (!entry) throw new FileNotFoundException("version.json not found")
+        def raw = source.read(ZipCentralDirectory.dataOffset(source, entry), Math.toIntExact(entry.compressedSize))
+        def rawBytes = new byte[raw.remaining()]
+        raw.get(rawBytes)
+        def data = ZipArchiveReader.decompress(entry, rawBytes)
+
+        def crc = new CRC32()
+        crc.update(data)
+        if (crc.value != entry.crc) {
+            throw new IOException("CRC mismatch for version.json")
+        }
+        return new String(data, StandardCharsets.UTF_8)
+    }
+
+    private static void verifySha1(Path file, String expected) {
+        if (!expected) return
+        def digest = MessageDigest.getInstance("SHA-1")
+        Files.newInputStream(file).withCloseable { input ->
+            def buffer = new byte[65536]
+            int length
+            while ((length = input.read(buffer)) > 0) {
+                digest.update(buffer, 0, length)
+            }
+        }
+        def actual = digest.digest().encodeHex().toString()
+        if (!actual.equalsIgnoreCase(expected)) {
+            throw new IOException("SHA-1 mismatch for ${file.fileName}: expected ${expected}, got ${actual}")
+        }
+    }
+
+    /**
+     * Reads ranges of a remote archive, keeping every fetched range so the local header and data of an entry
+     * are usually served by a single request.
+     */
+    private static final class RangeSource implements ZipCentralDirectory.Source {
+
+        private final String url
+        private final long size
+        private final List<Tuple2<Long, byte[]>> ranges = []
+
+        RangeSource(String url, long size, long tailOffset, byte[] tail) {
+            this.url = url
+            this.size = size
+            this.ranges.add(new Tuple2<>(tailOffset, tail))
+        }
+
+        @Override
+        ByteBuffer read(long position, int length) throws IOException {
+            def range = ranges.find { it.v1 <= position && position + length <= it.v1 + it.v2.length }
+            if (range == null) {
+                // Read ahead, but not into a range that was already fetched
+                def next = ranges.collect { it.v1 }.findAll { it >= position + length }.min() ?: size
+                def end = Math.min(next, position + Math.max(length, RANGE_READ_AHEAD)) - 1
+                def response = httpClient.send(request(url, Duration.ofSeconds(60), ["Range": "bytes=${position}-${end}".toString()]), HttpResponse.BodyHandlers.ofByteArray())
+                if (response.statusCode() != 206 || response.body().length < length) {
+                    throw new IOException("Range request failed with HTTP ${response.statusCode()}")
+                }
+                range = new Tuple2<>(position, response.body())
+                ranges.add(range)
+            }
+            return ByteBuffer.wrap(range.v2, (int) (position - range.v1), length)
+        }
+    }
+
     private static Minecraft parseFromJar(String id, String jsonContent, Minecraft basic) {
         def json = gson.fromJson(jsonContent, JsonObject.class)
         
@@ -232,47 +539,39 @@ class VersionResolver {
     }
 
     private static String fetchJsonString(String urlString) {
-        def connection = new URL(urlString).openConnection() as HttpURLConnection
-        connection.requestMethod = "GET"
-        connection.connectTimeout = 10000
-        connection.readTimeout = 10000
-        connection.setRequestProperty("User-Agent", "UniversalGradlePlugin/1.0")
-        
-        try {
-            if (connection.responseCode != 200) {
-                throw new IOException("HTTP ${connection.responseCode}")
-            }
-            return connection.inputStream.text
-        } finally {
-            connection.disconnect()
+        def response = httpClient.send(request(urlString, Duration.ofSeconds(10)), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8))
+        if (response.statusCode() != 200) {
+            throw new IOException("HTTP ${response.statusCode()}")
         }
+        return response.body()
     }
 
     private static void downloadFile(String url, Path destination) {
-        def connection = new URL(url).openConnection() as HttpURLConnection
-        connection.requestMethod = "GET"
-        connection.setRequestProperty("User-Agent", "UniversalGradlePlugin/1.0")
-        connection.connectTimeout = 10000
-        connection.readTimeout = 60000
-        
-        try {
-            if (connection.responseCode != 200) {
-                throw new IOException("HTTP ${connection.responseCode}")
-            }
-            destination.toFile().withOutputStream { it << connection.inputStream }
-        } finally {
-            connection.disconnect()
+        def response = httpClient.send(request(url, Duration.ofSeconds(60)), HttpResponse.BodyHandlers.ofFile(destination))
+        if (response.statusCode() != 200) {
+            throw new IOException("HTTP ${response.statusCode()}")
         }
     }
 
+    private static HttpRequest request(String url, Duration timeout, Map<String, String> headers = [:]) {
+        def builder = HttpRequest.newBuilder(URI.create(url))
+                .GET()
+                .timeout(timeout)
+                .header("User-Agent", USER_AGENT)
+        headers.each { name, value -> builder.header(name, value) }
+        return builder.build()
+    }
+
     private static String extractVersionJson(Path jarPath) {
-        def zipFile = new java.util.zip.ZipFile(jarPath.toFile())
+        // Only the central directory and a single entry are read, without verifying the jar.
+        // The jar is not mapped, as a mapping could keep it locked after it is deleted.
+        def reader = ZipArchiveReader.open(jarPath)
         try {
-            def entry = zipFile.getEntry("version.json")
+            def entry = reader.entries.find { it.name == "version.json" }
             if (!entry) throw new FileNotFoundException("version.json not found")
-            return zipFile.getInputStream(entry).text
+            return new String(reader.read(entry), StandardCharsets.UTF_8)
         } finally {
-            zipFile.close()
+            reader.close()
         }
     }
 }
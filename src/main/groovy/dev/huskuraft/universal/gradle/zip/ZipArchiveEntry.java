@@ -0,0 +1,209 @@
+package dev.huskuraft.universal.gradle.zip;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.jar.JarEntry;
+
+/**
+ * An immutable entry of a ZIP archive as described by its central directory record.
+ * Besides the usual attributes, the entry keeps the CRC, sizes and local header offset
+ * so its compressed data can be copied to another archive without being re-encoded.
+ */
+public final class ZipArchiveEntry {
+
+    /** Compression method for uncompressed entries. */
+    public static final int STORED = 0;
+
+    /** Compression method for deflated entries. */
+    public static final int DEFLATED = 8;
+
+    /** The earliest time representable in the MS-DOS date format (1980-01-01). */
+    static final long DOS_TIME_MIN = (1 << 21) | (1 << 16);
+
+    /** The time of the entries of reproducible archives (1980-02-01 00:00), as Gradle uses for them. */
+    public static final long REPRODUCIBLE_DOS_TIME = (2 << 21) | (1 << 16);
+
+    /** The MS-DOS attribute of directories. */
+    private static final long DOS_DIRECTORY_ATTRIBUTE = 0x10;
+
+    private final String name;
+    private final int versionMadeBy;
+    private final int flags;
+    private final int method;
+    private final long dosTime;
+    private final long crc;
+    private final long compressedSize;
+    private final long size;
+    private final int internalAttributes;
+    private final long externalAttributes;
+    private final long localHeaderOffset;
+    private final byte[] extra;
+
+    ZipArchiveEntry(String name, int versionMadeBy, int flags, int method, long dosTime, long crc, long compressedSize, long size,
+                    int internalAttributes, long externalAttributes, long localHeaderOffset, byte[] extra) {
+        this.name = name;
+        this.versionMadeBy = versionMadeBy;
+        this.flags = flags;
+        this.method = method;
+        this.dosTime = dosTime;
+        this.crc = crc;
+        this.compressedSize = compressedSize;
+        this.size = size;
+        this.internalAttributes = internalAttributes;
+        this.externalAttributes = externalAttributes;
+        this.localHeaderOffset = localHeaderOffset;
+        this.extra = extra;
+    }
+
+    /**
+     * Creates an entry for freshly encoded data.
+     *
+     * @param name           The name of the entry.
+     * @param method         The compression method, {@link #STORED} or {@link #DEFLATED}.
+     * @param time           The modification time in milliseconds since the epoch.
+     * @param crc            The CRC-32 of the uncompressed data.
+     * @param compressedSize The size of the compressed data.
+     * @param size           The size of the uncompressed data.
+     * @return The new entry.
+     */
+    public static ZipArchiveEntry of(String name, int method, long time, long crc, long compressedSize, long size) {
+        return new ZipArchiveEntry(name, 20, 0, method, toDosTime(time), crc, compressedSize, size, 0, 0, -1, new byte[0]);
+    }
+
+    /**
+     * Returns a copy of this entry with a different name, keeping its data and attributes.
+     *
+     * @param name The new name.
+     * @return The renamed entry.
+     */
+    public ZipArchiveEntry withName(String name) {
+        if (name.equals(this.name)) {
+            return this;
+        }
+        return new ZipArchiveEntry(name, versionMadeBy, flags, method, dosTime, crc, compressedSize, size,
+                internalAttributes, externalAttributes, localHeaderOffset, extra);
+    }
+
+    /**
+     * Returns a copy of this entry with the attributes of reproducible archives, keeping its name and data.
+     * The time is {@link #REPRODUCIBLE_DOS_TIME}, and the host, flags, attributes and extra fields,
+     * which may hold further timestamps or file permissions, no longer depend on where the entry was created.
+     *
+     * @return The normalized entry.
+     */
+    public ZipArchiveEntry normalized() {
+        var normalizedExternalAttributes = isDirectory() ? DOS_DIRECTORY_ATTRIBUTE : 0;
+        if (versionMadeBy == 20 && flags == 0 && dosTime == REPRODUCIBLE_DOS_TIME && internalAttributes == 0
+                && externalAttributes == normalizedExternalAttributes && extra.length == 0) {
+            return this;
+        }
+        return new ZipArchiveEntry(name, 20, 0, method, REPRODUCIBLE_DOS_TIME, crc, compressedSize, size,
+                0, normalizedExternalAttributes, localHeaderOffset, new byte[0]);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getVersionMadeBy() {
+        return versionMadeBy;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    public int getMethod() {
+        return method;
+    }
+
+    public long getDosTime() {
+        return dosTime;
+    }
+
+    public long getCrc() {
+        return crc;
+    }
+
+    public long getCompressedSize() {
+        return compressedSize;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public int getInternalAttributes() {
+        return internalAttributes;
+    }
+
+    public long getExternalAttributes() {
+        return externalAttributes;
+    }
+
+    public long getLocalHeaderOffset() {
+        return localHeaderOffset;
+    }
+
+    byte[] getExtra() {
+        return extra;
+    }
+
+    public boolean isDirectory() {
+        return name.endsWith("/");
+    }
+
+    /**
+     * Gets the modification time of this entry.
+     *
+     * @return The modification time in milliseconds since the epoch.
+     */
+    public long getTime() {
+        return fromDosTime(dosTime);
+    }
+
+    /**
+     * Creates a {@link JarEntry} describing this entry, for use with {@code Modification} rules.
+     *
+     * @return A new JAR entry.
+     */
+    public JarEntry toJarEntry() {
+        var entry = new JarEntry(name);
+        entry.setTime(getTime());
+        entry.setMethod(method);
+        entry.setSize(size);
+        entry.setCompressedSize(compressedSize);
+        entry.setCrc(crc);
+        return entry;
+    }
+
+    static long toDosTime(long time) {
+        var dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+        if (dateTime.getYear() < 1980) {
+            return DOS_TIME_MIN;
+        }
+        return ((long) (dateTime.getYear() - 1980) << 25)
+                | ((long) dateTime.getMonthValue() << 21)
+                | ((long) dateTime.getDayOfMonth() << 16)
+                | ((long) dateTime.getHour() << 11)
+                | ((long) dateTime.getMinute() << 5)
+                | ((long) dateTime.getSecond() >> 1);
+    }
+
+    static long fromDosTime(long dosTime) {
+        // Out-of-range fields roll over, matching the lenient conversion of java.util.zip
+        var dateTime = LocalDateTime.of((int) ((dosTime >> 25) & 0x7f) + 1980, 1, 1, 0, 0)
+                .plusMonths(((dosTime >> 21) & 0x0f) - 1)
+                .plusDays(((dosTime >> 16) & 0x1f) - 1)
+                .plusHours((dosTime >> 11) & 0x1f)
+                .plusMinutes((dosTime >> 5) & 0x3f)
+                .plusSeconds((dosTime << 1) & 0x3e);
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,318 @@
+package dev.huskuraft.universal.gradle.zip;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Reads a ZIP archive through its central directory.
+ * Entry data can be read either decompressed or raw, exactly as stored in the archive.
+ * All read methods are safe to call from multiple threads.
+ */
+public final class ZipArchiveReader implements Closeable {
+
+    /** The size of the regions an archive is mapped in, so archives larger than a buffer can be mapped. */
+    private static final long MAPPED_REGION_SIZE = 1L << 30;
+
+    /**
+     * How the archive is accessed.
+     */
+    public enum Backend {
+        /** Reads every range with a positional read into a heap buffer. */
+        CHANNEL,
+        /**
+         * Maps the archive into memory and hands out slices of the mapping, so entry data is never copied by the reader.
+         * The mapping is released when it is garbage collected, which may keep the file locked until then on Windows.
+         */
+        MAPPED
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] regions;
+    private final List<ZipArchiveEntry> entries;
+
+    private ZipArchiveReader(FileChannel channel, Backend backend) throws IOException {
+        this.channel = channel;
+        this.regions = backend == Backend.MAPPED ? map(channel) : null;
+        this.entries = ZipCentralDirectory.read(this::read, channel.size());
+    }
+
+    /**
+     * Opens an archive for reading with the {@link Backend#CHANNEL} backend.
+     *
+     * @param path The archive to open.
+     * @return A reader for the archive.
+     * @throws IOException If the archive cannot be opened or is malformed.
+     */
+    public static ZipArchiveReader open(Path path) throws IOException {
+        return open(path, Backend.CHANNEL);
+    }
+
+    /**
+     * Opens an archive for reading.
+     *
+     * @param path    The archive to open.
+     * @param backend How the archive is accessed.
+     * @return A reader for the archive.
+     * @throws IOException If the archive cannot be opened or is malformed.
+     */
+    public static ZipArchiveReader open(Path path, Backend backend) throws IOException {
+        var channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new ZipArchiveReader(channel, backend);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static MappedByteBuffer[] map(FileChannel channel) throws IOException {
+        var size = channel.size();
+        var regions = new MappedByteBuffer[(int) ((size + MAPPED_REGION_SIZE - 1) / MAPPED_REGION_SIZE)];
+        for (var index = 0; index < regions.length; index++) {
+            var position = index * MAPPED_REGION_SIZE;
+            regions[index] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, size - position));
+        }
+        return regions;
+    }
+
+    /**
+     * Gets the entries of the archive in central directory order.
+     *
+     * @return The entries of the archive.
+     */
+    public List<ZipArchiveEntry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Reads the data of an entry as stored in the archive, without decompressing it.
+     *
+     * @param entry The entry to read.
+     * @return The raw entry data.
+     * @throws IOException If the entry cannot be read.
+     */
+    public byte[] readRaw(ZipArchiveEntry entry) throws IOException {
+        var data = readRawBuffer(entry);
+        if (data.hasArray() && data.arrayOffset() == 0 && data.array().length == data.remaining()) {
+            return data.array();
+        }
+        var bytes = new byte[data.remaining()];
+        data.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Reads the data of an entry as stored in the archive, without decompressing it.
+     * With the {@link Backend#MAPPED} backend the buffer is a slice of the mapping and no data is copied.
+     *
+     * @param entry The entry to read.
+     * @return A read-only buffer holding the raw entry data.
+     * @throws IOException If the entry cannot be read.
+     */
+    public ByteBuffer readRawBuffer(ZipArchiveEntry entry) throws IOException {
+        var offset = ZipCentralDirectory.dataOffset(this::read, entry);
+        return read(offset, Math.toIntExact(entry.getCompressedSize()));
+    }
+
+    /**
+     * Reads and decompresses the data of an entry.
+     *
+     * @param entry The entry to read.
+     * @return The uncompressed entry data.
+     * @throws IOException If the entry cannot be read or decompressed.
+     */
+    public byte[] read(ZipArchiveEntry entry) throws IOException {
+        return decompress(entry, readRaw(entry));
+    }
+
+    /**
+     * Opens a stream over the data of an entry as stored in the archive, without reading it into memory.
+     * The stream reads the archive at absolute positions, so several streams can be open at once.
+     *
+     * @param entry The entry to read.
+     * @return The raw entry data.
+     * @throws IOException If the entry cannot be located.
+     */
+    public InputStream openRaw(ZipArchiveEntry entry) throws IOException {
+        return new EntryInputStream(ZipCentralDirectory.dataOffset(this::read, entry), entry.getCompressedSize());
+    }
+
+    /**
+     * Opens a stream over the decompressed data of an entry, without reading it into memory.
+     *
+     * @param entry The entry to read.
+     * @return The uncompressed entry data.
+     * @throws IOException If the entry cannot be located or uses an unsupported compression method.
+     */
+    public InputStream open(ZipArchiveEntry entry) throws IOException {
+        switch (entry.getMethod()) {
+            case ZipArchiveEntry.STORED:
+                return openRaw(entry);
+            case ZipArchiveEntry.DEFLATED:
+                var inflater = new Inflater(true);
+                return new InflaterInputStream(openRaw(entry), inflater, 8192) {
+                    private boolean closed;
+
+                    @Override
+                    public void close() throws IOException {
+                        if (!closed) {
+                            closed = true;
+                            inflater.end();
+                            super.close();
+                        }
+                    }
+                };
+            default:
+                throw new ZipException("Unsupported compression method " + entry.getMethod() + " for entry: " + entry.getName());
+        }
+    }
+
+    /**
+     * Decompresses raw entry data.
+     *
+     * @param entry The entry the data belongs to.
+     * @param raw   The raw entry data.
+     * @return The uncompressed entry data.
+     * @throws IOException If the data cannot be decompressed.
+     */
+    public static byte[] decompress(ZipArchiveEntry entry, byte[] raw) throws IOException {
+        if (entry.getMethod() == ZipArchiveEntry.STORED) {
+            return raw;
+        }
+        return decompress(entry, ByteBuffer.wrap(raw));
+    }
+
+    /**
+     * Decompresses raw entry data.
+     *
+     * @param entry The entry the data belongs to.
+     * @param raw   The raw entry data. Its position is left unchanged.
+     * @return The uncompressed entry data.
+     * @throws IOException If the data cannot be decompressed.
+     */
+    public static byte[] decompress(ZipArchiveEntry entry, ByteBuffer raw) throws IOException {
+        switch (entry.getMethod()) {
+            case ZipArchiveEntry.STORED:
+                if (raw.hasArray() && raw.arrayOffset() == 0 && raw.position() == 0 && raw.array().length == raw.remaining()) {
+                    return raw.array();
+                }
+                var data = new byte[raw.remaining()];
+                raw.duplicate().get(data);
+                return data;
+            case ZipArchiveEntry.DEFLATED:
+                var inflater = new Inflater(true);
+                try {
+                    inflater.setInput(raw.duplicate());
+                    var inflated = new byte[Math.toIntExact(entry.getSize())];
+                    var length = 0;
+                    while (length < inflated.length) {
+                        var count = inflater.inflate(inflated, length, inflated.length - length);
+                        if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                            break;
+                        }
+                        length += count;
+                    }
+                    if (length != inflated.length) {
+                        throw new ZipException("Unexpected end of data for entry: " + entry.getName());
+                    }
+                    return inflated;
+                } catch (DataFormatException e) {
+                    throw new ZipException("Invalid compressed data for entry: " + entry.getName() + ": " + e.getMessage());
+                } finally {
+                    inflater.end();
+                }
+            default:
+                throw new ZipException("Unsupported compression method " + entry.getMethod() + " for entry: " + entry.getName());
+        }
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        if (regions != null) {
+            var region = (int) (position / MAPPED_REGION_SIZE);
+            var offset = (int) (position % MAPPED_REGION_SIZE);
+            if (region < regions.length && offset + (long) length <= regions[region].capacity()) {
+                return regions[region].slice(offset, length).asReadOnlyBuffer();
+            }
+            // Ranges spanning two regions, or past the end, are read from the channel
+        }
+        var buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of archive");
+            }
+        }
+        return buffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads a range of the archive.
+     */
+    private final class EntryInputStream extends InputStream {
+
+        private long position;
+        private final long end;
+
+        private EntryInputStream(long position, long length) {
+            this.position = position;
+            this.end = position + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var buffer = new byte[1];
+            return read(buffer, 0, 1) < 0 ? -1 : buffer[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (position >= end) {
+                return -1;
+            }
+            if (regions != null) {
+                var count = (int) Math.min(length, Math.min(end - position, MAPPED_REGION_SIZE - position % MAPPED_REGION_SIZE));
+                ZipArchiveReader.this.read(position, count).get(bytes, offset, count);
+                position += count;
+                return count;
+            }
+            var buffer = ByteBuffer.wrap(bytes, offset, (int) Math.min(length, end - position));
+            var read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of archive");
+            }
+            position += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long count) {
+            var skipped = Math.max(0, Math.min(count, end - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(end - position, Integer.MAX_VALUE);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package dev.huskuraft.universal.gradle.zip;
+
+import static dev.huskuraft.universal.gradle.zip.ZipCentralDirectory.*;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a ZIP archive from entries whose data is already encoded.
+ * Data read raw from another archive can be written back without being decompressed and compressed again,
+ * and freshly modified data is encoded with a {@link ZipEntryEncoder}.
+ * This class is not thread-safe.
+ */
+public final class ZipArchiveWriter implements Closeable {
+
+    /** General purpose flag bit signalling that the sizes follow the data in a data descriptor. */
+    private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+
+    /** General purpose flag bit signalling that the name is encoded in UTF-8. */
+    private static final int FLAG_UTF8 = 1 << 11;
+
+    private static final int VERSION_ZIP64 = 45;
+
+    private final OutputStream output;
+    private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+    private final ByteBuffer header = ByteBuffer.allocate(CENTRAL_HEADER_SIZE + 28).order(ByteOrder.LITTLE_ENDIAN);
+    private final byte[] buffer = new byte[8192];
+    private final Set<String> names = new HashSet<>();
+    private final List<ZipArchiveEntry> entries = new ArrayList<>();
+    private long position;
+
+    public ZipArchiveWriter(OutputStream output) {
+        this.output = new BufferedOutputStream(output, 1 << 16);
+    }
+
+    /**
+     * Writes an entry with its encoded data.
+     * The CRC, sizes and compression method of the entry must describe the given data.
+     *
+     * @param entry The entry to write.
+     * @param data  The encoded data, compressed according to the method of the entry.
+     * @throws IOException If the entry cannot be written or has a duplicate name.
+     */
+    public void write(ZipArchiveEntry entry, byte[] data) throws IOException {
+        write(entry, ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Writes an entry with its encoded data held in a buffer, e.g. a slice of a memory-mapped archive.
+     * The CRC, sizes and compression method of the entry must describe the given data.
+     *
+     * @param entry The entry to write.
+     * @param data  The encoded data, compressed according to the method of the entry. Its position is left unchanged.
+     * @throws IOException If the entry cannot be written or has a duplicate name.
+     */
+    public void write(ZipArchiveEntry entry, ByteBuffer data) throws IOException {
+        if (data.remaining() != entry.getCompressedSize()) {
+            throw new ZipException("Data size " + data.remaining() + " does not match compressed size " + entry.getCompressedSize() + " for entry: " + entry.getName());
+        }
+        var name = entry.getName().getBytes(StandardCharsets.UTF_8);
+        var localHeaderOffset = writeLocalHeader(entry, name);
+        if (data.hasArray()) {
+            output.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+        } else {
+            // Copy direct buffers in chunks instead of allocating an array for the whole entry
+            var source = data.duplicate();
+            while (source.hasRemaining()) {
+                var length = Math.min(source.remaining(), buffer.length);
+                source.get(buffer, 0, length);
+                output.write(buffer, 0, length);
+            }
+        }
+        finishEntry(entry, name, localHeaderOffset);
+    }
+
+    /**
+     * Writes an entry with its encoded data read from a stream, for entries too large to be held in memory.
+     * The CRC, sizes and compression method of the entry must describe the data, which must be exactly
+     * {@link ZipArchiveEntry#getCompressedSize()} bytes long.
+     *
+     * @param entry The entry to write.
+     * @param data  The encoded data, compressed according to the method of the entry. The stream is not closed.
+     * @throws IOException If the entry cannot be written, has a duplicate name or the data has another size.
+     */
+    public void write(ZipArchiveEntry entry, InputStream data) throws IOException {
+        var name = entry.getName().getBytes(StandardCharsets.UTF_8);
+        var localHeaderOffset = writeLocalHeader(entry, name);
+        var remaining = entry.getCompressedSize();
+        while (remaining > 0) {
+            var read = data.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                throw new ZipException("Data ended " + remaining + " bytes before compressed size " + entry.getCompressedSize() + " for entry: " + entry.getName());
+            }
+            output.write(buffer, 0, read);
+            remaining -= read;
+        }
+        if (data.read() >= 0) {
+            throw new ZipException("Data exceeds compressed size " + entry.getCompressedSize() + " for entry: " + entry.getName());
+        }
+        finishEntry(entry, name, localHeaderOffset);
+    }
+
+    private long writeLocalHeader(ZipArchiveEntry entry, byte[] name) throws IOException {
+        if (!names.add(entry.getName())) {
+            throw new ZipException("duplicate entry: " + entry.getName());
+        }
+
+        var zip64 = entry.getSize() >= ZIP64_MAGIC || entry.getCompressedSize() >= ZIP64_MAGIC;
+        var extra = entry.getExtra();
+
+        header.clear();
+        header.putInt(LOCAL_HEADER_SIGNATURE);
+        header.putShort((short) versionNeeded(entry, zip64));
+        header.putShort((short) flags(entry));
+        header.putShort((short) entry.getMethod());
+        header.putInt((int) entry.getDosTime());
+        header.putInt((int) entry.getCrc());
+        if (zip64) {
+            header.putInt((int) ZIP64_MAGIC);
+            header.putInt((int) ZIP64_MAGIC);
+        } else {
+            header.putInt((int) entry.getCompressedSize());
+            header.putInt((int) entry.getSize());
+        }
+        header.putShort((short) name.length);
+        header.putShort((short) (extra.length + (zip64 ? 20 : 0)));
+        output.write(header.array(), 0, header.position());
+        output.write(name);
+        if (zip64) {
+            header.clear();
+            header.putShort((short) ZIP64_EXTRA_ID);
+            header.putShort((short) 16);
+            header.putLong(entry.getSize());
+            header.putLong(entry.getCompressedSize());
+            output.write(header.array(), 0, header.position());
+        }
+        output.write(extra);
+
+        var localHeaderOffset = position;
+        position += LOCAL_HEADER_SIZE + name.length + extra.length + (zip64 ? 20 : 0);
+        return localHeaderOffset;
+    }
+
+    private void finishEntry(ZipArchiveEntry entry, byte[] name, long localHeaderOffset) {
+        position += entry.getCompressedSize();
+        writeCentralHeader(entry, name, localHeaderOffset);
+        entries.add(entry);
+    }
+
+    private void writeCentralHeader(ZipArchiveEntry entry, byte[] name, long localHeaderOffset) {
+        var extra = entry.getExtra();
+        var sizeZip64 = entry.getSize() >= ZIP64_MAGIC;
+        var compressedSizeZip64 = entry.getCompressedSize() >= ZIP64_MAGIC;
+        var offsetZip64 = localHeaderOffset >= ZIP64_MAGIC;
+        var zip64Length = (sizeZip64 ? 8 : 0) + (compressedSizeZip64 ? 8 : 0) + (offsetZip64 ? 8 : 0);
+        var zip64 = zip64Length > 0;
+
+        header.clear();
+        header.putInt(CENTRAL_HEADER_SIGNATURE);
+        header.putShort((short) (zip64 ? Math.max(entry.getVersionMadeBy() & 0xFF, VERSION_ZIP64) | (entry.getVersionMadeBy() & 0xFF00) : entry.getVersionMadeBy()));
+        header.putShort((short) versionNeeded(entry, zip64));
+        header.putShort((short) flags(entry));
+        header.putShort((short) entry.getMethod());
+        header.putInt((int) entry.getDosTime());
+        header.putInt((int) entry.getCrc());
+        header.putInt((int) (compressedSizeZip64 ? ZIP64_MAGIC : entry.getCompressedSize()));
+        header.putInt((int) (sizeZip64 ? ZIP64_MAGIC : entry.getSize()));
+        header.putShort((short) name.length);
+        header.putShort((short) (extra.length + (zip64 ? 4 + zip64Length : 0)));
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putShort((short) entry.getInternalAttributes());
+        header.putInt((int) entry.getExternalAttributes());
+        header.putInt((int) (offsetZip64 ? ZIP64_MAGIC : localHeaderOffset));
+        centralDirectory.write(header.array(), 0, header.position());
+        centralDirectory.writeBytes(name);
+        if (zip64) {
+            header.clear();
+            header.putShort((short) ZIP64_EXTRA_ID);
+            header.putShort((short) zip64Length);
+            if (sizeZip64) {
+                header.putLong(entry.getSize());
+            }
+            if (compressedSizeZip64) {
+                header.putLong(entry.getCompressedSize());
+            }
+            if (offsetZip64) {
+                header.putLong(localHeaderOffset);
+            }
+            centralDirectory.write(header.array(), 0, header.position());
+        }
+        centralDirectory.writeBytes(extra);
+    }
+
+    private static int flags(ZipArchiveEntry entry) {
+        // Sizes are always known up front, so a data descriptor is never written
+        return (entry.getFlags() & ~FLAG_DATA_DESCRIPTOR) | FLAG_UTF8;
+    }
+
+    private static int versionNeeded(ZipArchiveEntry entry, boolean zip64) {
+        if (zip64) {
+            return VERSION_ZIP64;
+        }
+        return entry.getMethod() == ZipArchiveEntry.DEFLATED ? 20 : 10;
+    }
+
+    /**
+     * Gets the entries written so far, in order.
+     *
+     * @return The written entries.
+     */
+    public List<ZipArchiveEntry> getEntries() {
+        return entries;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            var centralDirectoryOffset = position;
+            var centralDirectorySize = centralDirectory.size();
+            centralDirectory.writeTo(output);
+            position += centralDirectorySize;
+
+            var count = entries.size();
+            var zip64 = count >= ZIP64_MAGIC_COUNT || centralDirectoryOffset >= ZIP64_MAGIC || centralDirectorySize >= ZIP64_MAGIC;
+            if (zip64) {
+                var recordOffset = position;
+                header.clear();
+                header.putInt(ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+                header.putLong(ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE - 12);
+                header.putShort((short) VERSION_ZIP64);
+                header.putShort((short) VERSION_ZIP64);
+                header.putInt(0);
+                header.putInt(0);
+                header.putLong(count);
+                header.putLong(count);
+                header.putLong(centralDirectorySize);
+                header.putLong(centralDirectoryOffset);
+                output.write(header.array(), 0, header.position());
+
+                header.clear();
+                header.putInt(ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE);
+                header.putInt(0);
+                header.putLong(recordOffset);
+                header.putInt(1);
+                output.write(header.array(), 0, header.position());
+            }
+
+            header.clear();
+            header.putInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            header.putShort((short) Math.min(count, ZIP64_MAGIC_COUNT));
+            header.putShort((short) Math.min(count, ZIP64_MAGIC_COUNT));
+            header.putInt((int) Math.min(centralDirectorySize, ZIP64_MAGIC));
+            header.putInt((int) Math.min(centralDirectoryOffset, ZIP64_MAGIC));
+            header.putShort((short) 0);
+            output.write(header.array(), 0, header.position());
+        } finally {
+            output.close();
+        }
+    }
+}
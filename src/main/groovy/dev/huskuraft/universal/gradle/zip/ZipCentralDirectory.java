@@ -0,0 +1,238 @@
+package dev.huskuraft.universal.gradle.zip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipException;
+
+/**
+ * Parses the central directory of a ZIP archive, including ZIP64 archives.
+ * The archive is accessed through a {@link Source} so the same parser works on files, memory maps and remote ranges.
+ */
+public final class ZipCentralDirectory {
+
+    static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+    static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50;
+
+    static final int LOCAL_HEADER_SIZE = 30;
+    static final int CENTRAL_HEADER_SIZE = 46;
+    static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE = 56;
+    static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE = 20;
+
+    static final int ZIP64_EXTRA_ID = 0x0001;
+    static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+
+    /** The largest tail that has to be searched for the end of central directory record. */
+    public static final int MAX_TAIL_SIZE = END_OF_CENTRAL_DIRECTORY_SIZE + 0xFFFF;
+
+    private ZipCentralDirectory() {
+    }
+
+    /**
+     * Random access to the bytes of an archive.
+     */
+    @FunctionalInterface
+    public interface Source {
+        /**
+         * Reads a range of the archive.
+         *
+         * @param position The offset of the first byte.
+         * @param length   The number of bytes to read.
+         * @return A buffer holding exactly {@code length} bytes.
+         * @throws IOException If the range cannot be read.
+         */
+        ByteBuffer read(long position, int length) throws IOException;
+    }
+
+    /**
+     * Reads all entries of an archive in central directory order.
+     *
+     * @param source The archive to read.
+     * @param size   The total size of the archive in bytes.
+     * @return The entries of the archive.
+     * @throws IOException If the archive cannot be read or is malformed.
+     */
+    public static List<ZipArchiveEntry> read(Source source, long size) throws IOException {
+        var tailSize = (int) Math.min(size, MAX_TAIL_SIZE);
+        return read(source, size, source.read(size - tailSize, tailSize));
+    }
+
+    /**
+     * Reads all entries of an archive, starting from an already fetched tail of the archive.
+     *
+     * @param source The archive to read.
+     * @param size   The total size of the archive in bytes.
+     * @param tail   The last bytes of the archive, containing at least the end of central directory record.
+     * @return The entries of the archive.
+     * @throws IOException If the archive cannot be read or is malformed.
+     */
+    public static List<ZipArchiveEntry> read(Source source, long size, ByteBuffer tail) throws IOException {
+        tail = order(tail.slice());
+        var tailOffset = size - tail.remaining();
+        var eocd = findEndOfCentralDirectory(tail);
+        if (eocd < 0) {
+            throw new ZipException("End of central directory record not found");
+        }
+
+        long entries = tail.getShort(eocd + 10) & 0xFFFF;
+        long centralDirectorySize = tail.getInt(eocd + 12) & ZIP64_MAGIC;
+        long centralDirectoryOffset = tail.getInt(eocd + 16) & ZIP64_MAGIC;
+
+        var locator = eocd - ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE;
+        if (locator >= 0 && tail.getInt(locator) == ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE) {
+            var recordOffset = tail.getLong(locator + 8);
+            var record = order(source.read(recordOffset, ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE).slice());
+            if (record.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                throw new ZipException("Invalid ZIP64 end of central directory record");
+            }
+            entries = record.getLong(32);
+            centralDirectorySize = record.getLong(40);
+            centralDirectoryOffset = record.getLong(48);
+        }
+
+        if (centralDirectoryOffset + centralDirectorySize > size || centralDirectorySize > Integer.MAX_VALUE) {
+            throw new ZipException("Invalid central directory location");
+        }
+
+        ByteBuffer centralDirectory;
+        if (centralDirectoryOffset >= tailOffset) {
+            centralDirectory = tail.slice((int) (centralDirectoryOffset - tailOffset), (int) centralDirectorySize);
+        } else {
+            centralDirectory = source.read(centralDirectoryOffset, (int) centralDirectorySize).slice();
+        }
+        return parse(order(centralDirectory), entries);
+    }
+
+    /**
+     * Gets the offset of the entry data, which follows the local file header.
+     *
+     * @param source The archive to read.
+     * @param entry  The entry to locate.
+     * @return The offset of the first byte of the entry data.
+     * @throws IOException If the local header cannot be read or is malformed.
+     */
+    public static long dataOffset(Source source, ZipArchiveEntry entry) throws IOException {
+        var header = order(source.read(entry.getLocalHeaderOffset(), LOCAL_HEADER_SIZE).slice());
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local header for entry: " + entry.getName());
+        }
+        var nameLength = header.getShort(26) & 0xFFFF;
+        var extraLength = header.getShort(28) & 0xFFFF;
+        return entry.getLocalHeaderOffset() + LOCAL_HEADER_SIZE + nameLength + extraLength;
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer tail) {
+        var candidate = -1;
+        for (var position = tail.limit() - END_OF_CENTRAL_DIRECTORY_SIZE; position >= 0; position--) {
+            if (tail.getInt(position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                var commentLength = tail.getShort(position + 20) & 0xFFFF;
+                if (position + END_OF_CENTRAL_DIRECTORY_SIZE + commentLength == tail.limit()) {
+                    return position;
+                }
+                // Tolerate trailing bytes after the comment, but prefer a record that ends the archive
+                if (candidate < 0) {
+                    candidate = position;
+                }
+            }
+        }
+        return candidate;
+    }
+
+    private static List<ZipArchiveEntry> parse(ByteBuffer buffer, long count) throws ZipException {
+        var entries = new ArrayList<ZipArchiveEntry>((int) Math.min(count, 1 << 16));
+        var position = 0;
+        for (long index = 0; index < count; index++) {
+            if (position + CENTRAL_HEADER_SIZE > buffer.limit() || buffer.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid central directory header at index " + index);
+            }
+            var versionMadeBy = buffer.getShort(position + 4) & 0xFFFF;
+            var flags = buffer.getShort(position + 8) & 0xFFFF;
+            var method = buffer.getShort(position + 10) & 0xFFFF;
+            var dosTime = buffer.getInt(position + 12) & ZIP64_MAGIC;
+            var crc = buffer.getInt(position + 16) & ZIP64_MAGIC;
+            var compressedSize = buffer.getInt(position + 20) & ZIP64_MAGIC;
+            var size = buffer.getInt(position + 24) & ZIP64_MAGIC;
+            var nameLength = buffer.getShort(position + 28) & 0xFFFF;
+            var extraLength = buffer.getShort(position + 30) & 0xFFFF;
+            var commentLength = buffer.getShort(position + 32) & 0xFFFF;
+            var internalAttributes = buffer.getShort(position + 36) & 0xFFFF;
+            var externalAttributes = buffer.getInt(position + 38) & ZIP64_MAGIC;
+            var localHeaderOffset = buffer.getInt(position + 42) & ZIP64_MAGIC;
+
+            var nameBytes = new byte[nameLength];
+            buffer.get(position + CENTRAL_HEADER_SIZE, nameBytes);
+            var extra = new byte[extraLength];
+            buffer.get(position + CENTRAL_HEADER_SIZE + nameLength, extra);
+
+            // Values that do not fit into 32 bits are stored in the ZIP64 extra field, in this order
+            if (size == ZIP64_MAGIC || compressedSize == ZIP64_MAGIC || localHeaderOffset == ZIP64_MAGIC) {
+                var zip64 = findExtra(extra, ZIP64_EXTRA_ID);
+                if (zip64 == null) {
+                    throw new ZipException("Missing ZIP64 extra field for entry at index " + index);
+                }
+                if (size == ZIP64_MAGIC) {
+                    size = zip64.getLong();
+                }
+                if (compressedSize == ZIP64_MAGIC) {
+                    compressedSize = zip64.getLong();
+                }
+                if (localHeaderOffset == ZIP64_MAGIC) {
+                    localHeaderOffset = zip64.getLong();
+                }
+            }
+
+            entries.add(new ZipArchiveEntry(new String(nameBytes, StandardCharsets.UTF_8), versionMadeBy, flags, method, dosTime,
+                    crc, compressedSize, size, internalAttributes, externalAttributes, localHeaderOffset, removeExtra(extra, ZIP64_EXTRA_ID)));
+            position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return entries;
+    }
+
+    private static ByteBuffer findExtra(byte[] extra, int id) {
+        var buffer = ByteBuffer.wrap(extra).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.remaining() >= 4) {
+            var headerId = buffer.getShort() & 0xFFFF;
+            var length = buffer.getShort() & 0xFFFF;
+            if (length > buffer.remaining()) {
+                return null;
+            }
+            if (headerId == id) {
+                return buffer.slice(buffer.position(), length).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            buffer.position(buffer.position() + length);
+        }
+        return null;
+    }
+
+    static byte[] removeExtra(byte[] extra, int id) {
+        if (extra.length == 0 || findExtra(extra, id) == null) {
+            return extra;
+        }
+        var buffer = ByteBuffer.wrap(extra).order(ByteOrder.LITTLE_ENDIAN);
+        var result = ByteBuffer.allocate(extra.length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.remaining() >= 4) {
+            var start = buffer.position();
+            var headerId = buffer.getShort() & 0xFFFF;
+            var length = Math.min(buffer.getShort() & 0xFFFF, buffer.remaining());
+            buffer.position(buffer.position() + length);
+            if (headerId != id) {
+                result.put(extra, start, 4 + length);
+            }
+        }
+        var stripped = new byte[result.position()];
+        result.get(0, stripped);
+        return stripped;
+    }
+
+    private static ByteBuffer order(ByteBuffer buffer) {
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,162 @@
+package dev.huskuraft.universal.gradle.zip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Compresses entry data for a {@link ZipArchiveWriter}.
+ * Deflaters are pooled, so the encoder can be shared by several threads without allocating native memory per entry.
+ */
+public final class ZipEntryEncoder implements Closeable {
+
+    private final ConcurrentLinkedQueue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+    private final int level;
+
+    public ZipEntryEncoder() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public ZipEntryEncoder(int level) {
+        this.level = level;
+    }
+
+    /**
+     * An entry together with its encoded data.
+     *
+     * @param entry The entry describing the data.
+     * @param data  The encoded data.
+     */
+    public record EncodedEntry(ZipArchiveEntry entry, byte[] data) {
+    }
+
+    /**
+     * Encodes the data of an entry. Empty entries are stored, everything else is deflated.
+     *
+     * @param name The name of the entry.
+     * @param time The modification time in milliseconds since the epoch.
+     * @param data The uncompressed data.
+     * @return The entry together with its encoded data.
+     */
+    public EncodedEntry encode(String name, long time, byte[] data) {
+        var crc = new CRC32();
+        crc.update(data);
+        if (data.length == 0) {
+            return new EncodedEntry(ZipArchiveEntry.of(name, ZipArchiveEntry.STORED, time, crc.getValue(), 0, 0), data);
+        }
+        var compressed = deflate(data);
+        return new EncodedEntry(ZipArchiveEntry.of(name, ZipArchiveEntry.DEFLATED, time, crc.getValue(), compressed.length, data.length), compressed);
+    }
+
+    /**
+     * Writes the uncompressed content of an entry to a stream.
+     */
+    @FunctionalInterface
+    public interface ContentWriter {
+
+        void writeTo(OutputStream output) throws IOException;
+    }
+
+    /**
+     * Encodes the data of an entry as a stream, for entries too large to be held in memory.
+     * The data is always deflated.
+     *
+     * @param name    The name of the entry.
+     * @param time    The modification time in milliseconds since the epoch.
+     * @param content Writes the uncompressed data. It must not close the stream it is given.
+     * @param target  The stream the encoded data is written to. It is not closed.
+     * @return The entry describing the encoded data.
+     * @throws IOException If the content cannot be written.
+     */
+    public ZipArchiveEntry encode(String name, long time, ContentWriter content, OutputStream target) throws IOException {
+        var crc = new CRC32();
+        var compressed = new CountingOutputStream(target, null);
+        var deflater = acquire();
+        try {
+            var deflating = new DeflaterOutputStream(compressed, deflater, 8192);
+            var uncompressed = new CountingOutputStream(deflating, crc);
+            content.writeTo(uncompressed);
+            deflating.finish();
+            return ZipArchiveEntry.of(name, ZipArchiveEntry.DEFLATED, time, crc.getValue(), compressed.count, uncompressed.count);
+        } finally {
+            release(deflater);
+        }
+    }
+
+    private byte[] deflate(byte[] data) {
+        var deflater = acquire();
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            var output = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+            var buffer = new byte[8192];
+            while (!deflater.finished()) {
+                var length = deflater.deflate(buffer);
+                output.write(buffer, 0, length);
+            }
+            return output.toByteArray();
+        } finally {
+            release(deflater);
+        }
+    }
+
+    private Deflater acquire() {
+        var deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+        }
+        return deflater;
+    }
+
+    private void release(Deflater deflater) {
+        deflater.reset();
+        deflaters.offer(deflater);
+    }
+
+    /**
+     * Counts, and optionally checksums, the bytes written through it, without closing the stream it wraps.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private final CRC32 crc;
+        private long count;
+
+        private CountingOutputStream(OutputStream output, CRC32 crc) {
+            super(output);
+            this.crc = crc;
+        }
+
+        @Override
+        public void write(int value) throws IOException {
+            write(new byte[]{(byte) value}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (crc != null) {
+                crc.update(bytes, offset, length);
+            }
+            out.write(bytes, offset, length);
+            count += length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    @Override
+    public void close() {
+        Deflater deflater;
+        while ((deflater = deflaters.poll()) != null) {
+            deflater.end();
+        }
+    }
+}
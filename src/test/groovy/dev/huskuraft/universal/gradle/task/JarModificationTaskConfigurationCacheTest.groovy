@@ -0,0 +1,69 @@
+package dev.huskuraft.universal.gradle.task
+
+import org.gradle.testkit.runner.GradleRunner
+import org.gradle.testkit.runner.TaskOutcome
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.util.jar.JarEntry
+import java.util.jar.JarFile
+import java.util.jar.JarOutputStream
+
+class JarModificationTaskConfigurationCacheTest extends Specification {
+
+    @TempDir
+    File projectDir
+
+    def setup() {
+        new File(projectDir, "settings.gradle").text = "rootProject.name = 'example'\n"
+        new File(projectDir, "build.gradle").text = '''\
+plugins {
+    id 'dev.huskuraft.universal' apply false
+}
+
+tasks.register('transformJar', dev.huskuraft.universal.gradle.task.JarModificationTask) {
+    inputFile = layout.projectDirectory.file('input.jar')
+    outputFile = layout.buildDirectory.file('output.jar')
+    modification(new dev.huskuraft.universal.gradle.task.modification.RenameModification('fabric.accesswidener', 'example.accesswidener'))
+    annotation {
+        descriptor = 'Lcom/example/Mod;'
+        field = 'value'
+        newValue = 'example'
+    }
+}
+'''
+        new JarOutputStream(new FileOutputStream(new File(projectDir, "input.jar"))).withCloseable { jar ->
+            jar.putNextEntry(new JarEntry("fabric.accesswidener"))
+            jar.write("accessWidener v1 named\n".bytes)
+            jar.putNextEntry(new JarEntry("assets/lang.json"))
+            jar.write('{"key":"value"}'.bytes)
+        }
+    }
+
+    def "should reuse the configuration cache and modify the jar with the restored task"() {
+        when:
+        def first = run()
+
+        then:
+        first.output.contains("Configuration cache entry stored.")
+        first.task(":transformJar").outcome == TaskOutcome.SUCCESS
+
+        when:
+        // Without an output the restored task runs again, with the modifications read back from the cache entry
+        new File(projectDir, "build/output.jar").delete()
+        def second = run()
+
+        then:
+        second.output.contains("Reusing configuration cache.")
+        second.task(":transformJar").outcome == TaskOutcome.SUCCESS
+        new JarFile(new File(projectDir, "build/output.jar")).withCloseable { jar -> jar.entries().toList()*.name } == ["example.accesswidener", "assets/lang.json"]
+    }
+
+    private def run() {
+        return GradleRunner.create()
+                .withProjectDir(projectDir)
+                .withPluginClasspath()
+                .withArguments("transformJar", "--configuration-cache", "--stacktrace")
+                .build()
+    }
+}
@@ -0,0 +1,405 @@
+package dev.huskuraft.universal.gradle.task
+
+import dev.huskuraft.universal.gradle.Environment
+import dev.huskuraft.universal.gradle.Mod
+import dev.huskuraft.universal.gradle.task.JarModificationTask.JarModificationAction.Options
+import dev.huskuraft.universal.gradle.task.cache.TransformedEntryCache
+import dev.huskuraft.universal.gradle.task.modification.AnnotationModification
+import dev.huskuraft.universal.gradle.task.modification.Modification
+import dev.huskuraft.universal.gradle.task.modification.PlainTextModification
+import dev.huskuraft.universal.gradle.task.modification.RenameModification
+import dev.huskuraft.universal.gradle.task.modification.fabric.FabricAccessWidenerRenameModification
+import dev.huskuraft.universal.gradle.task.modification.forge.ForgeAnnotationModification
+import dev.huskuraft.universal.gradle.zip.ZipArchiveReader
+import groovy.json.JsonSlurper
+import org.gradle.api.file.RegularFile
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.attribute.FileTime
+import java.util.concurrent.Executors
+import java.util.jar.JarEntry
+import java.util.jar.JarFile
+import java.util.jar.JarOutputStream
+import java.util.regex.Pattern
+import java.util.zip.ZipFile
+import java.util.zip.ZipOutputStream
+
+class JarModificationTaskTest extends Specification {
+
+    @TempDir
+    File tempDir
+
+    def "should keep entry order and apply modifications with #threads threads"() {
+        given:
+        def jar = createJar(500)
+        def modifications = [new UpperCaseModification(), new RenameModification(Pattern.compile("fabric.accesswidener"), "universal.accesswidener")]
+
+        when:
+        new JarModificationTask.JarModificationAction(regularFile(jar), regularFile(jar), modifications, Options.DEFAULT.withThreads(threads)).execute()
+
+        then:
+        def jarFile = new JarFile(jar)
+        def names = jarFile.entries().toList()*.name
+        names == (0..<500).collect { "entries/entry${it}.txt" } + ["universal.accesswidener"]
+        jarFile.getInputStream(jarFile.getEntry("entries/entry42.txt")).text == "ENTRY 42\n"
+
+        cleanup:
+        jarFile?.close()
+
+        where:
+        threads << [1, 4]
+    }
+
+    def "should transform the entries of concurrent actions on a shared executor"() {
+        given:
+        def jar = createJar(200)
+        def modifications = [new UpperCaseModification(), new RenameModification(Pattern.compile("fabric.accesswidener"), "universal.accesswidener")]
+        def expected = new File(tempDir, "expected.jar")
+        def outputs = (0..<4).collect { new File(tempDir, "output${it}.jar") }
+        def executor = Executors.newFixedThreadPool(2)
+
+        when:
+        new JarModificationTask.JarModificationAction(regularFile(jar), regularFile(expected), modifications, Options.DEFAULT).execute()
+        outputs.collect { output ->
+            Thread.start { new JarModificationTask.JarModificationAction(regularFile(jar), regularFile(output), modifications, Options.DEFAULT.withThreads(4).withExecutor(executor)).execute() }
+        }*.join()
+
+        then:
+        outputs.every { contents(it) == contents(expected) }
+        // The executor is shared, so it outlives the actions
+        !executor.isShutdown()
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+    def "should share a memory budget between concurrent actions and release it once they are done with #threads threads"() {
+        given:
+        def jar = createJar(10, (0..<20).collectEntries { ["large${it}.txt", "large entry\n" * 2000] })
+        def modifications = [new UpperCaseModification()]
+        def expected = new File(tempDir, "expected.jar")
+        def outputs = (0..<4).collect { new File(tempDir, "output${it}.jar") }
+        // A few of the large entries at a time for all actions together, far less than their own budget
+        def budget = new MemoryBudget(256 * 1024)
+        def executor = Executors.newFixedThreadPool(2)
+
+        when:
+        new JarModificationTask.JarModificationAction(regularFile(jar), regularFile(expected), modifications, Options.DEFAULT).execute()
+        outputs.collect { output ->
+            Thread.start {
+                new JarModificationTask.JarModificationAction(regularFile(jar), regularFile(output), modifications,
+                        Options.DEFAULT.withThreads(threads).withExecutor(executor).withSharedMemory(budget)).execute()
+            }
+        }*.join()
+
+        then:
+        outputs.every { contents(it) == contents(expected) }
+        budget.tryAcquire(budget.maxBytes)
+
+        cleanup:
+        executor.shutdownNow()
+
+        where:
+        threads << [1, 4]
+    }
+
+    def "should copy untouched and renamed entries without re-encoding them"() {
+        given:
+        def jar = createJar(10)
+        def before = new ZipFile(jar).withCloseable { zip -> zip.entries().toList().collectEntries { [it.name, [it.crc, it.compressedSize, it.time]] } }
+
+        when:
+        new JarModificationTask.JarModificationAction(regularFile(jar), regularFile(jar), [new RenameModification(Pattern.compile("fabric.accesswidener"), "universal.accesswidener")], Options.DEFAULT).execute()
+
+        then:
+        def after = new ZipFile(jar).withCloseable { zip -> zip.entries().toList().collectEntries { [it.name, [it.crc, it.compressedSize, it.time]] } }
+        after["entries/entry3.txt"] == before["entries/entry3.txt"]
+        after["universal.accesswidener"] == before["fabric.accesswidener"]
+    }
+
+    def "should write to a separate output and leave the input untouched"() {
+        given:
+        def jar = createJar(10)
+        def original = jar.bytes
+        def output = new File(tempDir, "libs/output.jar")
+
+        when:
+        new JarModificationTask.JarModificationAction(regularFile(jar), regularFile(output), [new UpperCaseModification()], Options.DEFAULT).execute()
+
+        then:
+        jar.bytes == original
+        new JarFile(output).withCloseable { it.getInputStream(it.getEntry("entries/entry3.txt")).text } == "ENTRY 3\n"
+        !new File(tempDir, "libs/output.jar.tmp").exists()
+    }
+
+    def "should reuse cached entries and produce the same output"() {
+        given:
+        def jar = createJar(10)
+        def cache = new TransformedEntryCache(Long.MAX_VALUE, null)
+        def first = new File(tempDir, "first.jar")
+        def second = new File(tempDir, "second.jar")
+        def modifications = [new UpperCaseModification()]
+
+        when:
+        new JarModificationTask.JarModificationAction(regularFile(jar), regularFile(first), modifications, Options.DEFAULT.withEntryCache(cache)).execute()
+        def cached = cache.size()
+        new JarModificationTask.JarModificationAction(regularFile(jar), regularFile(second), modifications, Options.DEFAULT.withEntryCache(cache)).execute()
+
+        then:
+        cached == 10
+        cache.size() == cached
+        second.bytes == first.bytes
+    }
+
+    def "should stream entries larger than the memory budget with #threads threads"() {
+        given:
+        def jar = createJar(10, ["large.txt": "large entry\n" * 100000, "large.accesswidener": "accessWidener v1 named\n" * 100000])
+        def modifications = [new UpperCaseModification(), new RenameModification(Pattern.compile("large.accesswidener"), "universal.accesswidener")]
+        def inMemory = new File(tempDir, "in-memory.jar")
+        def streamed = new File(tempDir, "streamed.jar")
+
+        when:
+        new JarModificationTask.JarModificationAction(regularFile(jar), regularFile(inMemory), modifications, Options.DEFAULT.withThreads(threads)).execute()
+        new JarModificationTask.JarModificationAction(regularFile(jar), regularFile(streamed), modifications, Options.DEFAULT.withThreads(threads).withMemoryBudget(64 * 1024)).execute()
+
+        then:
+        contents(streamed) == contents(inMemory)
+        contents(streamed)["large.txt"] == "LARGE ENTRY\n" * 100000
+        !tempDir.list().any { it.contains(".spill") }
+
+        where:
+        threads << [1, 4]
+    }
+
+    def "should write the same output with the #backend reader backend"() {
+        given:
+        def jar = createJar(100)
+        def modifications = [new UpperCaseModification(), new RenameModification(Pattern.compile("fabric.accesswidener"), "universal.accesswidener")]
+        def expected = new File(tempDir, "expected.jar")
+        def output = new File(tempDir, "output.jar")
+
+        when:
+        new JarModificationTask.JarModificationAction(regularFile(jar), regularFile(expected), modifications, Options.DEFAULT).execute()
+        new JarModificationTask.JarModificationAction(regularFile(jar), regularFile(output), modifications, Options.DEFAULT.withThreads(4).withReaderBackend(backend)).execute()
+
+        then:
+        output.bytes == expected.bytes
+
+        where:
+        backend << ZipArchiveReader.Backend.values()
+    }
+
+    def "should copy the input and then leave the output untouched when #description"() {
+        given:
+        def jar = createJar(10)
+        def output = new File(tempDir, "libs/output.jar")
+
+        when:
+        def first = new JarModificationTask.JarModificationAction(regularFile(jar), regularFile(output), modifications, Options.DEFAULT).execute()
+        output.setLastModified(0)
+        def second = new JarModificationTask.JarModificationAction(regularFile(jar), regularFile(output), modifications, Options.DEFAULT).execute()
+
+        then:
+        first.didWork
+        !second.didWork
+        output.bytes == jar.bytes
+        output.lastModified() == 0
+
+        where:
+        description                     | modifications
+        "no modification applies"       | [new RenameModification(Pattern.compile("missing.accesswidener"), "universal.accesswidener")]
+        "no modification changes bytes" | [new LowerCaseModification()]
+    }
+
+    def "should write identical reproducible jars for the same entries with #threads threads"() {
+        given:
+        def names = ["b.txt", "a/", "a/c.txt", "fabric.accesswidener", JarFile.MANIFEST_NAME]
+        def first = createJar("first.jar", names, FileTime.fromMillis(1_000_000_000_000L))
+        def second = createJar("second.jar", names.reverse(), FileTime.fromMillis(1_700_000_000_000L))
+        def modifications = [new UpperCaseModification(), new RenameModification(Pattern.compile("fabric.accesswidener"), "universal.accesswidener")]
+        def firstOutput = new File(tempDir, "libs/first.jar")
+        def secondOutput = new File(tempDir, "libs/second.jar")
+
+        when:
+        new JarModificationTask.JarModificationAction(regularFile(first), regularFile(firstOutput), modifications, Options.DEFAULT.withThreads(threads).withReproducible(true)).execute()
+        def result = new JarModificationTask.JarModificationAction(regularFile(second), regularFile(secondOutput), modifications, Options.DEFAULT.withThreads(threads).withReproducible(true)).execute()
+
+        then:
+        result.didWork
+        firstOutput.bytes == secondOutput.bytes
+        def entries = new ZipFile(firstOutput).withCloseable { zip -> zip.entries().toList() }
+        entries*.name == [JarFile.MANIFEST_NAME, "a/", "a/c.txt", "b.txt", "universal.accesswidener"]
+        entries.every { it.lastModifiedTime == entries[0].lastModifiedTime && it.extra == null }
+        contents(firstOutput)["a/c.txt"] == "A/C.TXT"
+
+        where:
+        threads << [1, 4]
+    }
+
+    def "should normalize a reproducible jar that no modification applies to, and then leave it untouched"() {
+        given:
+        def jar = createJar("input.jar", ["b.txt", "a.txt"], FileTime.fromMillis(1_700_000_000_000L))
+        def output = new File(tempDir, "libs/output.jar")
+        def modifications = [new RenameModification(Pattern.compile("missing.accesswidener"), "universal.accesswidener")]
+
+        when:
+        def first = new JarModificationTask.JarModificationAction(regularFile(jar), regularFile(output), modifications, Options.DEFAULT.withReproducible(true)).execute()
+        output.setLastModified(0)
+        def second = new JarModificationTask.JarModificationAction(regularFile(jar), regularFile(output), modifications, Options.DEFAULT.withReproducible(true)).execute()
+
+        then:
+        first.didWork
+        !second.didWork
+        output.lastModified() == 0
+        new ZipFile(output).withCloseable { zip -> zip.entries().toList()*.name } == ["a.txt", "b.txt"]
+        contents(output) == contents(jar)
+    }
+
+    def "should modify the jar the same way with modifications restored from the configuration cache"() {
+        given:
+        def jar = createJar(50)
+        def mod = new Mod("example", "Example", "An example mod", ["Huskuraft"], "MIT", Environment.BOTH, "com.example", "1.0.0",
+                URI.create("https://example.com"), URI.create("https://example.com/sources"), URI.create("https://example.com/issues"))
+        def modifications = [new UpperCaseModification(), new FabricAccessWidenerRenameModification(mod), new ForgeAnnotationModification(mod)]
+        def restored = new ObjectInputStream(new ByteArrayInputStream(serialize(modifications))).readObject() as List<Modification>
+        def expected = new File(tempDir, "expected.jar")
+        def actual = new File(tempDir, "actual.jar")
+
+        when:
+        new JarModificationTask.JarModificationAction(regularFile(jar), regularFile(expected), modifications, Options.DEFAULT).execute()
+        new JarModificationTask.JarModificationAction(regularFile(jar), regularFile(actual), restored, Options.DEFAULT).execute()
+
+        then:
+        contents(actual) == contents(expected)
+        contents(actual).containsKey("example.accesswidener")
+        serialize(restored) == serialize(modifications)
+    }
+
+    def "should report the metrics of each modification class with #threads threads"() {
+        given:
+        def jar = createJar(50)
+        def output = new File(tempDir, "libs/output.jar")
+        def report = new File(tempDir, "libs/output.jar.report.json")
+        def modifications = [new UpperCaseModification(), new LowerCaseModification(), new RenameModification(Pattern.compile("fabric.accesswidener"), "universal.accesswidener")]
+        def action = new JarModificationTask.JarModificationAction(regularFile(jar), regularFile(output), modifications, Options.DEFAULT.withThreads(threads))
+
+        when:
+        action.execute()
+        action.report(report, "transformExample")
+
+        then:
+        def json = new JsonSlurper().parse(report)
+        json.target == "transformExample"
+        json.output == "output.jar"
+        json.entries == 51
+        json.read.bytes > 0
+        json.write.bytes > 0
+        def byType = json.modifications.collectEntries { [it.type, it] }
+        byType.keySet() as List == [UpperCaseModification, LowerCaseModification, RenameModification]*.name
+        byType[UpperCaseModification.name].entriesMatched == 50
+        byType[UpperCaseModification.name].entriesModified == 50
+        byType[UpperCaseModification.name].bytesIn == byType[UpperCaseModification.name].bytesOut
+        byType[RenameModification.name].entriesMatched == 1
+        byType[RenameModification.name].entriesModified == 1
+        byType[RenameModification.name].bytesIn == 0
+
+        where:
+        threads << [1, 4]
+    }
+
+    def "should reject annotation values that cannot be stored in a class file"() {
+        given:
+        def modification = new AnnotationModification()
+
+        when:
+        modification.newValue = "${'mod'}id"
+
+        then:
+        modification.newValue == "modid"
+
+        when:
+        modification.newValue = new Object()
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "should reject a non-positive #option"() {
+        when:
+        options()
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        option          | options
+        "thread count"  | { Options.DEFAULT.withThreads(0) }
+        "memory budget" | { Options.DEFAULT.withMemoryBudget(0) }
+    }
+
+    private File createJar(int entries, Map<String, String> extraEntries = [:]) {
+        def file = new File(tempDir, "input.jar")
+        new JarOutputStream(new FileOutputStream(file)).withCloseable { output ->
+            entries.times { index ->
+                output.putNextEntry(new JarEntry("entries/entry${index}.txt"))
+                output.write("entry ${index}\n".bytes)
+                output.closeEntry()
+            }
+            extraEntries.each { name, content ->
+                output.putNextEntry(new JarEntry(name))
+                output.write(content.bytes)
+                output.closeEntry()
+            }
+            output.putNextEntry(new JarEntry("fabric.accesswidener"))
+            output.write("accessWidener v1 named\n".bytes)
+            output.closeEntry()
+        }
+        return file
+    }
+
+    private File createJar(String name, List<String> names, FileTime time) {
+        def file = new File(tempDir, name)
+        new ZipOutputStream(new FileOutputStream(file)).withCloseable { output ->
+            names.each { entryName ->
+                // The extended timestamp field of the last modified time is written as an extra field
+                output.putNextEntry(new JarEntry(entryName).setLastModifiedTime(time))
+                if (entryName == JarFile.MANIFEST_NAME) {
+                    output.write("Manifest-Version: 1.0\r\n\r\n".bytes)
+                } else if (!entryName.endsWith("/")) {
+                    output.write(entryName.bytes)
+                }
+                output.closeEntry()
+            }
+        }
+        return file
+    }
+
+    private static Map<String, String> contents(File jar) {
+        return new JarFile(jar).withCloseable { jarFile -> jarFile.entries().toList().collectEntries { [it.name, jarFile.getInputStream(it).text] } }
+    }
+
+    private static byte[] serialize(Object object) {
+        def bytes = new ByteArrayOutputStream()
+        new ObjectOutputStream(bytes).withCloseable { it.writeObject(object) }
+        return bytes.toByteArray()
+    }
+
+    private static RegularFile regularFile(File file) {
+        return { -> file } as RegularFile
+    }
+
+    static class LowerCaseModification extends PlainTextModification {
+        @Override
+        protected String modifyText(String content) {
+            return content.toLowerCase()
+        }
+    }
+
+    static class UpperCaseModification extends PlainTextModification {
+        @Override
+        protected String modifyText(String content) {
+            return content.toUpperCase()
+        }
+    }
+}
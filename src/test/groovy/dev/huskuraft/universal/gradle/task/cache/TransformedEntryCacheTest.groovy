@@ -0,0 +1,72 @@
+package dev.huskuraft.universal.gradle.task.cache
+
+import dev.huskuraft.universal.gradle.task.modification.RenameModification
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.attribute.FileTime
+import java.time.Duration
+import java.util.zip.ZipEntry
+
+class TransformedEntryCacheTest extends Specification {
+
+    @TempDir
+    File tempDir
+
+    def "should include the build of the plugin in fingerprints"() {
+        given:
+        def modification = new RenameModification(~/fabric\.mixins\.json/, "example.mixins.json")
+
+        expect:
+        ModificationFingerprint.buildIdentity() != null
+        ModificationFingerprint.of(modification) == ModificationFingerprint.of(modification, ModificationFingerprint.buildIdentity())
+        ModificationFingerprint.of(modification, [1] as byte[]) != ModificationFingerprint.of(modification, [2] as byte[])
+    }
+
+    def "should miss the disk cache once the fingerprint of a modification changed"() {
+        given:
+        def modification = new RenameModification(~/fabric\.mixins\.json/, "example.mixins.json")
+        def content = ByteBuffer.wrap('{"mixins":[]}'.bytes)
+        def key = { byte[] identity ->
+            TransformedEntryCache.key("fabric.mixins.json", ZipEntry.STORED, content, [modification], [(modification): ModificationFingerprint.of(modification, identity)])
+        }
+        new TransformedEntryCache(Long.MAX_VALUE, tempDir.toPath()).put(key([1] as byte[]), TransformedEntryCache.CachedEntry.unchanged("example.mixins.json"))
+
+        when:
+        // A later build reads the disk cache written by an earlier one
+        def cache = new TransformedEntryCache(Long.MAX_VALUE, tempDir.toPath())
+
+        then:
+        cache.get(key([1] as byte[]))?.name() == "example.mixins.json"
+        cache.get(key([2] as byte[])) == null
+    }
+
+    def "should keep disk entries in a versioned directory and delete those unused for a while"() {
+        given:
+        def cache = new TransformedEntryCache(0, tempDir.toPath())
+        ["used", "unused", "recent"].each { cache.put(key(it), TransformedEntryCache.CachedEntry.unchanged(it)) }
+        def files = ["used", "unused", "recent"].collectEntries { [it, tempDir.toPath().resolve("entries-v1").resolve(key(it).substring(0, 2)).resolve(key(it))] }
+        def old = FileTime.fromMillis(System.currentTimeMillis() - Duration.ofDays(30).toMillis())
+        Files.setLastModifiedTime(files.used, old)
+        Files.setLastModifiedTime(files.unused, old)
+
+        when:
+        // A later build reads an entry, which marks it as used
+        def later = new TransformedEntryCache(0, tempDir.toPath())
+        later.get(key("used"))
+        later.cleanup(Duration.ofDays(7))
+
+        then:
+        Files.exists(files.used)
+        !Files.exists(files.unused)
+        Files.exists(files.recent)
+        // Only the entries are under the versioned directory, so the cache directory can be shared
+        tempDir.list() as List == ["entries-v1"]
+    }
+
+    private static String key(String name) {
+        return TransformedEntryCache.key(name, ZipEntry.STORED, ByteBuffer.wrap(name.bytes), [], [:])
+    }
+}
@@ -0,0 +1,127 @@
+package dev.huskuraft.universal.gradle.task.modification
+
+import org.objectweb.asm.ClassReader
+import org.objectweb.asm.ClassWriter
+import org.objectweb.asm.ConstantDynamic
+import org.objectweb.asm.Handle
+import org.objectweb.asm.Opcodes
+import spock.lang.Specification
+
+class ClassConstantsTest extends Specification {
+
+    static final Handle BOOTSTRAP = new Handle(Opcodes.H_INVOKESTATIC, "com/example/Bootstrap", "bootstrap",
+            "(Ljava/lang/invoke/MethodHandles\$Lookup;Ljava/lang/String;Ljava/lang/Object;)Ljava/lang/Object;", false)
+
+    def "should find constants after #kind constants"() {
+        given:
+        def constants = ClassConstants.scan(classFile(instructions))
+
+        expect:
+        // The descriptors are added last, so they are only found if every constant before them was skipped correctly
+        constants.containsDescriptor("Lcom/example/Mod;")
+        constants.containsDescriptor("Lcom/example/Méthode;")
+        !constants.containsDescriptor("Lcom/example/Other;")
+        !constants.containsDescriptor("Lcom/example/Mod")
+
+        where:
+        kind              | instructions
+        "long and double" | { mv -> mv.visitLdcInsn(42L); mv.visitLdcInsn(4.2d); mv.visitLdcInsn(7L) }
+        "method handle"   | { mv -> mv.visitLdcInsn(BOOTSTRAP) }
+        "invoke dynamic"  | { mv -> mv.visitInvokeDynamicInsn("run", "()Ljava/lang/Runnable;", BOOTSTRAP) }
+        "dynamic"         | { mv -> mv.visitLdcInsn(new ConstantDynamic("value", "Ljava/lang/Object;", BOOTSTRAP)) }
+        "non-ASCII"       | { mv -> mv.visitLdcInsn("héllo ☃ \u0000 😀") }
+    }
+
+    def "should find substrings of constants, including non-ASCII ones"() {
+        given:
+        def constants = ClassConstants.scan(classFile { mv -> mv.visitLdcInsn("héllo ☃ \u0000 😀") })
+
+        expect:
+        constants.containsUtf8Substring("com/example/")
+        constants.containsUtf8Substring("llo ☃")
+        constants.containsUtf8Substring("\u0000 😀")
+        constants.containsUtf8Substring("Méthode")
+        !constants.containsUtf8Substring("Methode")
+        !constants.containsUtf8Substring("dev/huskuraft/")
+    }
+
+    def "should scan the module and package constants of a module descriptor"() {
+        given:
+        def writer = new ClassWriter(0)
+        writer.visit(Opcodes.V17, Opcodes.ACC_MODULE, "module-info", null, null, null)
+        def module = writer.visitModule("com.example.mod", 0, null)
+        module.visitExport("com/example/mod/api", 0)
+        module.visitPackage("com/example/mod/internal")
+        module.visitEnd()
+        writer.visitAnnotation("Lcom/example/Mod;", true).visitEnd()
+        writer.visitEnd()
+
+        when:
+        def constants = ClassConstants.scan(writer.toByteArray())
+
+        then:
+        constants.containsUtf8("com.example.mod")
+        constants.containsUtf8("com/example/mod/api")
+        constants.containsDescriptor("Lcom/example/Mod;")
+    }
+
+    def "should reject a class file truncated #description"() {
+        given:
+        def bytes = classFile { mv -> mv.visitLdcInsn("héllo") }
+
+        when:
+        ClassConstants.scan(Arrays.copyOf(bytes, length(bytes)))
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == message
+
+        where:
+        description                | length                         | message
+        "before the constant pool" | { 8 }                          | "Not a class file"
+        "within the constant pool" | { 40 }                         | "Truncated constant pool"
+        "within its last constant" | { lastConstantEnd(it) - 1 }    | "Truncated constant pool"
+    }
+
+    def "should skip class modifications whose descriptors the class does not reference"() {
+        given:
+        def present = annotation("Lcom/example/Mod;")
+        def absent = annotation("Lcom/example/Other;")
+        def rename = new RenameModification(~/.*/, "renamed")
+
+        expect:
+        ClassIndex.filter(classFile {}, [present, absent, rename]) == [present, rename]
+        ClassIndex.filter("not a class".bytes, [present, absent]) == [present, absent]
+    }
+
+    private static AnnotationModification annotation(String descriptor) {
+        def modification = new AnnotationModification()
+        modification.descriptor = descriptor
+        modification.field = "value"
+        modification.newValue = "value"
+        return modification
+    }
+
+    private static byte[] classFile(Closure instructions) {
+        def writer = new ClassWriter(ClassWriter.COMPUTE_MAXS)
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, "com/example/Initializer", null, "java/lang/Object", null)
+        def method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "run", "()V", null, null)
+        method.visitCode()
+        instructions(method)
+        method.visitInsn(Opcodes.RETURN)
+        method.visitMaxs(0, 0)
+        method.visitEnd()
+        writer.visitAnnotation("Lcom/example/Mod;", true).visitEnd()
+        writer.visitField(Opcodes.ACC_PUBLIC, "méthode", "Lcom/example/Méthode;", null, null).visitEnd()
+        writer.visitEnd()
+        return writer.toByteArray()
+    }
+
+    /**
+     * Finds the end of the constant pool, which is also the end of its last constant.
+     */
+    private static int lastConstantEnd(byte[] bytes) {
+        // The access flags follow the constant pool
+        return new ClassReader(bytes).header
+    }
+}
@@ -0,0 +1,105 @@
+package dev.huskuraft.universal.gradle.task.modification
+
+import org.objectweb.asm.AnnotationVisitor
+import org.objectweb.asm.ClassReader
+import org.objectweb.asm.ClassVisitor
+import org.objectweb.asm.ClassWriter
+import org.objectweb.asm.Opcodes
+import spock.lang.Specification
+
+class ClassModificationTest extends Specification {
+
+    static final String DESCRIPTOR = "Lcom/example/Mod;"
+
+    def "should apply every modification matching a class in a single pass"() {
+        given:
+        def input = annotatedClass()
+        def counter = new CountingModification()
+        def modifications = [
+                annotation("value", "first"),
+                annotation("value", "second"),
+                annotation("version", 2),
+                counter,
+        ]
+
+        when:
+        def output = ClassModification.apply(input, modifications)
+
+        then:
+        // The visitors are chained, so each modification sees the changes of the previous ones and the last one wins
+        annotationValues(output) == [value: "second", version: 2]
+        counter.visits == 1
+        counter.visitorsCreated == 1
+    }
+
+    def "should pass the class to the next modification in the order they are given"() {
+        given:
+        def input = annotatedClass()
+
+        expect:
+        annotationValues(ClassModification.apply(input, [annotation("value", "first"), annotation("value", "second")])).value == "second"
+        annotationValues(ClassModification.apply(input, [annotation("value", "second"), annotation("value", "first")])).value == "first"
+    }
+
+    def "should apply a single modification like the fused pass"() {
+        given:
+        def input = annotatedClass()
+        def modification = annotation("value", "first")
+
+        expect:
+        modification.apply(input) == ClassModification.apply(input, [modification])
+    }
+
+    private static AnnotationModification annotation(String field, Object value) {
+        def modification = new AnnotationModification()
+        modification.descriptor = DESCRIPTOR
+        modification.field = field
+        modification.newValue = value
+        return modification
+    }
+
+    private static byte[] annotatedClass() {
+        def writer = new ClassWriter(0)
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, "com/example/Initializer", null, "java/lang/Object", null)
+        def annotation = writer.visitAnnotation(DESCRIPTOR, true)
+        annotation.visit("value", "universal")
+        annotation.visit("version", 1)
+        annotation.visitEnd()
+        writer.visitEnd()
+        return writer.toByteArray()
+    }
+
+    private static Map<String, Object> annotationValues(byte[] bytes) {
+        def values = [:]
+        new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                return new AnnotationVisitor(Opcodes.ASM9) {
+                    @Override
+                    void visit(String name, Object value) {
+                        values[name] = value
+                    }
+                }
+            }
+        }, 0)
+        return values
+    }
+
+    static class CountingModification extends ClassModification {
+
+        int visitorsCreated
+        int visits
+
+        @Override
+        ClassVisitor createVisitor(ClassVisitor classVisitor) {
+            visitorsCreated++
+            return new ClassVisitor(Opcodes.ASM9, classVisitor) {
+                @Override
+                void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                    visits++
+                    super.visit(version, access, name, signature, superName, interfaces)
+                }
+            }
+        }
+    }
+}
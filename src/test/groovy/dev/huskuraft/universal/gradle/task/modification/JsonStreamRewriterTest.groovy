@@ -0,0 +1,56 @@
+package dev.huskuraft.universal.gradle.task.modification
+
+import com.google.gson.Gson
+import com.google.gson.JsonPrimitive
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonWriter
+import spock.lang.Specification
+
+class JsonStreamRewriterTest extends Specification {
+
+    def "should put members in place or at the end of the object"() {
+        given:
+        def rewriter = new JsonStreamRewriter(new Gson())
+                .put('$.package', new JsonPrimitive("new.package"))
+                .put('$.refmap', new JsonPrimitive("mod.refmap.json"))
+
+        expect:
+        rewrite(rewriter, '{"package":"old.package","mixins":["A"]}') == '{"package":"new.package","mixins":["A"],"refmap":"mod.refmap.json"}'
+    }
+
+    def "should rename members matched by a wildcard path"() {
+        given:
+        def rewriter = new JsonStreamRewriter(new Gson())
+                .renameMembers('$.mappings', { it.replace("old/", "new/") })
+
+        expect:
+        rewrite(rewriter, '{"mappings":{"old/A":{"old/x":1},"b":2},"old/c":3}') == '{"mappings":{"new/A":{"old/x":1},"b":2},"old/c":3}'
+    }
+
+    def "should copy untouched values token by token"() {
+        given:
+        def rewriter = new JsonStreamRewriter(new Gson())
+                .put('$.a.b', new JsonPrimitive(true))
+
+        expect:
+        rewrite(rewriter, '{"n":1.50,"e":2e3,"z":null,"a":{"b":false,"c":[null,"<&>"]}}') == '{"n":1.50,"e":2e3,"z":null,"a":{"b":true,"c":[null,"<&>"]}}'
+    }
+
+    def "should reject documents whose root is not an object"() {
+        when:
+        rewrite(new JsonStreamRewriter(new Gson()), '[1]')
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private static String rewrite(JsonStreamRewriter rewriter, String json) {
+        def output = new StringWriter()
+        def writer = new JsonWriter(output)
+        writer.serializeNulls = true
+        writer.htmlSafe = false
+        rewriter.rewrite(new JsonReader(new StringReader(json)), writer)
+        writer.flush()
+        return output.toString()
+    }
+}
@@ -0,0 +1,124 @@
+package dev.huskuraft.universal.gradle.task.modification
+
+import spock.lang.Specification
+
+import java.util.jar.JarEntry
+import java.util.regex.Pattern
+
+class ModificationIndexTest extends Specification {
+
+    def "should return the candidates of #name in declaration order across selector kinds"() {
+        given:
+        def modifications = [
+                new SelectedModification("suffix", EntrySelector.suffix(".json")),
+                new SelectedModification("any", EntrySelector.any()),
+                new SelectedModification("prefix", EntrySelector.prefix("fabric")),
+                new SelectedModification("exact", EntrySelector.exact("fabric.mod.json")),
+                new SelectedModification("long suffix", EntrySelector.suffix("mod.json")),
+                new SelectedModification("regex", EntrySelector.regex(Pattern.compile(".*\\.mod\\..*"))),
+                new SelectedModification("class", EntrySelector.suffix(".class")),
+        ]
+        def index = ModificationIndex.of(modifications)
+
+        expect:
+        index.candidates(name)*.toString() == candidates
+
+        where:
+        name                    | candidates
+        "fabric.mod.json"       | ["suffix", "any", "prefix", "exact", "long suffix", "regex"]
+        "assets/quilt.mod.json" | ["suffix", "any", "long suffix", "regex"]
+        "fabric.mixins.json"    | ["suffix", "any", "prefix"]
+        "dev/Example.class"     | ["any", "class"]
+        "fabric"                | ["any", "prefix"]
+        "META-INF/"             | ["any"]
+    }
+
+    def "should keep the declaration order of modifications sharing a selector"() {
+        given:
+        def first = new SelectedModification("first", EntrySelector.suffix(".json"))
+        def second = new SelectedModification("second", EntrySelector.exact("fabric.mod.json"))
+        def third = new SelectedModification("third", EntrySelector.suffix(".json"))
+
+        expect:
+        ModificationIndex.of([first, second, third]).candidates("fabric.mod.json") == [first, second, third]
+    }
+
+    def "should narrow the candidates of an entry with appliesTo"() {
+        given:
+        // The selector lets through every JSON file, only the pattern decides which one is renamed
+        def rename = new JsonRenameModification(Pattern.compile("fabric\\.mixins\\.json"), "example.mixins.json")
+        def json = new SelectedModification("json", EntrySelector.suffix(".json"))
+        def index = ModificationIndex.of([rename, json])
+
+        expect:
+        index.candidates("fabric.mod.json") == [rename, json]
+        index.select(new JarEntry("fabric.mod.json")) == [json]
+        index.select(new JarEntry("fabric.mixins.json")) == [rename, json]
+        index.select(new JarEntry("fabric.mixins.json")).first().apply(new JarEntry("fabric.mixins.json")).name == "example.mixins.json"
+    }
+
+    def "should report every check of appliesTo to the listener"() {
+        given:
+        def rename = new JsonRenameModification(Pattern.compile("fabric\\.mixins\\.json"), "example.mixins.json")
+        def json = new SelectedModification("json", EntrySelector.suffix(".json"))
+        def checks = []
+
+        when:
+        def applicable = ModificationIndex.filter([rename, json], new JarEntry("fabric.mod.json"), { modification, nanos, applies -> checks << [modification, applies, nanos >= 0] })
+
+        then:
+        applicable == [json]
+        checks == [[rename, false, true], [json, true, true]]
+    }
+
+    def "should return the candidates themselves when every one of them applies"() {
+        given:
+        def candidates = [new SelectedModification("first", EntrySelector.any()), new SelectedModification("second", EntrySelector.any())]
+
+        expect:
+        ModificationIndex.filter(candidates, new JarEntry("fabric.mod.json")).is(candidates)
+    }
+
+    static class SelectedModification implements Modification {
+
+        private final String name
+        private final EntrySelector selector
+
+        SelectedModification(String name, EntrySelector selector) {
+            this.name = name
+            this.selector = selector
+        }
+
+        @Override
+        boolean appliesTo(JarEntry entry) {
+            return selector.matches(entry.name)
+        }
+
+        @Override
+        EntrySelector getSelector() {
+            return selector
+        }
+
+        @Override
+        byte[] apply(byte[] input) {
+            return input
+        }
+
+        @Override
+        String toString() {
+            return name
+        }
+    }
+
+    static class JsonRenameModification extends RenameModification {
+
+        JsonRenameModification(Pattern pattern, String replacement) {
+            super(pattern, replacement)
+        }
+
+        @Override
+        EntrySelector getSelector() {
+            return EntrySelector.suffix(".json")
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package dev.huskuraft.universal.gradle.task.modification
+
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+
+class TextRewriterTest extends Specification {
+
+    def "should replace tokens preferring the longest match"() {
+        given:
+        def rewriter = new TextRewriter()
+                .replaceToken("universal", "mymod")
+                .replaceToken("dev.huskuraft.universal", "com.example")
+
+        expect:
+        rewrite(rewriter, "package dev.huskuraft.universal; universal") == "package com.example; mymod"
+    }
+
+    def "should replace lines starting with a key and keep line terminators"() {
+        given:
+        def rewriter = new TextRewriter()
+                .replaceLine("license=", 'license="MIT"')
+                .replaceLine("modId=\"universal\"", 'modId="mymod"')
+
+        expect:
+        rewrite(rewriter, '  license="LGPL"\r\n# license=\nmodId="universal"\nmodId="forge"') == 'license="MIT"\r\n# license=\nmodId="mymod"\nmodId="forge"'
+    }
+
+    def "should return the input itself if nothing matches"() {
+        given:
+        def input = "nothing to replace".getBytes(StandardCharsets.UTF_8)
+
+        expect:
+        new TextRewriter().replaceToken("universal", "mymod").rewrite(input).is(input)
+    }
+
+    private static String rewrite(TextRewriter rewriter, String text) {
+        return new String(rewriter.rewrite(text.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8)
+    }
+}
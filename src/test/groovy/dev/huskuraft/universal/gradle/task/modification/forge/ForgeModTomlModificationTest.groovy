@@ -0,0 +1,114 @@
+package dev.huskuraft.universal.gradle.task.modification.forge
+
+import dev.huskuraft.universal.gradle.Environment
+import dev.huskuraft.universal.gradle.Mod
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+
+class ForgeModTomlModificationTest extends Specification {
+
+    static final Mod MOD = new Mod("example", "Example", "An example mod", ["Huskuraft", "Contributor"], "MIT", Environment.CLIENT, "com.example", "1.0.0",
+            URI.create("https://example.com"), URI.create("https://example.com/sources"), URI.create("https://example.com/issues"))
+
+    static final String MODS_TOML = """\
+modLoader="javafml"
+loaderVersion="[47,)"
+license="LGPL-3.0"
+issueTrackerURL="https://example.com/issues"
+
+[[mods]]
+modId="universal"
+version="\${version}"
+displayName="Universal"
+displayURL="https://example.com"
+logoFile="icon.png"
+authors="Huskuraft"
+displayTest="MATCH_VERSION"
+description='''
+A universal mod.
+It runs on every loader.
+'''
+
+[[dependencies.universal]]
+modId="forge"
+mandatory=true
+versionRange="[47,)"
+ordering="NONE"
+side="BOTH"
+
+[[dependencies.universal]]
+modId="minecraft"
+mandatory=true
+versionRange="[1.20.1,1.21)"
+ordering="NONE"
+side="BOTH"
+"""
+
+    // Only the first line of the multi-line description is replaced, the rest of it is kept as is
+    static final String EXPECTED = """\
+modLoader="javafml"
+loaderVersion="[47,)"
+license="MIT"
+issueTrackerURL="https://example.com/issues"
+
+[[mods]]
+modId="example"
+version="1.0.0"
+displayName="Example"
+displayURL="https://example.com"
+logoFile="assets/example/icon.png"
+authors="Huskuraft,Contributor"
+displayTest="MATCH_VERSION"
+description="An example mod"
+A universal mod.
+It runs on every loader.
+'''
+
+[[dependencies.example]]
+modId="forge"
+mandatory=true
+versionRange="[47,)"
+ordering="NONE"
+side="CLIENT"
+
+[[dependencies.example]]
+modId="minecraft"
+mandatory=true
+versionRange="[1.20.1,1.21)"
+ordering="NONE"
+side="CLIENT"
+"""
+
+    def "should modify a realistic mods.toml"() {
+        expect:
+        apply(MODS_TOML) == EXPECTED
+    }
+
+    def "should end the file with a single line break when it ends with #description"() {
+        expect:
+        apply(MODS_TOML.stripTrailing() + ending) == EXPECTED
+
+        where:
+        description           | ending
+        "no line break"       | ""
+        "a line break"        | "\n"
+        "several line breaks" | "\n\n\n"
+    }
+
+    def "should drop the indentation of replaced lines and keep the others"() {
+        expect:
+        apply('[[mods]]\n    modId="universal"\n\tlicense="LGPL"\n    loaderVersion="[47,)"\n') ==
+                '[[mods]]\nmodId="example"\nlicense="MIT"\n    loaderVersion="[47,)"\n'
+    }
+
+    def "should keep the line terminators of CRLF files"() {
+        expect:
+        apply('license="LGPL"\r\nmodLoader="javafml"\r\n') == 'license="MIT"\r\nmodLoader="javafml"\r\n'
+    }
+
+    private static String apply(String content) {
+        def output = new ForgeModTomlModification(MOD).apply(content.getBytes(StandardCharsets.UTF_8))
+        return new String(output, StandardCharsets.UTF_8)
+    }
+}
@@ -0,0 +1,167 @@
+package dev.huskuraft.universal.gradle.task.modification.relocation
+
+import dev.huskuraft.universal.gradle.task.JarModificationTask
+import dev.huskuraft.universal.gradle.task.JarModificationTask.JarModificationAction.Options
+import dev.huskuraft.universal.gradle.task.modification.EntrySelector
+import groovy.json.JsonSlurper
+import org.gradle.api.file.RegularFile
+import org.objectweb.asm.ClassWriter
+import org.objectweb.asm.Opcodes
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.util.jar.JarEntry
+import java.util.jar.JarFile
+import java.util.jar.JarOutputStream
+
+class RelocatorTest extends Specification {
+
+    @TempDir
+    File tempDir
+
+    def "should relocate whole names in text, including descriptors"() {
+        given:
+        def relocator = Relocator.of("dev.huskuraft.universal", "com.example.mod")
+
+        expect:
+        relocator.relocateText(text) == relocated
+
+        where:
+        text                                                   | relocated
+        "(Ldev/huskuraft/universal/api/Service;I)V"            | "(Lcom/example/mod/api/Service;I)V"
+        "dev.huskuraft.universal.api.Service"                  | "com.example.mod.api.Service"
+        "dev/huskuraft/universal"                              | "com/example/mod"
+        "dev.huskuraft.universalx.Service"                     | "dev.huskuraft.universalx.Service"
+        "adev.huskuraft.universal.Service"                     | "adev.huskuraft.universal.Service"
+        "dev.huskuraft.other.Service"                          | "dev.huskuraft.other.Service"
+        "(ILdev/huskuraft/universal/api/Service;)V"            | "(ILcom/example/mod/api/Service;)V"
+        "([ILdev/huskuraft/universal/api/Service;)V"           | "([ILcom/example/mod/api/Service;)V"
+        "(JLdev/huskuraft/universal/api/Service;)V"            | "(JLcom/example/mod/api/Service;)V"
+        "(IZ[[JLdev/huskuraft/universal/api/Service;)V"        | "(IZ[[JLcom/example/mod/api/Service;)V"
+        "(Ljava/lang/String;Ldev/huskuraft/universal/A;)V"    | "(Ljava/lang/String;Lcom/example/mod/A;)V"
+        "()Ldev/huskuraft/universal/api/Service;"               | "()Lcom/example/mod/api/Service;"
+        "ServiceLdev/huskuraft/universal/api/Service;"         | "ServiceLdev/huskuraft/universal/api/Service;"
+    }
+
+    def "should relocate names by their longest mapped package"() {
+        given:
+        def relocator = Relocator.of(["dev.huskuraft": "com.example", "dev.huskuraft.universal": "com.example.mod"])
+
+        expect:
+        relocator.relocateClassName("dev.huskuraft.universal.Service") == "com.example.mod.Service"
+        relocator.relocateClassName("dev.huskuraft.other.Service") == "com.example.other.Service"
+        relocator.relocateInternalName("dev/huskuraft/universal/Service") == "com/example/mod/Service"
+    }
+
+    def "should select the resources of relocated packages by their common directory with #selector"() {
+        given:
+        def modification = new ResourceRelocationModification(Relocator.of(mappings))
+
+        expect:
+        modification.selector == selector
+
+        where:
+        mappings                                                                               | selector
+        ["dev.huskuraft.universal": "com.example.mod"]                                         | EntrySelector.prefix("dev/huskuraft/universal/")
+        ["dev.huskuraft.universal": "com.example.mod", "dev.huskuraft.api": "com.example.api"] | EntrySelector.prefix("dev/huskuraft/")
+        ["dev.huskuraft.universal": "com.example.mod", "org.example": "com.example.org"]       | EntrySelector.any()
+    }
+
+    def "should reject invalid package names"() {
+        when:
+        Relocator.of("dev.huskuraft.", "com.example")
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "should relocate classes, service files, mixin configs and refmaps consistently with #threads threads"() {
+        given:
+        def input = createJar([
+                "dev/huskuraft/universal/api/Service.class"                 : serviceClass(),
+                "com/example/Impl.class"                                    : implClass(),
+                "META-INF/services/dev.huskuraft.universal.api.Service"     : "com.example.Impl\n".bytes,
+                "example.mixins.json"                                       : '{"package":"dev.huskuraft.universal.fabric.mixin","mixins":["FooMixin"]}'.bytes,
+                "example.refmap.json"                                       : '{"mappings":{"dev/huskuraft/universal/fabric/mixin/FooMixin":{"name":"Ldev/huskuraft/universal/api/Service;name()Ljava/lang/String;"}}}'.bytes,
+                "dev/huskuraft/universal/lang/en_us.json"                   : "{}".bytes,
+        ])
+        def output = new File(tempDir, "output.jar")
+        def modifications = Relocator.of("dev.huskuraft.universal", "com.example.mod").modifications()
+
+        when:
+        new JarModificationTask.JarModificationAction(regularFile(input), regularFile(output), modifications, Options.DEFAULT.withThreads(threads)).execute()
+
+        then:
+        def jarFile = new JarFile(output)
+        jarFile.entries().toList()*.name == [
+                "com/example/mod/api/Service.class",
+                "com/example/Impl.class",
+                "META-INF/services/com.example.mod.api.Service",
+                "example.mixins.json",
+                "example.refmap.json",
+                "com/example/mod/lang/en_us.json",
+        ]
+        new JsonSlurper().parse(jarFile.getInputStream(jarFile.getEntry("example.mixins.json"))).package == "com.example.mod.fabric.mixin"
+        new JsonSlurper().parse(jarFile.getInputStream(jarFile.getEntry("example.refmap.json"))).mappings == [
+                "com/example/mod/fabric/mixin/FooMixin": ["name": "Lcom/example/mod/api/Service;name()Ljava/lang/String;"]
+        ]
+
+        def loader = new URLClassLoader([output.toURI().toURL()] as URL[], (ClassLoader) null)
+        def service = loader.loadClass("com.example.mod.api.Service")
+        def impl = ServiceLoader.load(service, loader).iterator().next()
+        impl.class.name == "com.example.Impl"
+        impl.name() == "com.example.mod.api.Service"
+
+        cleanup:
+        jarFile?.close()
+        loader?.close()
+
+        where:
+        threads << [1, 4]
+    }
+
+    private File createJar(Map<String, byte[]> entries) {
+        def file = new File(tempDir, "input.jar")
+        new JarOutputStream(new FileOutputStream(file)).withCloseable { output ->
+            entries.each { name, content ->
+                output.putNextEntry(new JarEntry(name))
+                output.write(content)
+                output.closeEntry()
+            }
+        }
+        return file
+    }
+
+    private static byte[] serviceClass() {
+        def writer = new ClassWriter(ClassWriter.COMPUTE_MAXS)
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT, "dev/huskuraft/universal/api/Service", null, "java/lang/Object", null)
+        writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "name", "()Ljava/lang/String;", null, null).visitEnd()
+        writer.visitEnd()
+        return writer.toByteArray()
+    }
+
+    private static byte[] implClass() {
+        def writer = new ClassWriter(ClassWriter.COMPUTE_MAXS)
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, "com/example/Impl", null, "java/lang/Object", ["dev/huskuraft/universal/api/Service"] as String[])
+        def constructor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null)
+        constructor.visitCode()
+        constructor.visitVarInsn(Opcodes.ALOAD, 0)
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false)
+        constructor.visitInsn(Opcodes.RETURN)
+        constructor.visitMaxs(0, 0)
+        constructor.visitEnd()
+        // The name of the service as a string constant, as used by reflection
+        def name = writer.visitMethod(Opcodes.ACC_PUBLIC, "name", "()Ljava/lang/String;", null, null)
+        name.visitCode()
+        name.visitLdcInsn("dev.huskuraft.universal.api.Service")
+        name.visitInsn(Opcodes.ARETURN)
+        name.visitMaxs(0, 0)
+        name.visitEnd()
+        writer.visitEnd()
+        return writer.toByteArray()
+    }
+
+    private static RegularFile regularFile(File file) {
+        return { -> file } as RegularFile
+    }
+}
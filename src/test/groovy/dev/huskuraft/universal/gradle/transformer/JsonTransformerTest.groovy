@@ -0,0 +1,42 @@
+package dev.huskuraft.universal.gradle.transformer
+
+import com.google.gson.JsonParser
+import spock.lang.Specification
+
+class JsonTransformerTest extends Specification {
+
+    def "should merge into the accumulator in place and keep the key order"() {
+        given:
+        def accumulator = JsonParser.parseString('{"b":1,"mixins":["b.Mixin"],"nested":{"z":true,"a":null}}')
+
+        when:
+        def merged = JsonTransformer.mergeJson(accumulator, JsonParser.parseString('{"a":2,"mixins":["a.Mixin"],"nested":{"a":"value","y":false}}'))
+
+        then:
+        merged.is(accumulator)
+        JsonTransformer.GSON.toJson(merged) == '{"b":1,"mixins":["b.Mixin","a.Mixin"],"nested":{"z":true,"a":"value","y":false},"a":2}'
+    }
+
+    def "should keep the first value of conflicting properties"() {
+        when:
+        def merged = JsonTransformer.mergeJson(JsonParser.parseString('{"a":{"b":1,"c":[1]}}'), JsonParser.parseString('{"a":{"b":2,"c":{}}}'))
+
+        then:
+        JsonTransformer.GSON.toJson(merged) == '{"a":{"b":1,"c":[1]}}'
+    }
+
+    def "should merge many resources into a single accumulator"() {
+        given:
+        def accumulator = null
+
+        when:
+        500.times { index ->
+            accumulator = JsonTransformer.mergeJson(accumulator, JsonParser.parseString("""{"required":true,"mixins":["Mixin${index}"],"refmaps":{"Mixin${index}":"${index}"}}"""))
+        }
+
+        then:
+        accumulator.getAsJsonArray("mixins").size() == 500
+        accumulator.getAsJsonObject("refmaps").keySet() as List == (0..<500).collect { "Mixin${it}".toString() }
+        accumulator.get("required").asBoolean
+    }
+}
@@ -0,0 +1,121 @@
+package dev.huskuraft.universal.gradle.transformer
+
+import com.github.jengelman.gradle.plugins.shadow.transformers.TransformerContext
+import dev.huskuraft.universal.gradle.Environment
+import dev.huskuraft.universal.gradle.Mod
+import dev.huskuraft.universal.gradle.task.modification.fabric.FabricMixinsJsonPropertyModification
+import dev.huskuraft.universal.gradle.task.modification.fabric.FabricMixinsJsonRenameModification
+import dev.huskuraft.universal.gradle.task.modification.forge.ForgeAnnotationModification
+import groovy.json.JsonSlurper
+import org.apache.tools.zip.ZipEntry
+import org.apache.tools.zip.ZipOutputStream
+import org.gradle.api.file.FileTreeElement
+import org.gradle.api.file.RelativePath
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.util.jar.JarFile
+
+class ModificationTransformerTest extends Specification {
+
+    static final Mod MOD = new Mod("example", "Example", "An example mod", ["Huskuraft"], "MIT", Environment.BOTH, "com.example", "1.0.0",
+            URI.create("https://example.com"), URI.create("https://example.com/sources"), URI.create("https://example.com/issues"))
+
+    @TempDir
+    File tempDir
+
+    def "should rename and modify resources while shadowing"() {
+        given:
+        def transformer = new ModificationTransformer()
+        transformer.modification(new FabricMixinsJsonRenameModification(MOD))
+        transformer.modification(new FabricMixinsJsonPropertyModification(MOD))
+
+        when:
+        def jar = shadowJar(transformer, [
+                "fabric.mixins.json": '{"required":true,"mixins":["FooMixin"]}',
+                "assets/lang.json"  : '{"key":"value"}',
+        ])
+
+        then:
+        def jarFile = new JarFile(jar)
+        jarFile.entries().toList()*.name == ["assets/lang.json", "example.mixins.json"]
+        new JsonSlurper().parse(jarFile.getInputStream(jarFile.getEntry("example.mixins.json"))) == [required: true, mixins: ["FooMixin"], refmap: "example.refmap.json"]
+        jarFile.getInputStream(jarFile.getEntry("assets/lang.json")).text == '{"key":"value"}'
+
+        cleanup:
+        jarFile?.close()
+    }
+
+    def "should keep the first of duplicate resources, like Shadow does"() {
+        given:
+        def transformer = new ModificationTransformer()
+        transformer.modification(new FabricMixinsJsonRenameModification(MOD))
+        transformer.modification(new FabricMixinsJsonPropertyModification(MOD))
+
+        when:
+        // Both dependencies ship the same resource, which ends up under the same name once renamed
+        def jar = shadowJar(transformer, ["fabric.mixins.json": '{"mixins":["First"]}'], ["fabric.mixins.json": '{"mixins":["Second"]}'])
+
+        then:
+        def jarFile = new JarFile(jar)
+        jarFile.entries().toList()*.name == ["example.mixins.json"]
+        new JsonSlurper().parse(jarFile.getInputStream(jarFile.getEntry("example.mixins.json"))).mixins == ["First"]
+        !transformer.hasTransformedResource()
+
+        cleanup:
+        jarFile?.close()
+    }
+
+    def "should not accept resources no modification applies to"() {
+        given:
+        def transformer = new ModificationTransformer()
+        transformer.modification(new FabricMixinsJsonRenameModification(MOD))
+
+        expect:
+        transformer.canTransformResource(element("fabric.mixins.json"))
+        !transformer.canTransformResource(element("other.mixins.json"))
+        !transformer.hasTransformedResource()
+    }
+
+    def "should reject class modifications"() {
+        given:
+        def transformer = new ModificationTransformer()
+
+        when:
+        transformer.modification(new ForgeAnnotationModification(MOD))
+
+        then:
+        thrown(IllegalArgumentException)
+        transformer.modifications.isEmpty()
+    }
+
+    /**
+     * Copies the resources of each dependency into a jar the way the copy action of Shadow does:
+     * resources accepted by the transformer are handed to it, the others are copied unless their name was already written,
+     * and the transformed resources are written last.
+     */
+    private File shadowJar(ModificationTransformer transformer, Map<String, String>... dependencies) {
+        def file = new File(tempDir, "shadow.jar")
+        def written = new HashSet<String>()
+        new ZipOutputStream(file).withCloseable { output ->
+            dependencies.each { resources ->
+                resources.each { name, content ->
+                    if (transformer.canTransformResource(element(name))) {
+                        transformer.transform(new TransformerContext(path: name, is: new ByteArrayInputStream(content.bytes), relocators: []))
+                    } else if (written.add(name)) {
+                        output.putNextEntry(new ZipEntry(name))
+                        output.write(content.bytes)
+                    }
+                }
+            }
+            if (transformer.hasTransformedResource()) {
+                transformer.modifyOutputStream(output, false)
+            }
+        }
+        return file
+    }
+
+    private static FileTreeElement element(String name) {
+        return [getRelativePath: { RelativePath.parse(true, name) }, getPath: { name }, getName: { name }] as FileTreeElement
+    }
+}
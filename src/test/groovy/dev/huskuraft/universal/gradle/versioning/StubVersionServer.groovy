@@ -0,0 +1,156 @@
+package dev.huskuraft.universal.gradle.versioning
+
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+
+import java.nio.charset.StandardCharsets
+import java.security.MessageDigest
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.jar.JarEntry
+import java.util.jar.JarOutputStream
+
+/**
+ * A local stand-in for Mojang's version API, serving a manifest, version metadata and client jars.
+ */
+class StubVersionServer implements Closeable {
+
+    final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>()
+    final Map<String, AtomicLong> bytesServed = new ConcurrentHashMap<>()
+    final AtomicInteger maxConcurrentRequests = new AtomicInteger()
+    long delayMillis = 0
+    boolean rangeSupport = true
+    boolean corruptSha1 = false
+    boolean conditionalRequests = true
+    boolean available = true
+
+    private final HttpServer server
+    private final List<String> ids
+    private final AtomicInteger concurrentRequests = new AtomicInteger()
+    private final Map<String, byte[]> clientJars = new ConcurrentHashMap<>()
+
+    StubVersionServer(List<String> ids) {
+        this.ids = ids
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.loopbackAddress, 0), 0)
+        this.server.executor = Executors.newCachedThreadPool()
+        this.server.createContext("/") { exchange -> handle(exchange) }
+        this.server.start()
+    }
+
+    String getManifestUrl() {
+        return url("/manifest.json")
+    }
+
+    String url(String path) {
+        return "http://${server.address.hostString}:${server.address.port}${path}"
+    }
+
+    int requestCount(String path) {
+        return requests.get(path)?.get() ?: 0
+    }
+
+    long bytesServed(String path) {
+        return bytesServed.get(path)?.get() ?: 0
+    }
+
+    byte[] clientJar(String id) {
+        return clientJars.computeIfAbsent(id) { buildClientJar(id, ids.indexOf(id)) }
+    }
+
+    private void handle(HttpExchange exchange) {
+        def path = exchange.requestURI.path
+        requests.computeIfAbsent(path) { new AtomicInteger() }.incrementAndGet()
+        maxConcurrentRequests.accumulateAndGet(concurrentRequests.incrementAndGet(), Math::max)
+        try {
+            if (delayMillis > 0) {
+                Thread.sleep(delayMillis)
+            }
+            if (!available) {
+                exchange.sendResponseHeaders(503, -1)
+                return
+            }
+            def body = respond(path)
+            if (body == null) {
+                exchange.sendResponseHeaders(404, -1)
+                return
+            }
+            if (conditionalRequests && path == "/manifest.json") {
+                def etag = '"' + MessageDigest.getInstance("SHA-1").digest(body).encodeHex().toString() + '"'
+                exchange.responseHeaders.add("ETag", etag)
+                if (exchange.requestHeaders.getFirst("If-None-Match") == etag) {
+                    exchange.sendResponseHeaders(304, -1)
+                    return
+                }
+            }
+            def range = exchange.requestHeaders.getFirst("Range") =~ /^bytes=(\d*)-(\d*)$/
+            def start = 0L
+            def end = body.length - 1L
+            def status = 200
+            if (rangeSupport && range.matches()) {
+                if (range.group(1).isEmpty()) {
+                    start = Math.max(0, body.length - (range.group(2) as long))
+                } else {
+                    start = range.group(1) as long
+                    end = range.group(2).isEmpty() ? end : Math.min(end, range.group(2) as long)
+                }
+                status = 206
+                exchange.responseHeaders.add("Content-Range", "bytes ${start}-${end}/${body.length}")
+            }
+            def length = end - start + 1
+            bytesServed.computeIfAbsent(path) { new AtomicLong() }.addAndGet(length)
+            exchange.sendResponseHeaders(status, length)
+            exchange.responseBody.write(body, (int) start, (int) length)
+        } finally {
+            concurrentRequests.decrementAndGet()
+            exchange.close()
+        }
+    }
+
+    private byte[] respond(String path) {
+        if (path == "/manifest.json") {
+            def versions = ids.withIndex().collect { id, index ->
+                def time = String.format("2020-01-%02dT00:00:00+00:00", index + 1)
+                """{"id":"${id}","type":"release","url":"${url("/v1/${id}.json")}","time":"${time}","releaseTime":"${time}"}"""
+            }
+            return """{"latest":{},"versions":[${versions.join(",")}]}""".getBytes(StandardCharsets.UTF_8)
+        }
+        def metadata = path =~ /^\/v1\/(.+)\.json$/
+        if (metadata.matches() && metadata.group(1) in ids) {
+            def id = metadata.group(1)
+            def sha1 = corruptSha1 ? "0" * 40 : MessageDigest.getInstance("SHA-1").digest(clientJar(id)).encodeHex().toString()
+            return """{"downloads":{"client":{"sha1":"${sha1}","url":"${url("/client/${id}.jar")}"}}}""".getBytes(StandardCharsets.UTF_8)
+        }
+        def client = path =~ /^\/client\/(.+)\.jar$/
+        if (client.matches() && client.group(1) in ids) {
+            return clientJar(client.group(1))
+        }
+        return null
+    }
+
+    private static byte[] buildClientJar(String id, int index) {
+        def random = new Random(index)
+        def bytes = new ByteArrayOutputStream()
+        new JarOutputStream(bytes).withCloseable { output ->
+            // Incompressible classes, so most of the jar is data that range requests can skip
+            200.times { classIndex ->
+                def content = new byte[10240]
+                random.nextBytes(content)
+                output.putNextEntry(new JarEntry("net/minecraft/client/Class${classIndex}.class"))
+                output.write(content)
+                output.closeEntry()
+            }
+            output.putNextEntry(new JarEntry("version.json"))
+            output.write("""{"id":"${id}","name":"${id}","world_version":${3000 + index},"protocol_version":${700 + index},"pack_version":{"resource":${10 + index},"data":${20 + index}},"build_time":"2020-01-01T00:00:00+00:00","java_version":{"component":"java-runtime-delta","major_version":21},"stable":true}""".getBytes(StandardCharsets.UTF_8))
+            output.closeEntry()
+        }
+        return bytes.toByteArray()
+    }
+
+    @Override
+    void close() {
+        server.stop(0)
+        (server.executor as java.util.concurrent.ExecutorService).shutdownNow()
+    }
+}
@@ -0,0 +1,88 @@
+package dev.huskuraft.universal.gradle.versioning
+
+import spock.lang.Specification
+
+class VersionCatalogueTest extends Specification {
+
+    // In manifest order, newest first
+    static final VersionCatalogue CATALOGUE = VersionCatalogue.of([
+            version("1.21.4", "release", 7, 61),
+            version("24w46a", "snapshot", 6, null),
+            version("1.21.3", "release", 5, 57),
+            version("1.21.2", "release", 4, 57),
+            version("1.20.1", "release", 3, 15),
+            version("23w13a", "snapshot", 2, null),
+            version("1.18", "release", 1, 8),
+    ])
+
+    def "should order versions by release time"() {
+        expect:
+        CATALOGUE.versions*.id == ["1.18", "23w13a", "1.20.1", "1.21.2", "1.21.3", "24w46a", "1.21.4"]
+        CATALOGUE.asMap().keySet() as List == ["1.21.4", "24w46a", "1.21.3", "1.21.2", "1.20.1", "23w13a", "1.18"]
+        CATALOGUE.findById("1.20.1").get().type == "release"
+        !CATALOGUE.findById("99.99.99").isPresent()
+        !CATALOGUE.findById(null).isPresent()
+    }
+
+    def "should find versions by type"() {
+        expect:
+        CATALOGUE.findByType(VersionCatalogue.RELEASE)*.id == ["1.18", "1.20.1", "1.21.2", "1.21.3", "1.21.4"]
+        CATALOGUE.findByType(VersionCatalogue.SNAPSHOT)*.id == ["23w13a", "24w46a"]
+        CATALOGUE.findByType("old_alpha").isEmpty()
+        CATALOGUE.findLatest(VersionCatalogue.RELEASE).get().id == "1.21.4"
+        CATALOGUE.findLatest(VersionCatalogue.SNAPSHOT).get().id == "24w46a"
+        !CATALOGUE.findLatest("old_alpha").isPresent()
+    }
+
+    def "should find #type versions between #from and #to"() {
+        expect:
+        (type ? CATALOGUE.findBetween(type, from, to) : CATALOGUE.findBetween(from, to))*.id == expected
+
+        where:
+        type                       | from     | to       | expected
+        VersionCatalogue.RELEASE   | "1.18"   | "1.21.4" | ["1.18", "1.20.1", "1.21.2", "1.21.3", "1.21.4"]
+        VersionCatalogue.RELEASE   | "23w13a" | "24w46a" | ["1.20.1", "1.21.2", "1.21.3"]
+        VersionCatalogue.SNAPSHOT  | "1.18"   | "1.21.3" | ["23w13a"]
+        VersionCatalogue.SNAPSHOT  | "1.20.1" | "1.21.3" | []
+        VersionCatalogue.RELEASE   | "1.21.4" | "1.18"   | []
+        null                       | "1.20.1" | "1.21.3" | ["1.20.1", "1.21.2", "1.21.3"]
+    }
+
+    def "should include both bounds and only versions of the type"() {
+        given:
+        def releases = CATALOGUE.findByType(VersionCatalogue.RELEASE)
+
+        expect:
+        releases.every { it.type == "release" }
+        CATALOGUE.findBetween(VersionCatalogue.RELEASE, "1.18", "1.21.4").first().id == "1.18"
+        CATALOGUE.findBetween(VersionCatalogue.RELEASE, "1.18", "1.21.4").last().id == "1.21.4"
+        CATALOGUE.findLatest(VersionCatalogue.RELEASE).get().is(releases.last())
+    }
+
+    def "should reject unknown bounds"() {
+        when:
+        CATALOGUE.findBetween(VersionCatalogue.RELEASE, "1.18", "99.99.99")
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "should find versions sharing a data pack version"() {
+        expect:
+        CATALOGUE.findByDataPackVersion(57)*.id == ["1.21.2", "1.21.3"]
+        CATALOGUE.findSharingDataPackVersion("1.21.3")*.id == ["1.21.2", "1.21.3"]
+        CATALOGUE.findSharingDataPackVersion("24w46a").isEmpty()
+        CATALOGUE.findByDataPackVersion(1).isEmpty()
+    }
+
+    private static Minecraft version(String id, String type, int day, Integer dataPackVersion) {
+        def time = String.format("2020-01-%02dT00:00:00+00:00", day)
+        return new Minecraft(
+                id: id, name: id, type: type, url: null, time: time, releaseTime: time,
+                sha1: null, releaseTarget: null, stable: null,
+                dataVersion: null, protocolVersion: null,
+                dataPackVersion: dataPackVersion, resourcePackVersion: null,
+                buildTime: null, complianceLevel: null
+        )
+    }
+}
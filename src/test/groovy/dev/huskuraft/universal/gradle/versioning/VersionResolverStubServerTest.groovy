@@ -0,0 +1,170 @@
+package dev.huskuraft.universal.gradle.versioning
+
+import spock.lang.Specification
+import spock.lang.TempDir
+import spock.lang.Timeout
+
+import java.nio.file.Path
+import java.util.concurrent.TimeUnit
+
+/**
+ * Tests against a local stand-in for Mojang's API, so they are fast and do not need a network
+ */
+class VersionResolverStubServerTest extends Specification {
+
+    static final List<String> IDS = (1..12).collect { "1.${it}".toString() }
+
+    @TempDir
+    Path cacheDir
+
+    StubVersionServer server
+
+    def setup() {
+        server = new StubVersionServer(IDS)
+        VersionResolver.configure(server.manifestUrl, cacheDir)
+    }
+
+    def cleanup() {
+        VersionResolver.configure(null, null)
+        VersionResolver.rangeRequests = true
+        VersionResolver.offline = false
+        server.close()
+    }
+
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    def "should resolve versions concurrently with a bounded number of requests"() {
+        given:
+        server.delayMillis = 200
+
+        when:
+        def versions = VersionResolver.findDetailedByIds(IDS + ["99.99.99"])
+
+        then:
+        versions.keySet() as List == IDS
+        versions["1.3"].dataVersion == 3002
+        versions["1.3"].protocolVersion == 702
+        versions["1.3"].dataPackVersion == 22
+        versions["1.3"].resourcePackVersion == 12
+        versions["1.3"].complianceLevel == 21
+        server.maxConcurrentRequests.get() > 1
+        server.maxConcurrentRequests.get() <= VersionResolver.MAX_CONCURRENT_FETCHES
+    }
+
+    def "should share a single fetch between concurrent requests for the same id"() {
+        given:
+        server.delayMillis = 200
+
+        when:
+        def futures = (1..5).collect { VersionResolver.findDetailedByIdAsync("1.1") }
+        def versions = futures*.join()
+
+        then:
+        versions.every { it.get().dataVersion == 3000 }
+        server.requestCount("/v1/1.1.json") == 1
+    }
+
+    def "should read version.json with range requests"() {
+        when:
+        def version = VersionResolver.findDetailedById("1.5").get()
+
+        then:
+        version.dataVersion == 3004
+        server.bytesServed("/client/1.5.jar") < server.clientJar("1.5").length / 10
+        !cacheDir.resolve("tmp/1.5-client.jar").toFile().exists()
+    }
+
+    def "should download and verify the whole jar when #reason"() {
+        given:
+        server.rangeSupport = serverRanges
+        VersionResolver.rangeRequests = clientRanges
+
+        when:
+        def version = VersionResolver.findDetailedById("1.5").get()
+
+        then:
+        version.dataVersion == 3004
+        server.bytesServed("/client/1.5.jar") == server.clientJar("1.5").length
+        server.requestCount("/client/1.5.jar") == 1
+
+        where:
+        reason                              | serverRanges | clientRanges
+        "the server ignores ranges"         | false        | true
+        "range requests are disabled"       | true         | false
+    }
+
+    def "should reject a downloaded jar that does not match its sha1"() {
+        given:
+        server.rangeSupport = false
+        server.corruptSha1 = true
+
+        when:
+        def version = VersionResolver.findDetailedById("1.5").get()
+
+        then:
+        version.id == "1.5"
+        version.dataVersion == null
+    }
+
+    def "should serve a fresh manifest from disk in a new daemon"() {
+        given:
+        VersionResolver.findById("1.1")
+        // Simulates a new daemon, which only has the disk cache
+        VersionResolver.configure(server.manifestUrl, cacheDir)
+
+        when:
+        def version = VersionResolver.findById("1.2")
+
+        then:
+        version.isPresent()
+        server.requestCount("/manifest.json") == 1
+        server.bytesServed("/manifest.json") > 0
+    }
+
+    def "should revalidate a manifest without downloading it again"() {
+        given:
+        VersionResolver.findById("1.1")
+        def served = server.bytesServed("/manifest.json")
+
+        when:
+        VersionResolver.refresh()
+
+        then:
+        VersionResolver.findById("1.2").isPresent()
+        server.requestCount("/manifest.json") == 2
+        server.bytesServed("/manifest.json") == served
+    }
+
+    def "should use the cached manifest when #reason"() {
+        given:
+        VersionResolver.findById("1.1")
+        VersionResolver.findDetailedById("1.1")
+        server.available = false
+        VersionResolver.offline = offline
+
+        when:
+        VersionResolver.refresh()
+
+        then:
+        VersionResolver.allVersions.keySet() as List == IDS
+        VersionResolver.findDetailedById("1.1").get().dataVersion == 3000
+        VersionResolver.findDetailedById("1.2").get().dataVersion == null
+        server.requestCount("/manifest.json") == requests
+
+        where:
+        reason                      | offline | requests
+        "offline"                   | true    | 1
+        "the server is unavailable" | false   | 2
+    }
+
+    def "should fail offline without a cached manifest"() {
+        given:
+        VersionResolver.offline = true
+
+        when:
+        VersionResolver.findById("1.1")
+
+        then:
+        thrown(RuntimeException)
+        server.requests.isEmpty()
+    }
+}